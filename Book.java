@@ -1,25 +1,46 @@
 import java.util.*;
 
 /**
- * Represents a book in the library system.
+ * Represents a book in the library system: one catalog entry (ISBN) with one or more copies.
  */
 public class Book {
     private String isbn;
     private String title;
     private String author;
-    private boolean isAvailable;
+    private int totalCopies;
+    private volatile int availableCopies; // read without locking for O(1) availability checks
     
     public Book(String isbn, String title, String author) {
+        this(isbn, title, author, 1);
+    }
+
+    public Book(String isbn, String title, String author, int copies) {
+        if (copies <= 0) {
+            throw new IllegalArgumentException("A book needs at least one copy");
+        }
         this.isbn = isbn;
         this.title = title;
         this.author = author;
-        this.isAvailable = true;
+        this.totalCopies = copies;
+        this.availableCopies = copies;
     }
     
     // Getters and setters
     public String getIsbn() { return isbn; }
     public String getTitle() { return title; }
     public String getAuthor() { return author; }
-    public boolean isAvailable() { return isAvailable; }
-    public void setAvailable(boolean available) { isAvailable = available; }
+    public int getTotalCopies() { return totalCopies; }
+    public int getAvailableCopies() { return availableCopies; }
+    public boolean isAvailable() { return availableCopies > 0; }
+    public void setAvailable(boolean available) { availableCopies = available ? totalCopies : 0; }
+
+    void setAvailableCopies(int copies) {
+        availableCopies = Math.max(0, Math.min(copies, totalCopies));
+    }
+
+    // Caller holds the book's inventory lock, like setAvailableCopies
+    void addCopies(int copies) {
+        totalCopies += copies;
+        availableCopies += copies;
+    }
 }
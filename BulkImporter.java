@@ -0,0 +1,320 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Bulk Import Module
+ * Streams large CSV files of students, grades and fee records into the system modules.
+ * Pipeline: the calling thread reads lines into fixed-size batches, a worker pool (one thread per
+ * core) parses batches in parallel, and parsed batches are applied to the modules in file order on
+ * the calling thread, because StudentRegistry, PerformanceGraph and FeeTracker are single-threaded.
+ * Each batch goes to a Target: by default the modules themselves, or the system's locked batch
+ * methods when other threads may use the modules during the import.
+ * Ranking maintenance in PerformanceGraph is deferred to the end of each batch, so a student with
+ * several grades in one batch is re-ranked once.
+ *
+ * CSV layouts (an optional header row starting with "studentId" is skipped, fields are not quoted):
+ * - students: studentId,name,email,gradeLevel
+ * - grades:   studentId,subject,grade
+ * - fees:     studentId,amount,date,paymentType   (date as yyyy-MM-dd or epoch millis)
+ * Malformed rows are counted as rejected and skipped.
+ */
+public class BulkImporter implements AutoCloseable {
+    private static final int DEFAULT_BATCH_SIZE = 8192;
+    private static final int READ_BUFFER_SIZE = 1 << 16;
+
+    private final Target target;
+    private final int batchSize;
+    private final int parallelism;
+    private final ExecutorService parsers;
+
+    public BulkImporter(StudentRegistry registry, PerformanceGraph performanceGraph, FeeTracker feeTracker) {
+        this(registry, performanceGraph, feeTracker, DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BulkImporter(StudentRegistry registry, PerformanceGraph performanceGraph, FeeTracker feeTracker,
+                        int batchSize, int parallelism) {
+        this(direct(registry, performanceGraph, feeTracker), batchSize, parallelism);
+    }
+
+    BulkImporter(Target target) {
+        this(target, DEFAULT_BATCH_SIZE, Runtime.getRuntime().availableProcessors());
+    }
+
+    BulkImporter(Target target, int batchSize, int parallelism) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.target = target;
+        this.batchSize = batchSize;
+        this.parallelism = Math.max(1, parallelism);
+        this.parsers = Executors.newFixedThreadPool(this.parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-import-parser");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public ImportReport importStudents(Path csv) throws IOException {
+        return run("students", csv, this::parseStudents, (Student[] batch, ImportReport report) -> {
+            for (boolean added : target.addStudents(Arrays.asList(batch))) {
+                if (added) {
+                    report.applied++;
+                } else {
+                    report.duplicates++;
+                }
+            }
+        });
+    }
+
+    public ImportReport importGrades(Path csv) throws IOException {
+        return run("grades", csv, this::parseGrades, (GradeBatch batch, ImportReport report) -> {
+            target.addGrades(batch.studentIds, batch.subjects, batch.grades, batch.size);
+            report.applied += batch.size;
+        });
+    }
+
+    public ImportReport importFees(Path csv) throws IOException {
+        return run("fees", csv, this::parseFees, (FeeRecord[] batch, ImportReport report) -> {
+            target.addFeeRecords(Arrays.asList(batch));
+            report.applied += batch.length;
+        });
+    }
+
+    @Override
+    public void close() {
+        parsers.shutdown();
+    }
+
+    private <B> ImportReport run(String source, Path csv, Parser<B> parser, Applier<B> applier) throws IOException {
+        ImportReport report = new ImportReport(source);
+        long start = System.nanoTime();
+        Deque<Future<Parsed<B>>> pending = new ArrayDeque<>();
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(Files.newInputStream(csv), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+            boolean firstLine = true;
+            String[] lines = new String[batchSize];
+            int count = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (firstLine) {
+                    firstLine = false;
+                    if (line.regionMatches(true, 0, "studentId", 0, 9)) continue;
+                }
+                if (line.isEmpty()) continue;
+                lines[count++] = line;
+                if (count == batchSize) {
+                    submit(pending, parser, lines, count);
+                    lines = new String[batchSize];
+                    count = 0;
+                    // Bound the read-ahead so memory stays flat for arbitrarily large files
+                    while (pending.size() > parallelism * 2) {
+                        apply(pending.poll(), applier, report);
+                    }
+                }
+            }
+            if (count > 0) {
+                submit(pending, parser, lines, count);
+            }
+            while (!pending.isEmpty()) {
+                apply(pending.poll(), applier, report);
+            }
+        } finally {
+            for (Future<Parsed<B>> future : pending) {
+                future.cancel(true);
+            }
+        }
+
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private <B> void submit(Deque<Future<Parsed<B>>> pending, Parser<B> parser, String[] lines, int count) {
+        pending.add(parsers.submit(() -> parser.parse(lines, count)));
+    }
+
+    private <B> void apply(Future<Parsed<B>> future, Applier<B> applier, ImportReport report) throws IOException {
+        Parsed<B> parsed;
+        try {
+            parsed = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Bulk import interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse " + report.source + " batch", e.getCause());
+        }
+        report.rejected += parsed.rejected;
+        applier.apply(parsed.batch, report);
+    }
+
+    private Parsed<Student[]> parseStudents(String[] lines, int count) {
+        List<Student> students = new ArrayList<>(count);
+        int rejected = 0;
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines[i].split(",", -1);
+            try {
+                if (fields.length != 4 || fields[0].isEmpty()) throw new IllegalArgumentException();
+                students.add(new Student(fields[0].trim(), fields[1].trim(), fields[2].trim(),
+                        Integer.parseInt(fields[3].trim())));
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        return new Parsed<>(students.toArray(new Student[0]), rejected);
+    }
+
+    private Parsed<GradeBatch> parseGrades(String[] lines, int count) {
+        GradeBatch batch = new GradeBatch(count);
+        int rejected = 0;
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines[i].split(",", -1);
+            try {
+                if (fields.length != 3 || fields[0].isEmpty()) throw new IllegalArgumentException();
+                double grade = Double.parseDouble(fields[2].trim());
+                if (Double.isNaN(grade)) throw new IllegalArgumentException();
+                batch.studentIds[batch.size] = fields[0].trim();
+                batch.subjects[batch.size] = fields[1].trim().intern();
+                batch.grades[batch.size] = grade;
+                batch.size++;
+            } catch (IllegalArgumentException e) {
+                rejected++;
+            }
+        }
+        return new Parsed<>(batch, rejected);
+    }
+
+    private Parsed<FeeRecord[]> parseFees(String[] lines, int count) {
+        List<FeeRecord> records = new ArrayList<>(count);
+        int rejected = 0;
+        for (int i = 0; i < count; i++) {
+            String[] fields = lines[i].split(",", -1);
+            try {
+                if (fields.length != 4 || fields[0].isEmpty()) throw new IllegalArgumentException();
+                records.add(new FeeRecord(fields[0].trim(), Double.parseDouble(fields[1].trim()),
+                        parseDate(fields[2].trim()), fields[3].trim().intern()));
+            } catch (RuntimeException e) {
+                rejected++;
+            }
+        }
+        return new Parsed<>(records.toArray(new FeeRecord[0]), rejected);
+    }
+
+    private static Date parseDate(String value) {
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+            return new Date(Long.parseLong(value));
+        }
+        return Date.from(LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Receives parsed batches in file order, one call per batch.
+     */
+    interface Target {
+        /**
+         * @return for each student, whether it was added (false for a duplicate ID)
+         */
+        boolean[] addStudents(List<Student> students);
+
+        void addGrades(String[] studentIds, String[] subjects, double[] grades, int count);
+
+        void addFeeRecords(List<FeeRecord> records);
+    }
+
+    private static Target direct(StudentRegistry registry, PerformanceGraph performanceGraph, FeeTracker feeTracker) {
+        return new Target() {
+            @Override
+            public boolean[] addStudents(List<Student> students) {
+                boolean[] added = new boolean[students.size()];
+                for (int i = 0; i < added.length; i++) {
+                    Student student = students.get(i);
+                    added[i] = registry.addStudent(student);
+                    if (added[i]) {
+                        performanceGraph.addStudent(student.getStudentId());
+                    }
+                }
+                return added;
+            }
+
+            @Override
+            public void addGrades(String[] studentIds, String[] subjects, double[] grades, int count) {
+                performanceGraph.addGrades(studentIds, subjects, grades, count);
+            }
+
+            @Override
+            public void addFeeRecords(List<FeeRecord> records) {
+                feeTracker.addFeeRecords(records);
+            }
+        };
+    }
+
+    private interface Parser<B> {
+        Parsed<B> parse(String[] lines, int count);
+    }
+
+    private interface Applier<B> {
+        void apply(B batch, ImportReport report);
+    }
+
+    private static final class Parsed<B> {
+        final B batch;
+        final int rejected;
+
+        Parsed(B batch, int rejected) {
+            this.batch = batch;
+            this.rejected = rejected;
+        }
+    }
+
+    private static final class GradeBatch {
+        final String[] studentIds;
+        final String[] subjects;
+        final double[] grades;
+        int size;
+
+        GradeBatch(int capacity) {
+            studentIds = new String[capacity];
+            subjects = new String[capacity];
+            grades = new double[capacity];
+        }
+    }
+}
+
+/**
+ * Outcome of importing one CSV file.
+ */
+class ImportReport {
+    final String source;
+    long applied;    // rows applied to the modules
+    long duplicates; // rows refused by the module (e.g. an already registered student ID)
+    long rejected;   // malformed rows
+    long elapsedNanos;
+
+    ImportReport(String source) {
+        this.source = source;
+    }
+
+    public String getSource() { return source; }
+    public long getApplied() { return applied; }
+    public long getDuplicates() { return duplicates; }
+    public long getRejected() { return rejected; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public long getRecordCount() {
+        return applied + duplicates + rejected;
+    }
+
+    public double getRecordsPerSecond() {
+        return elapsedNanos == 0 ? 0.0 : getRecordCount() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImportReport{%s: %d applied, %d duplicates, %d rejected in %.2f s, %.0f records/s}",
+                source, applied, duplicates, rejected, elapsedNanos / 1e9, getRecordsPerSecond());
+    }
+}
@@ -0,0 +1,433 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Compact Student Store
+ * An alternative to StudentRegistry for very large student bodies: records live outside the Java
+ * heap, so the garbage collector has nothing per student to trace or copy.
+ * Data Structures Used:
+ * - Record slabs: direct ByteBuffers of SLAB_RECORDS fixed-width records (RECORD_BYTES each):
+ *   name code, email code, grade level, course count and up to INLINE_COURSES course codes.
+ *   Record r sits in slab r >>> SLAB_BITS at (r & SLAB_MASK) * RECORD_BYTES.
+ * - Dictionaries: student IDs, names / emails and course IDs are each stored once as UTF-8 in
+ *   direct byte chunks and referred to by int code. A student's record number is the code of its
+ *   ID, so a lookup by ID is one dictionary probe. Course IDs repeat across students and shrink to
+ *   4 bytes per membership.
+ * - Probe tables and code offsets are int[] arrays: a few large primitive arrays, which the
+ *   collector neither traces nor (being large) copies between young generations.
+ * - Flyweight: StudentView reads a record in place and decodes a string only when asked, so a
+ *   scan over every student allocates nothing per record.
+ * Students with more than INLINE_COURSES courses keep the rest in a small on-heap overflow map.
+ * A removed student's ID stays in its dictionary and the record is reused if the ID registers
+ * again. Like StudentRegistry, the store is not synchronized.
+ * Time Complexity: add/get/remove O(1) expected plus the length of the strings involved.
+ */
+public final class CompactStudentStore {
+    static final int INLINE_COURSES = 6;
+    private static final int SLAB_BITS = 16;
+    static final int SLAB_RECORDS = 1 << SLAB_BITS;
+    private static final int SLAB_MASK = SLAB_RECORDS - 1;
+
+    private static final int NAME = 0;
+    private static final int EMAIL = 4;
+    private static final int GRADE_LEVEL = 8;
+    private static final int COURSE_COUNT = 12; // -1 marks a removed student
+    private static final int COURSES = 16;
+    static final int RECORD_BYTES = COURSES + 4 * INLINE_COURSES;
+
+    private final StringDictionary ids = new StringDictionary();
+    private final StringDictionary text = new StringDictionary();
+    private final StringDictionary courses = new StringDictionary();
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final Map<Integer, int[]> overflowCourses = new HashMap<>();
+    private int size;
+
+    /**
+     * Copies the student, including its current courses, into the store.
+     *
+     * @return false if a student with this ID is already stored
+     */
+    public boolean addStudent(Student student) {
+        int known = ids.size();
+        int record = ids.code(student.getStudentId());
+        if (record < known && count(record) >= 0) {
+            return false;
+        }
+        while (record >= slabs.size() * SLAB_RECORDS) {
+            slabs.add(ByteBuffer.allocateDirect(SLAB_RECORDS * RECORD_BYTES));
+        }
+        ByteBuffer slab = slab(record);
+        int at = offset(record);
+        slab.putInt(at + NAME, text.code(student.getName()));
+        slab.putInt(at + EMAIL, text.code(student.getEmail()));
+        slab.putInt(at + GRADE_LEVEL, student.getGradeLevel());
+        slab.putInt(at + COURSE_COUNT, 0);
+        for (String courseId : student.getCourses()) {
+            addCourse(record, courses.code(courseId));
+        }
+        size++;
+        return true;
+    }
+
+    public boolean contains(String studentId) {
+        return record(studentId) >= 0;
+    }
+
+    /**
+     * A heap Student copied from the record, or null; prefer view() on hot paths.
+     */
+    public Student getStudent(String studentId) {
+        StudentView view = view();
+        return view.moveTo(studentId) ? view.toStudent() : null;
+    }
+
+    public boolean removeStudent(String studentId) {
+        int record = record(studentId);
+        if (record < 0) {
+            return false;
+        }
+        slab(record).putInt(offset(record) + COURSE_COUNT, -1);
+        overflowCourses.remove(record);
+        size--;
+        return true;
+    }
+
+    /**
+     * @return false if the student is unknown or already takes the course
+     */
+    public boolean addCourse(String studentId, String courseId) {
+        int record = record(studentId);
+        if (record < 0) {
+            return false;
+        }
+        int course = courses.code(courseId);
+        if (indexOfCourse(record, course) >= 0) {
+            return false;
+        }
+        addCourse(record, course);
+        return true;
+    }
+
+    public boolean removeCourse(String studentId, String courseId) {
+        int record = record(studentId);
+        int course = courses.find(courseId);
+        int index = record < 0 || course < 0 ? -1 : indexOfCourse(record, course);
+        if (index < 0) {
+            return false;
+        }
+        int last = count(record) - 1;
+        setCourse(record, index, course(record, last)); // order is not kept
+        setCount(record, last);
+        int[] overflow = overflowCourses.get(record);
+        if (overflow != null && last <= INLINE_COURSES) {
+            overflowCourses.remove(record);
+        }
+        return true;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Bytes held outside the heap by record slabs and dictionary chunks.
+     */
+    public long getOffHeapBytes() {
+        return (long) slabs.size() * SLAB_RECORDS * RECORD_BYTES + ids.offHeapBytes() + text.offHeapBytes() + courses.offHeapBytes();
+    }
+
+    /**
+     * A new flyweight positioned on no student; reuse it across lookups.
+     */
+    public StudentView view() {
+        return new StudentView();
+    }
+
+    /**
+     * Visits every stored student through one flyweight, which is only valid during the call.
+     */
+    public void forEach(Consumer<StudentView> action) {
+        StudentView view = new StudentView();
+        for (int record = 0, records = ids.size(); record < records; record++) {
+            if (count(record) >= 0) {
+                view.record = record;
+                action.accept(view);
+            }
+        }
+    }
+
+    /**
+     * Reads one stored student in place. Accessors decode strings on each call; the numeric ones
+     * allocate nothing.
+     */
+    public final class StudentView {
+        private int record = -1;
+
+        private StudentView() {
+        }
+
+        /**
+         * Positions the view on the student; false (and no position) if it is not stored.
+         */
+        public boolean moveTo(String studentId) {
+            record = record(studentId);
+            return record >= 0;
+        }
+
+        public String getStudentId() {
+            return ids.get(checkedRecord());
+        }
+
+        public String getName() {
+            return text.get(slab(checkedRecord()).getInt(offset(record) + NAME));
+        }
+
+        public String getEmail() {
+            return text.get(slab(checkedRecord()).getInt(offset(record) + EMAIL));
+        }
+
+        public int getGradeLevel() {
+            return slab(checkedRecord()).getInt(offset(record) + GRADE_LEVEL);
+        }
+
+        public int getCourseCount() {
+            return count(checkedRecord());
+        }
+
+        public String getCourse(int index) {
+            if (index < 0 || index >= getCourseCount()) {
+                throw new IndexOutOfBoundsException("Course " + index + " of " + getCourseCount());
+            }
+            return courses.get(course(record, index));
+        }
+
+        public boolean takesCourse(String courseId) {
+            int course = courses.find(courseId);
+            return course >= 0 && indexOfCourse(checkedRecord(), course) >= 0;
+        }
+
+        public Student toStudent() {
+            Student student = new Student(getStudentId(), getName(), getEmail(), getGradeLevel());
+            for (int i = 0, n = getCourseCount(); i < n; i++) {
+                student.addCourse(getCourse(i));
+            }
+            return student;
+        }
+
+        private int checkedRecord() {
+            if (record < 0 || count(record) < 0) {
+                throw new IllegalStateException("The view is not positioned on a stored student");
+            }
+            return record;
+        }
+    }
+
+    // ---------------------------------------------------------------- Records
+
+    private int record(String studentId) {
+        int record = ids.find(studentId);
+        return record >= 0 && count(record) >= 0 ? record : -1;
+    }
+
+    private ByteBuffer slab(int record) {
+        return slabs.get(record >>> SLAB_BITS);
+    }
+
+    private static int offset(int record) {
+        return (record & SLAB_MASK) * RECORD_BYTES;
+    }
+
+    private int count(int record) {
+        return slab(record).getInt(offset(record) + COURSE_COUNT);
+    }
+
+    private void setCount(int record, int count) {
+        slab(record).putInt(offset(record) + COURSE_COUNT, count);
+    }
+
+    private int course(int record, int index) {
+        if (index < INLINE_COURSES) {
+            return slab(record).getInt(offset(record) + COURSES + 4 * index);
+        }
+        return overflowCourses.get(record)[index - INLINE_COURSES];
+    }
+
+    private void setCourse(int record, int index, int course) {
+        if (index < INLINE_COURSES) {
+            slab(record).putInt(offset(record) + COURSES + 4 * index, course);
+        } else {
+            overflowCourses.get(record)[index - INLINE_COURSES] = course;
+        }
+    }
+
+    private void addCourse(int record, int course) {
+        int count = count(record);
+        if (count >= INLINE_COURSES) {
+            int[] overflow = overflowCourses.get(record);
+            int needed = count - INLINE_COURSES + 1;
+            if (overflow == null || overflow.length < needed) {
+                overflow = overflow == null ? new int[4] : Arrays.copyOf(overflow, overflow.length * 2);
+                overflowCourses.put(record, overflow);
+            }
+        }
+        setCourse(record, count, course);
+        setCount(record, count + 1);
+    }
+
+    private int indexOfCourse(int record, int course) {
+        for (int i = 0, n = count(record); i < n; i++) {
+            if (course(record, i) == course) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    // ---------------------------------------------------------------- Dictionary
+
+    /**
+     * Interns strings as dense int codes. Each string's UTF-8 bytes are stored once, prefixed by a
+     * 2-byte length, in direct chunks of CHUNK_BYTES; code -> position is an int[]. Lookups probe
+     * an open-addressed int[] table of codes and compare stored String hash codes before any bytes.
+     */
+    static final class StringDictionary {
+        private static final int CHUNK_BITS = 20;
+        private static final int CHUNK_BYTES = 1 << CHUNK_BITS;
+        private static final int MAX_STRING_BYTES = 0xFFFF;
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private int chunkPosition = CHUNK_BYTES; // forces the first chunk
+        private int[] positions = new int[1024];
+        private int[] hashes = new int[1024];
+        private int size;
+        private int[] table = new int[2048]; // code + 1, 0 = empty
+
+        int size() {
+            return size;
+        }
+
+        long offHeapBytes() {
+            return (long) chunks.size() * CHUNK_BYTES;
+        }
+
+        /**
+         * The string's code, adding it if absent.
+         */
+        int code(String value) {
+            int h = hash(value);
+            int mask = table.length - 1;
+            int i = h & mask;
+            for (int entry = table[i]; entry != 0; entry = table[i = (i + 1) & mask]) {
+                if (hashes[entry - 1] == h && matches(entry - 1, value)) {
+                    return entry - 1;
+                }
+            }
+            int code = append(value.getBytes(StandardCharsets.UTF_8), h);
+            table[i] = code + 1;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return code;
+        }
+
+        /**
+         * The string's code, or -1 if it was never added.
+         */
+        int find(String value) {
+            int h = hash(value);
+            int mask = table.length - 1;
+            for (int i = h & mask, entry = table[i]; entry != 0; entry = table[i = (i + 1) & mask]) {
+                if (hashes[entry - 1] == h && matches(entry - 1, value)) {
+                    return entry - 1;
+                }
+            }
+            return -1;
+        }
+
+        String get(int code) {
+            int position = positions[code];
+            ByteBuffer chunk = chunks.get(position >>> CHUNK_BITS);
+            int at = position & (CHUNK_BYTES - 1);
+            byte[] bytes = new byte[chunk.getShort(at) & 0xFFFF];
+            chunk.get(at + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        // Compares ASCII strings char by char against the stored bytes; anything else is encoded
+        private boolean matches(int code, String value) {
+            int position = positions[code];
+            ByteBuffer chunk = chunks.get(position >>> CHUNK_BITS);
+            int at = (position & (CHUNK_BYTES - 1)) + 2;
+            int length = chunk.getShort(at - 2) & 0xFFFF;
+            if (value.length() > length) {
+                return false; // UTF-8 never takes fewer bytes than UTF-16 takes chars
+            }
+            if (value.length() == length) {
+                for (int i = 0; i < length; i++) {
+                    char c = value.charAt(i);
+                    if (c >= 0x80) {
+                        return matches(chunk, at, length, value.getBytes(StandardCharsets.UTF_8));
+                    }
+                    if (chunk.get(at + i) != (byte) c) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return matches(chunk, at, length, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static boolean matches(ByteBuffer chunk, int at, int length, byte[] bytes) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chunk.get(at + i) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int append(byte[] bytes, int h) {
+            if (bytes.length > MAX_STRING_BYTES) {
+                throw new IllegalArgumentException("String of " + bytes.length + " bytes is too long for the store");
+            }
+            if (chunkPosition + 2 + bytes.length > CHUNK_BYTES) {
+                chunks.add(ByteBuffer.allocateDirect(CHUNK_BYTES));
+                chunkPosition = 0;
+            }
+            ByteBuffer chunk = chunks.get(chunks.size() - 1);
+            chunk.putShort(chunkPosition, (short) bytes.length);
+            chunk.put(chunkPosition + 2, bytes);
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            positions[size] = ((chunks.size() - 1) << CHUNK_BITS) | chunkPosition;
+            hashes[size] = h;
+            chunkPosition += 2 + bytes.length;
+            return size++;
+        }
+
+        private void rehash() {
+            int[] grown = new int[table.length * 2];
+            int mask = grown.length - 1;
+            for (int code = 0; code < size; code++) {
+                int i = hashes[code] & mask;
+                while (grown[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                grown[i] = code + 1;
+            }
+            table = grown;
+        }
+
+        private static int hash(String value) {
+            int h = value.hashCode() * 0x9E3779B9; // String caches its hash code
+            return h ^ (h >>> 16);
+        }
+    }
+}
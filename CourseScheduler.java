@@ -1,6 +1,30 @@
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
 
-class CircularQueue {
+/**
+ * FIFO queue of student IDs waiting for a seat in one course.
+ */
+interface EnrollmentQueue {
+    boolean isEmpty();
+    boolean isFull();
+    boolean enqueue(String studentId);
+    String dequeue();
+    String peek();
+    int getCount();
+    int getCapacity();
+    List<String> toList(); // queued IDs, front first
+}
+
+/**
+ * Array-backed FIFO ring that doubles when full, so requests are never turned away.
+ */
+class CircularQueue implements EnrollmentQueue {
     private String[] queue;
     private int front;
     private int rear;
@@ -25,7 +49,7 @@ class CircularQueue {
     
     public boolean enqueue(String studentId) {
         if (isFull()) {
-            return false;
+            grow();
         }
         
         rear = (rear + 1) % capacity;
@@ -59,44 +83,641 @@ class CircularQueue {
     public int getCapacity() {
         return capacity;
     }
+
+    public List<String> toList() {
+        List<String> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(queue[(front + i) % capacity]);
+        }
+        return ids;
+    }
+
+    private void grow() {
+        String[] larger = new String[Math.max(capacity * 2, 16)];
+        for (int i = 0; i < count; i++) {
+            larger[i] = queue[(front + i) % capacity];
+        }
+        queue = larger;
+        capacity = larger.length;
+        front = 0;
+        rear = count - 1;
+    }
 }
 
+/**
+ * Bounded multi-producer / single-consumer ring buffer for concurrent enrollment.
+ * Producers claim a position with one CAS on the tail and publish through a per-slot sequence
+ * number (Vyukov's bounded queue), so enqueue never takes a lock. Claimed positions are handed
+ * out in order, which keeps the queue FIFO in the order the CAS succeeded. The consumer side is
+ * serialized on the queue's monitor; only processEnrollment dequeues.
+ */
+class MpscRingQueue implements EnrollmentQueue {
+    private final AtomicReferenceArray<String> slots;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final int capacity;
+
+    public MpscRingQueue(int capacity) {
+        this.capacity = capacity;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+
+    public boolean isFull() {
+        return getCount() >= capacity;
+    }
+
+    public boolean enqueue(String studentId) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position % capacity);
+            long gap = sequences.get(index) - position;
+            if (gap == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (gap < 0) {
+                return false; // slot still holds an unconsumed entry from the previous lap: full
+            } else {
+                position = tail.get();
+            }
+        }
+        slots.set(index, studentId);
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    public synchronized String dequeue() {
+        long position = head;
+        int index = (int) (position % capacity);
+        if (sequences.get(index) != position + 1) {
+            return null; // empty, or the producer that claimed this slot has not published yet
+        }
+        String studentId = slots.get(index);
+        slots.set(index, null);
+        sequences.lazySet(index, position + capacity);
+        head = position + 1;
+        return studentId;
+    }
+
+    public synchronized String peek() {
+        long position = head;
+        int index = (int) (position % capacity);
+        return sequences.get(index) == position + 1 ? slots.get(index) : null;
+    }
+
+    public int getCount() {
+        long count = tail.get() - head;
+        return (int) Math.max(0, Math.min(count, capacity));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized List<String> toList() {
+        List<String> ids = new ArrayList<>();
+        for (long position = head; ; position++) {
+            int index = (int) (position % capacity);
+            if (sequences.get(index) != position + 1) {
+                return ids;
+            }
+            ids.add(slots.get(index));
+        }
+    }
+}
+
+/**
+ * Waitlisted request for a course: seniors (higher grade level) first, then earliest request.
+ */
+class WaitlistEntry implements Comparable<WaitlistEntry> {
+    final Student student;
+    final long sequence;
+
+    WaitlistEntry(Student student, long sequence) {
+        this.student = student;
+        this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(WaitlistEntry other) {
+        int bySeniority = Integer.compare(other.student.getGradeLevel(), student.getGradeLevel());
+        return bySeniority != 0 ? bySeniority : Long.compare(sequence, other.sequence);
+    }
+}
+
+/**
+ * Seats, roster and waitlist of one course, guarded by the section's monitor. Requests arrive
+ * through the EnrollmentQueue (plus an overflow deque when a concurrent ring is full) and are
+ * admitted or waitlisted by processEnrollment.
+ */
+class CourseSection {
+    final EnrollmentQueue requests;
+    final ArrayDeque<String> overflow = new ArrayDeque<>(); // older than anything still in the ring
+    int capacity;
+    final Map<String, Student> roster = new LinkedHashMap<>();
+    final TreeSet<WaitlistEntry> waitlist = new TreeSet<>();
+    final Map<String, WaitlistEntry> waitlisted = new HashMap<>();
+    final Map<String, Timetable.Conflict> rejected = new HashMap<>(); // by the timetable, latest reason
+    long nextSequence;
+
+    CourseSection(EnrollmentQueue requests, int capacity) {
+        this.requests = requests;
+        this.capacity = capacity;
+    }
+
+    int pendingCount() {
+        return requests.getCount() + overflow.size();
+    }
+
+    // Moves everything published in the ring behind the overflow, preserving FIFO order
+    void drainRing() {
+        String studentId;
+        while ((studentId = requests.dequeue()) != null) {
+            overflow.addLast(studentId);
+        }
+    }
+
+    // Every queued request, oldest first, leaving the queue empty
+    String[] drainRequests() {
+        drainRing();
+        String[] studentIds = overflow.toArray(new String[0]);
+        overflow.clear();
+        return studentIds;
+    }
+
+    // Caller holds the student's monitor: other courses' sections may be admitting the same student
+    void admit(Student student, String courseId) {
+        roster.put(student.getStudentId(), student);
+        student.addCourse(courseId);
+    }
+
+    void waitlist(Student student) {
+        WaitlistEntry entry = new WaitlistEntry(student, nextSequence++);
+        waitlist.add(entry);
+        waitlisted.put(student.getStudentId(), entry);
+    }
+
+    // The course capacity, capped by the room the timetable puts the course in
+    int seats(String courseId, Timetable timetable) {
+        return timetable == null ? capacity : Math.min(capacity, timetable.getRoomCapacity(courseId));
+    }
+
+    // Null timetable or no conflict: the student may take the course. Caller holds the student's
+    // monitor, since the timetable check reads the student's course list.
+    boolean allowed(Student student, String courseId, Timetable timetable) {
+        Timetable.Conflict conflict = timetable == null ? Timetable.Conflict.NONE : timetable.check(student, courseId);
+        if (conflict == Timetable.Conflict.NONE) {
+            rejected.remove(student.getStudentId());
+            return true;
+        }
+        rejected.put(student.getStudentId(), conflict);
+        return false;
+    }
+
+    // Fills free seats from the head of the waitlist: O(log n) per promotion. A student who has
+    // since taken a clashing course is dropped from the waitlist as rejected.
+    List<String> promote(String courseId, Timetable timetable) {
+        List<String> promoted = new ArrayList<>();
+        int seats = seats(courseId, timetable);
+        while (roster.size() < seats && !waitlist.isEmpty()) {
+            WaitlistEntry entry = waitlist.pollFirst();
+            waitlisted.remove(entry.student.getStudentId());
+            synchronized (entry.student) { // check and admit as one step, as in processEnrollment
+                if (!allowed(entry.student, courseId, timetable)) {
+                    continue;
+                }
+                admit(entry.student, courseId);
+            }
+            promoted.add(entry.student.getStudentId());
+        }
+        return promoted;
+    }
+
+    List<String> waitlistIds() {
+        List<String> ids = new ArrayList<>(waitlist.size());
+        for (WaitlistEntry entry : waitlist) {
+            ids.add(entry.student.getStudentId());
+        }
+        return ids;
+    }
+
+    List<String> pendingIds() {
+        List<String> ids = new ArrayList<>(overflow);
+        ids.addAll(requests.toList());
+        return ids;
+    }
+}
+
+/**
+ * Course Scheduling Module
+ * Data Structures Used:
+ * - EnrollmentQueue per course: FIFO of enrollment requests. CircularQueue grows on demand; in
+ *   concurrent mode a lock-free MpscRingQueue takes the requests and, when it is full, its contents
+ *   move behind an overflow deque, so no request is rejected.
+ * - Roster (LinkedHashMap) and waitlist (TreeSet ordered by grade level, seniors first, then request
+ *   order) per course: requests beyond the course capacity are waitlisted instead of lost.
+ * Waitlisted students are promoted automatically, O(log n) each, when a student drops or the
+ * capacity is raised; setCapacities applies a batch of capacity changes across many courses.
+ * With a Timetable set, every admission is checked for time clashes and prerequisites first.
+ */
 public class CourseScheduler {
-    private Map<String, CircularQueue> courseQueues;
+    private static final int FULL_RING_YIELDS = 16; // back-off attempts that yield before parking
+    private static final long FULL_RING_PARK_NANOS = 50_000;
+
+    private Map<String, CourseSection> courses;
+    private final boolean concurrent;
+    private volatile Timetable timetable;
 
     public CourseScheduler() {
-        this.courseQueues = new HashMap<>();
+        this(false);
+    }
+
+    /**
+     * @param concurrent when true, courses are kept in a ConcurrentHashMap and each course gets a
+     *                   lock-free MpscRingQueue, so enrollStudent may be called from many threads
+     *                   at once while processEnrollment drains a course.
+     */
+    public CourseScheduler(boolean concurrent) {
+        this.concurrent = concurrent;
+        this.courses = concurrent ? new ConcurrentHashMap<>() : new HashMap<>();
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    /**
+     * Validates every admission against the timetable: a student with a clashing course or a
+     * missing prerequisite is rejected rather than enrolled or waitlisted, and a course's seats are
+     * capped at its room's capacity. Null turns validation off.
+     */
+    public void setTimetable(Timetable timetable) {
+        this.timetable = timetable;
+    }
+
+    public Timetable getTimetable() {
+        return timetable;
+    }
+
+    public int getCourseCount() {
+        return courses.size();
+    }
+
+    /**
+     * Total number of enrollment requests not yet processed, over all courses.
+     */
+    public long getQueuedCount() {
+        long queued = 0;
+        for (CourseSection section : courses.values()) {
+            queued += section.pendingCount();
+        }
+        return queued;
+    }
+
+    /**
+     * Total number of waitlisted students over all courses.
+     */
+    public long getWaitlistedCount() {
+        long waitlisted = 0;
+        for (CourseSection section : courses.values()) {
+            synchronized (section) {
+                waitlisted += section.waitlist.size();
+            }
+        }
+        return waitlisted;
     }
     
     public void registerCourse(String courseId, int maxCapacity) {
-        courseQueues.put(courseId, new CircularQueue(maxCapacity));
+        int ringSize = Math.max(1, maxCapacity);
+        courses.put(courseId, new CourseSection(
+                concurrent ? new MpscRingQueue(ringSize) : new CircularQueue(ringSize), maxCapacity));
     }
     
+    /**
+     * Queues an enrollment request; fails only for an unknown course.
+     */
     public boolean enrollStudent(String courseId, String studentId) {
-        CircularQueue queue = courseQueues.get(courseId);
-        if (queue == null) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
             return false;
         }
-        return queue.enqueue(studentId);
+        // Concurrent ring is full: move its contents behind the overflow to make room. The request
+        // itself still goes through the ring; appending it to the overflow could put it ahead of
+        // this thread's earlier request stuck behind a claimed but unpublished slot. Such a slot
+        // stops the drain until its producer runs again, so back off outside the section lock,
+        // yielding at first and then parking, rather than spin while holding it.
+        for (int attempt = 0; !section.requests.enqueue(studentId); attempt++) {
+            if (attempt > 0) {
+                if (attempt <= FULL_RING_YIELDS) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(FULL_RING_PARK_NANOS);
+                }
+            }
+            synchronized (section) {
+                section.drainRing();
+            }
+        }
+        return true;
     }
-    
+
+    /**
+     * Admits queued requests in order while seats remain and waitlists the rest. Unknown students
+     * and students already on the roster or waitlist are skipped, and students the timetable
+     * rejects are recorded in getRejections.
+     *
+     * @return the students admitted by this call
+     */
     public List<String> processEnrollment(String courseId, StudentRegistry registry) {
-        CircularQueue queue = courseQueues.get(courseId);
-        if (queue == null) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
             return Collections.emptyList();
         }
 
         List<String> enrolledStudents = new ArrayList<>();
+        synchronized (section) {
+            for (Student student : admitQueued(courseId, section, registry, true)) {
+                enrolledStudents.add(student.getStudentId());
+            }
+        }
+        return enrolledStudents;
+    }
+
+    /**
+     * Processes the queued requests of every course in one run, e.g. when the enrollment window
+     * closes. Admissions, waitlisting and skips are the same as calling processEnrollment for each
+     * course in the scheduler's course order, but the run is organized for thousands of courses:
+     * - Courses without meeting times (admission cannot clash) are processed in parallel on the
+     *   fork/join pool. Each looks up its whole queue in one batched registry call.
+     * - Their admissions are then merged into the students' course lists by one task per partition
+     *   of students, so no two threads touch the same student. A course already on a student's
+     *   list is not added again.
+     * - Courses with meeting times check each admission against the student's current courses,
+     *   so they are processed afterwards, one at a time.
+     * The registry must not change during the run.
+     *
+     * @return course ID -> students admitted, for courses where anyone was admitted
+     */
+    public Map<String, List<String>> processAllEnrollments(StudentRegistry registry) {
+        return processAllEnrollments(registry, true);
+    }
+
+    Map<String, List<String>> processAllEnrollments(StudentRegistry registry, boolean parallel) {
+        Timetable timetable = this.timetable;
+        List<String> courseIds = new ArrayList<>(courses.keySet());
+        CourseSection[] sections = new CourseSection[courseIds.size()];
+        for (int c = 0; c < sections.length; c++) {
+            sections[c] = courses.get(courseIds.get(c));
+        }
+
+        int partitions = parallel ? ForkJoinPool.getCommonPoolParallelism() * 4 : 1;
+        Student[][] admitted = new Student[sections.length][];
+        String[][] admittedIds = new String[sections.length][];
+        int[][] partitionStarts = new int[sections.length][];
+        IntStream unscheduled = IntStream.range(0, sections.length)
+                .filter(c -> timetable == null || !timetable.hasMeetings(courseIds.get(c)));
+        (parallel ? unscheduled.parallel() : unscheduled).forEach(c -> {
+            List<Student> seated;
+            synchronized (sections[c]) {
+                seated = admitQueued(courseIds.get(c), sections[c], registry, false);
+            }
+            // Counting sort by partition, so each merge task reads one slice of every course
+            int[] starts = new int[partitions + 1];
+            for (Student student : seated) starts[partition(student, partitions) + 1]++;
+            for (int p = 0; p < partitions; p++) starts[p + 1] += starts[p];
+            int[] next = Arrays.copyOf(starts, partitions);
+            Student[] sorted = new Student[seated.size()];
+            String[] ids = new String[seated.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Student student = seated.get(i);
+                ids[i] = student.getStudentId();
+                sorted[next[partition(student, partitions)]++] = student;
+            }
+            admitted[c] = sorted;
+            admittedIds[c] = ids;
+            partitionStarts[c] = starts;
+        });
+        IntStream merges = IntStream.range(0, partitions);
+        (parallel ? merges.parallel() : merges).forEach(p -> {
+            for (int c = 0; c < sections.length; c++) {
+                if (admitted[c] == null) continue;
+                for (int i = partitionStarts[c][p]; i < partitionStarts[c][p + 1]; i++) {
+                    Student student = admitted[c][i];
+                    synchronized (student) { // uncontended here; guards against a concurrent processEnrollment
+                        student.addCourse(courseIds.get(c));
+                    }
+                }
+            }
+        });
+
+        Map<String, List<String>> enrolled = new HashMap<>();
+        for (int c = 0; c < sections.length; c++) {
+            List<String> ids;
+            if (admittedIds[c] != null) {
+                ids = Arrays.asList(admittedIds[c]);
+            } else {
+                ids = new ArrayList<>();
+                synchronized (sections[c]) {
+                    for (Student student : admitQueued(courseIds.get(c), sections[c], registry, true)) {
+                        ids.add(student.getStudentId());
+                    }
+                }
+            }
+            if (!ids.isEmpty()) {
+                enrolled.put(courseIds.get(c), ids);
+            }
+        }
+        return enrolled;
+    }
+
+    private static int partition(Student student, int partitions) {
+        return (student.getStudentId().hashCode() & 0x7fffffff) % partitions;
+    }
+
+    // Admits queued requests in order while seats remain and waitlists the rest; the caller holds
+    // the section's lock. The queue is drained and looked up as one batch first. With addCourses
+    // false the admitted students' own course lists are left for the caller to update.
+    private List<Student> admitQueued(String courseId, CourseSection section, StudentRegistry registry, boolean addCourses) {
+        String[] studentIds = section.drainRequests();
+        Student[] found = registry.getStudents(studentIds);
+        List<Student> admitted = new ArrayList<>();
+        int seats = section.seats(courseId, timetable);
+        for (int i = 0; i < studentIds.length; i++) {
+            String studentId = studentIds[i];
+            Student student = found[i];
+            if (student == null || section.roster.containsKey(studentId) || section.waitlisted.containsKey(studentId)) {
+                continue;
+            }
+            // The clash check reads the student's courses and admission adds to them; both run
+            // under the student's monitor so another course's section cannot admit in between
+            synchronized (student) {
+                if (!section.allowed(student, courseId, timetable)) {
+                    continue;
+                }
+                if (section.roster.size() < seats) {
+                    if (addCourses) {
+                        section.admit(student, courseId);
+                    } else {
+                        section.roster.put(studentId, student);
+                    }
+                    admitted.add(student);
+                } else {
+                    section.waitlist(student);
+                }
+            }
+        }
+        return admitted;
+    }
 
-        while (!queue.isEmpty() && enrolledStudents.size() < queue.getCapacity()) {
-            String studentId = queue.dequeue();
-            Student student = registry.getStudent(studentId);
+    /**
+     * Removes the student from the course roster (freeing a seat, which the head of the waitlist
+     * takes) or from the waitlist.
+     *
+     * @return the students promoted into the freed seat, or null if the student was neither
+     *         enrolled nor waitlisted
+     */
+    public List<String> dropStudent(String courseId, String studentId) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
+            return null;
+        }
+        synchronized (section) {
+            Student student = section.roster.remove(studentId);
             if (student != null) {
-                student.addCourse(courseId);
-                enrolledStudents.add(studentId);
+                synchronized (student) {
+                    student.removeCourse(courseId);
+                }
+                return section.promote(courseId, timetable);
             }
+            WaitlistEntry entry = section.waitlisted.remove(studentId);
+            if (entry == null) {
+                return null;
+            }
+            section.waitlist.remove(entry);
+            return Collections.emptyList();
         }
+    }
 
-        return enrolledStudents;
+    /**
+     * Changes the number of seats. Raising it promotes waitlisted students into the new seats;
+     * lowering it below the roster size keeps everyone enrolled but admits nobody new.
+     *
+     * @return the students promoted, or null for an unknown course
+     */
+    public List<String> setCapacity(String courseId, int capacity) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
+            return null;
+        }
+        synchronized (section) {
+            section.capacity = capacity;
+            return section.promote(courseId, timetable);
+        }
+    }
+
+    /**
+     * Applies many capacity changes at once, e.g. after room reallocation at the start of term.
+     *
+     * @return course ID -> students promoted, for courses where anyone was promoted
+     */
+    public Map<String, List<String>> setCapacities(Map<String, Integer> capacities) {
+        Map<String, List<String>> promoted = new HashMap<>();
+        for (Map.Entry<String, Integer> change : capacities.entrySet()) {
+            List<String> students = setCapacity(change.getKey(), change.getValue());
+            if (students != null && !students.isEmpty()) {
+                promoted.put(change.getKey(), students);
+            }
+        }
+        return promoted;
+    }
+
+    public List<String> getEnrolled(String courseId) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
+            return Collections.emptyList();
+        }
+        synchronized (section) {
+            return new ArrayList<>(section.roster.keySet());
+        }
+    }
+
+    /**
+     * Waitlisted student IDs in promotion order.
+     */
+    public List<String> getWaitlist(String courseId) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
+            return Collections.emptyList();
+        }
+        synchronized (section) {
+            return section.waitlistIds();
+        }
     }
-}
\ No newline at end of file
+
+    /**
+     * Students the timetable turned away from the course, with the reason; a student is removed
+     * again once a later request of theirs succeeds.
+     */
+    public Map<String, Timetable.Conflict> getRejections(String courseId) {
+        CourseSection section = courses.get(courseId);
+        if (section == null) {
+            return Collections.emptyMap();
+        }
+        synchronized (section) {
+            return new HashMap<>(section.rejected);
+        }
+    }
+
+    public int getCapacity(String courseId) {
+        CourseSection section = courses.get(courseId);
+        return section == null ? 0 : section.capacity;
+    }
+
+    /**
+     * Visits every course with its capacity, pending requests (front first), roster and waitlist
+     * (promotion order). Used for snapshots; callers must not enroll concurrently if they need a
+     * consistent view.
+     */
+    void forEachCourse(CourseVisitor visitor) {
+        for (Map.Entry<String, CourseSection> entry : courses.entrySet()) {
+            CourseSection section = entry.getValue();
+            synchronized (section) {
+                visitor.visit(entry.getKey(), section.capacity, section.pendingIds(),
+                        new ArrayList<>(section.roster.keySet()), section.waitlistIds());
+            }
+        }
+    }
+
+    interface CourseVisitor {
+        void visit(String courseId, int capacity, List<String> pending, List<String> enrolled, List<String> waitlisted);
+    }
+
+    /**
+     * Restores a course's roster and waitlist from a snapshot. Students already carry the course
+     * in their own course lists, so they are not added again.
+     */
+    void restoreCourse(String courseId, List<String> enrolled, List<String> waitlisted, StudentRegistry registry) {
+        CourseSection section = courses.get(courseId);
+        synchronized (section) {
+            for (String studentId : enrolled) {
+                Student student = registry.getStudent(studentId);
+                if (student != null) section.roster.put(studentId, student);
+            }
+            for (String studentId : waitlisted) {
+                Student student = registry.getStudent(studentId);
+                if (student != null) section.waitlist(student);
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+import java.util.*;
+
+/**
+ * Read-Optimized Fee Index
+ * An immutable, column-oriented copy of the fee records for read-heavy periods (e.g. after the
+ * nightly load), built in O(n) from records already in date order.
+ * Data Structures Used:
+ * - Sorted columns: long[] epoch millis, double[] amounts, int[] student codes and int[] payment
+ *   type codes, all indexed by position in (date, arrival) order. A date range is two binary
+ *   searches over the long[] and then a sequential walk of adjacent array slots, with no node or
+ *   Date to dereference.
+ * - Dictionaries: student IDs and payment types are stored once each and referred to by int code,
+ *   so a student filter compares ints and a record costs 24 bytes of columns.
+ * - Prefix sums (double[n + 1]) of the amounts: the total of any range is one subtraction.
+ * Time Complexity: build O(n), range count and total O(log n), range scan O(log n + k).
+ * Instances never change; FeeTracker hands out a new one after its records change.
+ */
+public final class FeeColumns {
+    /**
+     * Receives one record of a range scan without a FeeRecord being created.
+     */
+    public interface FeeVisitor {
+        void visit(String studentId, double amount, long date, String paymentType);
+    }
+
+    private final int size;
+    private final long[] dates;
+    private final double[] amounts;
+    private final int[] students;
+    private final int[] types;
+    private final double[] prefixSums;
+    private final String[] studentIds;
+    private final String[] paymentTypes;
+    private final Map<String, Integer> studentCodes;
+
+    private FeeColumns(int size, long[] dates, double[] amounts, int[] students, int[] types,
+                       String[] studentIds, Map<String, Integer> studentCodes, String[] paymentTypes) {
+        this.size = size;
+        this.dates = dates;
+        this.amounts = amounts;
+        this.students = students;
+        this.types = types;
+        this.studentIds = studentIds;
+        this.studentCodes = studentCodes;
+        this.paymentTypes = paymentTypes;
+        this.prefixSums = new double[size + 1];
+        for (int i = 0; i < size; i++) {
+            prefixSums[i + 1] = prefixSums[i] + amounts[i];
+        }
+    }
+
+    /**
+     * Builds the columns in one pass over records in ascending date order.
+     *
+     * @throws IllegalArgumentException if a record is dated before its predecessor
+     */
+    public static FeeColumns build(Collection<FeeRecord> sortedRecords) {
+        return build(sortedRecords.iterator(), sortedRecords.size());
+    }
+
+    static FeeColumns build(Iterator<FeeRecord> sortedRecords, int size) {
+        long[] dates = new long[size];
+        double[] amounts = new double[size];
+        int[] students = new int[size];
+        int[] types = new int[size];
+        Map<String, Integer> studentCodes = new HashMap<>();
+        List<String> studentIds = new ArrayList<>();
+        Map<String, Integer> typeCodes = new HashMap<>();
+        List<String> paymentTypes = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            FeeRecord record = sortedRecords.next();
+            long date = record.getTransactionDate().getTime();
+            if (i > 0 && date < dates[i - 1]) {
+                throw new IllegalArgumentException("Fee records are not in date order at record " + i);
+            }
+            dates[i] = date;
+            amounts[i] = record.getAmount();
+            students[i] = code(record.getStudentId(), studentCodes, studentIds);
+            types[i] = code(record.getPaymentType(), typeCodes, paymentTypes);
+        }
+        return new FeeColumns(size, dates, amounts, students, types,
+                studentIds.toArray(new String[0]), studentCodes, paymentTypes.toArray(new String[0]));
+    }
+
+    private static int code(String value, Map<String, Integer> codes, List<String> values) {
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int countFeesInRange(Date startDate, Date endDate) {
+        long start = startDate.getTime();
+        long end = endDate.getTime();
+        return start > end ? 0 : firstAfter(end) - firstAtOrAfter(start);
+    }
+
+    /**
+     * Total amount dated within [startDate, endDate] from the prefix sums, O(log n).
+     */
+    public double sumFeesInRange(Date startDate, Date endDate) {
+        long start = startDate.getTime();
+        long end = endDate.getTime();
+        if (start > end) {
+            return 0.0;
+        }
+        return prefixSums[firstAfter(end)] - prefixSums[firstAtOrAfter(start)];
+    }
+
+    /**
+     * Total the student paid within [startDate, endDate]: a sequential scan of the range comparing
+     * int student codes, O(log n + k) for k records in the range.
+     */
+    public double sumPaidInRange(String studentId, Date startDate, Date endDate) {
+        Integer code = studentCodes.get(studentId);
+        if (code == null) {
+            return 0.0;
+        }
+        int student = code;
+        double paid = 0.0;
+        for (int i = firstAtOrAfter(startDate.getTime()), to = firstAfter(endDate.getTime()); i < to; i++) {
+            if (students[i] == student) {
+                paid += amounts[i];
+            }
+        }
+        return paid;
+    }
+
+    /**
+     * Visits the records dated within [startDate, endDate] in (date, arrival) order.
+     */
+    public void forEachInRange(Date startDate, Date endDate, FeeVisitor visitor) {
+        for (int i = firstAtOrAfter(startDate.getTime()), to = firstAfter(endDate.getTime()); i < to; i++) {
+            visitor.visit(studentIds[students[i]], amounts[i], dates[i], paymentTypes[types[i]]);
+        }
+    }
+
+    /**
+     * The records dated within [startDate, endDate] as new FeeRecord objects, for callers that
+     * need FeeTracker's result type.
+     */
+    public List<FeeRecord> getFeeRecordsInRange(Date startDate, Date endDate) {
+        int from = firstAtOrAfter(startDate.getTime());
+        int to = firstAfter(endDate.getTime());
+        List<FeeRecord> records = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            records.add(new FeeRecord(studentIds[students[i]], amounts[i], new Date(dates[i]), paymentTypes[types[i]]));
+        }
+        return records;
+    }
+
+    private int firstAtOrAfter(long time) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private int firstAfter(long time) {
+        return time == Long.MAX_VALUE ? size : firstAtOrAfter(time + 1);
+    }
+}
@@ -1,4 +1,9 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.function.ObjDoubleConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 class FeeRecord implements Comparable<FeeRecord> {
     private String studentId;
@@ -19,6 +24,8 @@ class FeeRecord implements Comparable<FeeRecord> {
     public Date getTransactionDate() { return transactionDate; }
     public String getPaymentType() { return paymentType; }
     
+    // Not a unique key: one student may pay several times at the same instant. FeeTracker
+    // therefore keys records by date and arrival order, never by this ordering.
     @Override
     public int compareTo(FeeRecord other) {
         int dateCompare = this.transactionDate.compareTo(other.transactionDate);
@@ -33,19 +40,185 @@ class FeeRecord implements Comparable<FeeRecord> {
     }
 }
 
+/**
+ * Tree node for one transaction date. Every record with that date lives in the node: the first
+ * inline and any later ones in an overflow bucket, in arrival order, so a record's key is
+ * (date, arrival sequence) and batch-timestamped feeds add to one node instead of growing the
+ * tree. The node also aggregates its whole subtree (record count, amount sum, min and max), so a
+ * date range can be totalled from O(log n) nodes. Every change to a node's records or children
+ * must be followed by update(), children first.
+ */
 class AVLNode {
+    final long date;
     FeeRecord record;
+    Bucket more;
     AVLNode left, right;
     int height;
+    int count;
+    double sum;
+    double min;
+    double max;
     
     public AVLNode(FeeRecord record) {
+        this.date = record.getTransactionDate().getTime();
         this.record = record;
         this.height = 1;
+        this.count = 1;
+        this.sum = this.min = this.max = record.getAmount();
+    }
+
+    void append(FeeRecord record) {
+        if (more == null) {
+            more = new Bucket();
+        }
+        more.add(record);
+    }
+
+    // Records dated exactly at this node
+    int size() {
+        return more == null ? 1 : 1 + more.size;
+    }
+
+    FeeRecord get(int index) {
+        return index == 0 ? record : more.records[index - 1];
+    }
+
+    // Recomputes height and aggregates from the node's records and children
+    void update() {
+        double amount = record.getAmount();
+        int h = 0;
+        count = 1;
+        sum = min = max = amount;
+        if (more != null) {
+            count += more.size;
+            sum += more.sum;
+            min = Math.min(min, more.min);
+            max = Math.max(max, more.max);
+        }
+        if (left != null) {
+            h = left.height;
+            count += left.count;
+            sum += left.sum;
+            min = Math.min(min, left.min);
+            max = Math.max(max, left.max);
+        }
+        if (right != null) {
+            h = Math.max(h, right.height);
+            count += right.count;
+            sum += right.sum;
+            min = Math.min(min, right.min);
+            max = Math.max(max, right.max);
+        }
+        height = h + 1;
+    }
+
+    /**
+     * Records after the first sharing the node's date, with running aggregates so that an append
+     * stays O(1) however many records share the timestamp.
+     */
+    static final class Bucket {
+        FeeRecord[] records = new FeeRecord[4];
+        int size;
+        double sum;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(FeeRecord record) {
+            if (size == records.length) {
+                records = Arrays.copyOf(records, size * 2);
+            }
+            records[size++] = record;
+            double amount = record.getAmount();
+            sum += amount;
+            min = Math.min(min, amount);
+            max = Math.max(max, amount);
+        }
     }
 }
 
+/**
+ * One student's fees: running totals per payment type (indexed by the tracker's interned type
+ * numbers) and the student's records sorted by date, so a date range is a binary search plus a
+ * walk over just the matching records. Dates are kept in a parallel long[] so ordering and
+ * searching never dereference the records. Records with equal dates keep their arrival order.
+ */
+class StudentLedger {
+    double[] totals = new double[4];
+    double totalPaid;
+    double amountDue;
+    FeeRecord[] records = new FeeRecord[4];
+    long[] dates = new long[4];
+    int count;
+
+    void add(FeeRecord record, int paymentType) {
+        if (paymentType >= totals.length) {
+            totals = Arrays.copyOf(totals, Math.max(paymentType + 1, totals.length * 2));
+        }
+        totals[paymentType] += record.getAmount();
+        totalPaid += record.getAmount();
+        if (count == records.length) {
+            records = Arrays.copyOf(records, count * 2);
+            dates = Arrays.copyOf(dates, count * 2);
+        }
+        // Records mostly arrive in date order, so this is usually an append
+        long date = record.getTransactionDate().getTime();
+        int at = count;
+        while (at > 0 && dates[at - 1] > date) {
+            at--;
+        }
+        System.arraycopy(records, at, records, at + 1, count - at);
+        System.arraycopy(dates, at, dates, at + 1, count - at);
+        records[at] = record;
+        dates[at] = date;
+        count++;
+    }
+
+    // Index of the first record dated at or after the given time
+    int firstAtOrAfter(long time) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (dates[mid] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
+
+/**
+ * Fee Tracking Module
+ * Data Structures Used:
+ * - AVL tree with one node per transaction date holding every record of that date in arrival
+ *   order: date-range queries over the whole school in O(log n + k). No record is ever dropped,
+ *   and thousands of records sharing one timestamp cost one node, not thousands. Each node also
+ *   carries the count, sum, min and max amount of its subtree, so totals over any date range are
+ *   O(log n) without visiting the records.
+ * - Per-student ledger index (HashMap student ID -> StudentLedger) kept in step with the tree:
+ *   running totals per payment type and the student's records in date order, so a student's
+ *   total paid and outstanding balance are O(1) and their history in a date range is
+ *   O(log m + k) for m records of that student, without touching the tree.
+ * - Read-optimized columns (FeeColumns) built on demand for read-heavy periods.
+ * Payment types are interned to small ints, so a per-type total is one array slot.
+ */
 public class FeeTracker {
     private AVLNode root;
+    private int size;
+    private TransactionJournal journal;
+    private final Map<String, StudentLedger> ledgers = new HashMap<>();
+    private final Map<String, Integer> paymentTypeIds = new HashMap<>();
+    private final List<String> paymentTypes = new ArrayList<>();
+    private FeeColumns columns; // built on demand, dropped on every change
+
+    /**
+     * Journals every subsequent fee record before it is applied to the tree; null detaches.
+     */
+    public void setJournal(TransactionJournal journal) {
+        this.journal = journal;
+    }
     
     private int height(AVLNode node) {
         return node == null ? 0 : node.height;
@@ -62,8 +235,8 @@ public class FeeTracker {
         x.right = y;
         y.left = T2;
         
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
+        y.update();
+        x.update();
         
         return x;
     }
@@ -75,51 +248,249 @@ public class FeeTracker {
         y.left = x;
         x.right = T2;
         
-        x.height = Math.max(height(x.left), height(x.right)) + 1;
-        y.height = Math.max(height(y.left), height(y.right)) + 1;
+        x.update();
+        y.update();
         
         return y;
     }
     
     public void addFeeRecord(FeeRecord record) {
-        root = insert(root, record);
+        journalFee(record);
+        apply(record);
+    }
+
+    // addFeeRecord in two steps, so a concurrent caller can wait for the journal to make the
+    // record durable before taking its lock on the tracker and applying it
+    void journalFee(FeeRecord record) {
+        if (journal != null) {
+            try {
+                journal.appendFee(record);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Fee record not journaled, so it was not applied", e);
+            }
+        }
     }
     
-    private AVLNode insert(AVLNode node, FeeRecord record) {
+    public void addFeeRecords(Collection<FeeRecord> records) {
+        journalFees(records);
+        for (FeeRecord record : records) {
+            apply(record);
+        }
+    }
+
+    void journalFees(Collection<FeeRecord> records) {
+        if (journal != null) {
+            try {
+                journal.appendFees(records);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Fee records not journaled, so they were not applied", e);
+            }
+        }
+    }
+
+    void apply(FeeRecord record) {
+        root = insert(root, record, record.getTransactionDate().getTime());
+        size++;
+        index(record);
+        columns = null;
+    }
+
+    /**
+     * A read-optimized columnar copy of every record (see FeeColumns). It is built in O(n) from an
+     * in-order walk on the first call after the records change and shared until the next change,
+     * so a read-mostly period pays for one build.
+     */
+    public FeeColumns getColumns() {
+        if (columns == null) {
+            columns = FeeColumns.build(iterateFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)), size);
+        }
+        return columns;
+    }
+
+    private void index(FeeRecord record) {
+        ledger(record.getStudentId()).add(record, paymentTypeId(record.getPaymentType()));
+    }
+
+    private StudentLedger ledger(String studentId) {
+        return ledgers.computeIfAbsent(studentId, k -> new StudentLedger());
+    }
+
+    private int paymentTypeId(String paymentType) {
+        Integer id = paymentTypeIds.get(paymentType);
+        if (id == null) {
+            id = paymentTypes.size();
+            paymentTypeIds.put(paymentType, id);
+            paymentTypes.add(paymentType);
+        }
+        return id;
+    }
+
+    /**
+     * Total the student has paid over all payment types, O(1).
+     */
+    public double getTotalPaid(String studentId) {
+        StudentLedger ledger = ledgers.get(studentId);
+        return ledger == null ? 0.0 : ledger.totalPaid;
+    }
+
+    /**
+     * Total the student has paid under one payment type, O(1).
+     */
+    public double getTotalPaid(String studentId, String paymentType) {
+        StudentLedger ledger = ledgers.get(studentId);
+        Integer type = paymentTypeIds.get(paymentType);
+        return ledger == null || type == null || type >= ledger.totals.length ? 0.0 : ledger.totals[type];
+    }
+
+    /**
+     * The student's totals by payment type, for the types they have paid under.
+     */
+    public Map<String, Double> getPaymentTotals(String studentId) {
+        Map<String, Double> totals = new LinkedHashMap<>();
+        StudentLedger ledger = ledgers.get(studentId);
+        if (ledger != null) {
+            for (int type = 0; type < ledger.totals.length; type++) {
+                if (ledger.totals[type] != 0.0) {
+                    totals.put(paymentTypes.get(type), ledger.totals[type]);
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * The student's records dated within [startDate, endDate] in date order, O(log m + k).
+     */
+    public List<FeeRecord> getStudentFeeHistory(String studentId, Date startDate, Date endDate) {
+        List<FeeRecord> history = new ArrayList<>();
+        StudentLedger ledger = ledgers.get(studentId);
+        if (ledger == null) {
+            return history;
+        }
+        long end = endDate.getTime();
+        for (int i = ledger.firstAtOrAfter(startDate.getTime()); i < ledger.count && ledger.dates[i] <= end; i++) {
+            history.add(ledger.records[i]);
+        }
+        return history;
+    }
+
+    /**
+     * Sets what the student owes in total (e.g. the term's tuition); journaled like fee records.
+     */
+    public void setAmountDue(String studentId, double amountDue) {
+        if (journal != null) {
+            try {
+                journal.appendAmountDue(studentId, amountDue);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Amount due not journaled, so it was not applied", e);
+            }
+        }
+        ledger(studentId).amountDue = amountDue;
+    }
+
+    public double getAmountDue(String studentId) {
+        StudentLedger ledger = ledgers.get(studentId);
+        return ledger == null ? 0.0 : ledger.amountDue;
+    }
+
+    /**
+     * Amount due minus everything paid, O(1); negative when the student has overpaid.
+     */
+    public double getOutstandingBalance(String studentId) {
+        StudentLedger ledger = ledgers.get(studentId);
+        return ledger == null ? 0.0 : ledger.amountDue - ledger.totalPaid;
+    }
+
+    /**
+     * Visits every student with a non-zero amount due. Used for snapshots.
+     */
+    void forEachAmountDue(ObjDoubleConsumer<String> action) {
+        for (Map.Entry<String, StudentLedger> entry : ledgers.entrySet()) {
+            if (entry.getValue().amountDue != 0.0) {
+                action.accept(entry.getKey(), entry.getValue().amountDue);
+            }
+        }
+    }
+
+    /**
+     * Replaces the tree with a perfectly balanced one built from records already in ascending
+     * date order (equal dates in arrival order), in O(n) instead of n rotating inserts. Used when
+     * restoring a snapshot.
+     */
+    void loadSorted(List<FeeRecord> sortedRecords) {
+        List<AVLNode> nodes = new ArrayList<>();
+        for (FeeRecord record : sortedRecords) {
+            AVLNode last = nodes.isEmpty() ? null : nodes.get(nodes.size() - 1);
+            if (last != null && last.date == record.getTransactionDate().getTime()) {
+                last.append(record);
+            } else {
+                nodes.add(new AVLNode(record));
+            }
+        }
+        root = buildBalanced(nodes, 0, nodes.size() - 1);
+        size = sortedRecords.size();
+        columns = null;
+        ledgers.clear();
+        for (FeeRecord record : sortedRecords) {
+            index(record);
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getHeight() {
+        return height(root);
+    }
+
+    private AVLNode buildBalanced(List<AVLNode> nodes, int lo, int hi) {
+        if (lo > hi) return null;
+        int mid = (lo + hi) >>> 1;
+        AVLNode node = nodes.get(mid);
+        node.left = buildBalanced(nodes, lo, mid - 1);
+        node.right = buildBalanced(nodes, mid + 1, hi);
+        node.update();
+        return node;
+    }
+
+    private AVLNode insert(AVLNode node, FeeRecord record, long date) {
         if (node == null) {
             return new AVLNode(record);
         }
         
-        if (record.compareTo(node.record) < 0) {
-            node.left = insert(node.left, record);
-        } else if (record.compareTo(node.record) > 0) {
-            node.right = insert(node.right, record);
+        if (date < node.date) {
+            node.left = insert(node.left, record, date);
+        } else if (date > node.date) {
+            node.right = insert(node.right, record, date);
         } else {
-            return node; // Duplicate records not allowed
+            node.append(record); // Same date: joins the node's bucket, heights are unchanged
+            node.update();
+            return node;
         }
         
-        node.height = 1 + Math.max(height(node.left), height(node.right));
+        node.update();
         
         int balance = getBalance(node);
         
         // Left Left Case
-        if (balance > 1 && record.compareTo(node.left.record) < 0) {
+        if (balance > 1 && date < node.left.date) {
             return rightRotate(node);
         }
         
         // Right Right Case
-        if (balance < -1 && record.compareTo(node.right.record) > 0) {
+        if (balance < -1 && date > node.right.date) {
             return leftRotate(node);
         }
         
         // Left Right Case
-        if (balance > 1 && record.compareTo(node.left.record) > 0) {
+        if (balance > 1 && date > node.left.date) {
             node.left = leftRotate(node.left);
             return rightRotate(node);
         }
         
         // Right Left Case
-        if (balance < -1 && record.compareTo(node.right.record) < 0) {
+        if (balance < -1 && date < node.right.date) {
             node.right = rightRotate(node.right);
             return leftRotate(node);
         }
@@ -129,20 +500,193 @@ public class FeeTracker {
     
     public List<FeeRecord> getFeeRecordsInRange(Date startDate, Date endDate) {
         List<FeeRecord> result = new ArrayList<>();
-        inOrderRangeSearch(root, startDate, endDate, result);
+        rangeSearch(root, startDate.getTime(), endDate.getTime(), result);
         return result;
     }
-    
-    private void inOrderRangeSearch(AVLNode node, Date start, Date end, List<FeeRecord> result) {
+
+    /**
+     * Total amount of the records dated within [startDate, endDate], O(log n).
+     */
+    public double sumFeesInRange(Date startDate, Date endDate) {
+        return summarizeFeesInRange(startDate, endDate).getSum();
+    }
+
+    /**
+     * Number of records dated within [startDate, endDate], O(log n).
+     */
+    public int countFeesInRange(Date startDate, Date endDate) {
+        return summarizeFeesInRange(startDate, endDate).getCount();
+    }
+
+    /**
+     * Count, sum, min and max amount of the records dated within [startDate, endDate], combined
+     * from the subtree aggregates along the two boundary paths: O(log n), no records are visited.
+     */
+    public FeeSummary summarizeFeesInRange(Date startDate, Date endDate) {
+        long start = startDate.getTime();
+        long end = endDate.getTime();
+        FeeSummary summary = new FeeSummary();
+        // Descend to the first node inside the range; both range edges lie below it
+        AVLNode split = root;
+        while (split != null) {
+            if (split.date < start) {
+                split = split.right;
+            } else if (split.date > end) {
+                split = split.left;
+            } else {
+                break;
+            }
+        }
+        if (split == null) {
+            return summary;
+        }
+        summary.addNode(split);
+        // Left edge: every node dated >= start brings itself and its whole right subtree
+        for (AVLNode node = split.left; node != null; ) {
+            if (node.date >= start) {
+                summary.addNode(node);
+                summary.addSubtree(node.right);
+                node = node.left;
+            } else {
+                node = node.right;
+            }
+        }
+        // Right edge: every node dated <= end brings itself and its whole left subtree
+        for (AVLNode node = split.right; node != null; ) {
+            if (node.date <= end) {
+                summary.addNode(node);
+                summary.addSubtree(node.left);
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Aggregate of the fee records in a date range; min and max are NaN when it is empty.
+     */
+    public static final class FeeSummary {
+        private int count;
+        private double sum;
+        private double min = Double.NaN;
+        private double max = Double.NaN;
+
+        public int getCount() { return count; }
+        public double getSum() { return sum; }
+        public double getMin() { return min; }
+        public double getMax() { return max; }
+
+        // Only the records dated at the node, not its children
+        private void addNode(AVLNode node) {
+            double amount = node.record.getAmount();
+            add(1, amount, amount, amount);
+            if (node.more != null) {
+                add(node.more.size, node.more.sum, node.more.min, node.more.max);
+            }
+        }
+
+        private void addSubtree(AVLNode node) {
+            if (node != null) {
+                add(node.count, node.sum, node.min, node.max);
+            }
+        }
+
+        private void add(int count, double sum, double min, double max) {
+            if (this.count == 0) {
+                this.min = min;
+                this.max = max;
+            } else {
+                this.min = Math.min(this.min, min);
+                this.max = Math.max(this.max, max);
+            }
+            this.count += count;
+            this.sum += sum;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("FeeSummary{Count: %d, Total: $%.2f, Min: $%.2f, Max: $%.2f}", count, sum, min, max);
+        }
+    }
+
+    /**
+     * Lazily walks the records dated within [startDate, endDate] in (date, arrival) order without
+     * materializing them. The cursor holds at most O(log n) nodes; it is not fail-fast, so
+     * the tracker must not be modified while it is being consumed.
+     */
+    public Iterator<FeeRecord> iterateFeeRecordsInRange(Date startDate, Date endDate) {
+        return new RangeCursor(root, startDate.getTime(), endDate.getTime());
+    }
+
+    /**
+     * The range cursor as a stream, in (date, arrival) order. Not reported as SORTED: records
+     * sharing a date come out in arrival order, not in FeeRecord's natural (date, studentId) order,
+     * so a sorted() downstream must really sort.
+     */
+    public Stream<FeeRecord> streamFeeRecordsInRange(Date startDate, Date endDate) {
+        Spliterator<FeeRecord> spliterator = Spliterators.spliteratorUnknownSize(
+                iterateFeeRecordsInRange(startDate, endDate),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private void rangeSearch(AVLNode node, long start, long end, List<FeeRecord> result) {
         if (node == null) return;
-        
-        inOrderRangeSearch(node.left, start, end, result);
-        
-        if (!node.record.getTransactionDate().before(start) && 
-            !node.record.getTransactionDate().after(end)) {
+
+        if (node.date > start) {
+            rangeSearch(node.left, start, end, result);
+        }
+        if (node.date >= start && node.date <= end) {
             result.add(node.record);
+            if (node.more != null) {
+                result.addAll(Arrays.asList(node.more.records).subList(0, node.more.size));
+            }
+        }
+        if (node.date < end) {
+            rangeSearch(node.right, start, end, result);
         }
-        
-        inOrderRangeSearch(node.right, start, end, result);
     }
-}
\ No newline at end of file
+
+    private static final class RangeCursor implements Iterator<FeeRecord> {
+        private final Deque<AVLNode> stack = new ArrayDeque<>();
+        private final long end;
+        private AVLNode current; // node whose records are being returned
+        private int index;
+
+        RangeCursor(AVLNode root, long start, long end) {
+            this.end = end;
+            // Seek to the first node dated >= start, keeping the ancestors still to visit
+            AVLNode node = root;
+            while (node != null) {
+                if (node.date >= start) {
+                    stack.push(node);
+                    node = node.left;
+                } else {
+                    node = node.right;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return (current != null && index < current.size()) || (!stack.isEmpty() && stack.peek().date <= end);
+        }
+
+        @Override
+        public FeeRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (current == null || index == current.size()) {
+                current = stack.pop();
+                index = 0;
+                for (AVLNode child = current.right; child != null; child = child.left) {
+                    stack.push(child);
+                }
+            }
+            return current.get(index++);
+        }
+    }
+}
@@ -0,0 +1,509 @@
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Grade Analytics Module
+ * Whole-school reports over the columnar grade store of PerformanceGraph: per-subject summary
+ * statistics with exact percentiles, grade histograms, cohort comparisons by grade level, and
+ * approximate percentiles from a mergeable quantile sketch.
+ * Every subject is one contiguous double[] column (NaN = no grade), so a report is a scan of
+ * primitive arrays cut into LEAF_SIZE ranges on the common ForkJoinPool. Leaves produce partial
+ * results (moments plus the grades they saw, bucket counts, sketches) that are merged on the way
+ * back up; exact percentiles then come from one Arrays.parallelSort per subject.
+ * Time Complexity: stats O(n log n) per subject (the sort), histogram and sketch O(n), all split
+ * over the pool's workers.
+ * Reports read the live columns, so grades must not be added while a report runs.
+ */
+public class GradeAnalytics {
+    static final int LEAF_SIZE = 1 << 14;
+
+    private final PerformanceGraph graph;
+    private final StudentRegistry registry;
+    private int[] cohortOf;      // dense student number -> cohort number, -1 if not in the registry
+    private int[] cohortLevels;  // cohort number -> grade level
+
+    /**
+     * @param registry where cohort reports look up each student's grade level; may be null if
+     *                 cohortStats is not used
+     */
+    public GradeAnalytics(PerformanceGraph graph, StudentRegistry registry) {
+        this.graph = graph;
+        this.registry = registry;
+    }
+
+    /**
+     * Analytics over a copy of the graph's columns, with every student's grade level looked up
+     * now, so reports can run while grades and students keep being added. The caller keeps both
+     * modules unchanged for the duration of this call.
+     */
+    static GradeAnalytics ofCopy(PerformanceGraph graph, StudentRegistry registry) {
+        GradeAnalytics analytics = new GradeAnalytics(graph.reportCopy(), registry);
+        analytics.resolveCohorts();
+        return analytics;
+    }
+
+    /**
+     * Exact statistics of one subject, or null if nobody has a grade in it.
+     */
+    public SubjectStats subjectStats(String subject) {
+        double[] column = graph.column(subject);
+        if (column == null) {
+            return null;
+        }
+        Moments moments = reduce(graph.getStudentCount(), new RangeReducer<Moments>() {
+            public Moments leaf(int from, int to) {
+                Moments leaf = new Moments(to - from);
+                for (int i = from; i < to; i++) {
+                    if (!Double.isNaN(column[i])) leaf.add(column[i]);
+                }
+                return leaf;
+            }
+
+            public Moments merge(Moments left, Moments right) {
+                return left.merge(right);
+            }
+        });
+        return moments.count == 0 ? null : moments.toStats(subject);
+    }
+
+    /**
+     * Exact statistics of every subject, by subject name.
+     */
+    public Map<String, SubjectStats> allSubjectStats() {
+        Map<String, SubjectStats> stats = new TreeMap<>();
+        for (String subject : graph.getSubjects()) {
+            SubjectStats subjectStats = subjectStats(subject);
+            if (subjectStats != null) {
+                stats.put(subject, subjectStats);
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Grade distribution of a subject over buckets equal-width buckets spanning [min, max);
+     * grades outside the range are counted in the first or last bucket.
+     */
+    public long[] histogram(String subject, double min, double max, int buckets) {
+        if (buckets <= 0 || !(max > min)) {
+            throw new IllegalArgumentException("Need at least one bucket and max > min");
+        }
+        double[] column = graph.column(subject);
+        if (column == null) {
+            return new long[buckets];
+        }
+        double scale = buckets / (max - min);
+        return reduce(graph.getStudentCount(), new RangeReducer<long[]>() {
+            public long[] leaf(int from, int to) {
+                long[] counts = new long[buckets];
+                for (int i = from; i < to; i++) {
+                    double grade = column[i];
+                    if (!Double.isNaN(grade)) {
+                        counts[Math.max(0, Math.min(buckets - 1, (int) ((grade - min) * scale)))]++;
+                    }
+                }
+                return counts;
+            }
+
+            public long[] merge(long[] left, long[] right) {
+                for (int b = 0; b < buckets; b++) left[b] += right[b];
+                return left;
+            }
+        });
+    }
+
+    /**
+     * Exact statistics of one subject per grade level, by grade level. Students missing from the
+     * registry are left out. Grade levels are looked up once per GradeAnalytics instance and then
+     * reused for every subject, so take one instance per report.
+     */
+    public Map<Integer, SubjectStats> cohortStats(String subject) {
+        double[] column = graph.column(subject);
+        Map<Integer, SubjectStats> stats = new TreeMap<>();
+        if (column == null) {
+            return stats;
+        }
+        resolveCohorts();
+        int[] cohortOf = this.cohortOf;
+        int cohorts = cohortLevels.length;
+        Moments[] merged = reduce(cohortOf.length, new RangeReducer<Moments[]>() {
+            public Moments[] leaf(int from, int to) {
+                Moments[] leaf = new Moments[cohorts];
+                for (int i = from; i < to; i++) {
+                    int cohort = cohortOf[i];
+                    if (cohort < 0 || Double.isNaN(column[i])) continue;
+                    if (leaf[cohort] == null) leaf[cohort] = new Moments(64);
+                    leaf[cohort].add(column[i]);
+                }
+                return leaf;
+            }
+
+            public Moments[] merge(Moments[] left, Moments[] right) {
+                for (int c = 0; c < cohorts; c++) {
+                    left[c] = left[c] == null ? right[c] : right[c] == null ? left[c] : left[c].merge(right[c]);
+                }
+                return left;
+            }
+        });
+        for (int c = 0; c < cohorts; c++) {
+            if (merged[c] != null) {
+                stats.put(cohortLevels[c], merged[c].toStats(subject + " (grade " + cohortLevels[c] + ")"));
+            }
+        }
+        return stats;
+    }
+
+    // One registry lookup per student, in parallel; grade levels are then numbered densely
+    private synchronized void resolveCohorts() {
+        if (cohortOf != null) {
+            return;
+        }
+        int students = graph.getStudentCount();
+        int[] levels = new int[students];
+        boolean[] found = new boolean[students];
+        reduce(students, new RangeReducer<Void>() {
+            public Void leaf(int from, int to) {
+                for (int i = from; i < to; i++) {
+                    Student student = registry.getStudent(graph.studentIdAt(i));
+                    if (student != null) {
+                        levels[i] = student.getGradeLevel();
+                        found[i] = true;
+                    }
+                }
+                return null;
+            }
+
+            public Void merge(Void left, Void right) {
+                return null;
+            }
+        });
+        Map<Integer, Integer> cohortNumbers = new TreeMap<>();
+        for (int i = 0; i < students; i++) {
+            if (found[i]) cohortNumbers.putIfAbsent(levels[i], cohortNumbers.size());
+        }
+        int[] cohortOf = new int[students];
+        for (int i = 0; i < students; i++) {
+            cohortOf[i] = found[i] ? cohortNumbers.get(levels[i]) : -1;
+        }
+        cohortLevels = new int[cohortNumbers.size()];
+        cohortNumbers.forEach((level, cohort) -> cohortLevels[cohort] = level);
+        this.cohortOf = cohortOf;
+    }
+
+    /**
+     * Approximate quantiles of a subject from a QuantileSketch built in parallel (one sketch per
+     * leaf, merged). Rank error is about 1% with the default accuracy.
+     */
+    public QuantileSketch sketch(String subject) {
+        double[] column = graph.column(subject);
+        if (column == null) {
+            return new QuantileSketch(QuantileSketch.DEFAULT_K);
+        }
+        return reduce(graph.getStudentCount(), new RangeReducer<QuantileSketch>() {
+            public QuantileSketch leaf(int from, int to) {
+                QuantileSketch sketch = new QuantileSketch(QuantileSketch.DEFAULT_K);
+                for (int i = from; i < to; i++) {
+                    if (!Double.isNaN(column[i])) sketch.update(column[i]);
+                }
+                return sketch;
+            }
+
+            public QuantileSketch merge(QuantileSketch left, QuantileSketch right) {
+                left.merge(right);
+                return left;
+            }
+        });
+    }
+
+    private interface RangeReducer<T> {
+        T leaf(int from, int to);
+        T merge(T left, T right);
+    }
+
+    private static <T> T reduce(int size, RangeReducer<T> reducer) {
+        return ForkJoinPool.commonPool().invoke(new RangeTask<>(reducer, 0, size));
+    }
+
+    private static final class RangeTask<T> extends RecursiveTask<T> {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeReducer<T> reducer;
+        private final int from;
+        private final int to;
+
+        RangeTask(RangeReducer<T> reducer, int from, int to) {
+            this.reducer = reducer;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected T compute() {
+            if (to - from <= LEAF_SIZE) {
+                return reducer.leaf(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask<T> left = new RangeTask<>(reducer, from, mid);
+            left.fork();
+            T right = new RangeTask<>(reducer, mid, to).compute();
+            return reducer.merge(left.join(), right);
+        }
+    }
+
+    /**
+     * Count, sum, sum of squares, min and max of a range, plus the grades themselves so exact
+     * percentiles can be taken once every range has been merged.
+     */
+    private static final class Moments {
+        double[] values;
+        int count;
+        double sum;
+        double sumSquares;
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        Moments(int capacity) {
+            values = new double[Math.max(1, capacity)];
+        }
+
+        void add(double value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+            sum += value;
+            sumSquares += value * value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        Moments merge(Moments other) {
+            if (values.length - count < other.count) {
+                values = Arrays.copyOf(values, count + other.count);
+            }
+            System.arraycopy(other.values, 0, values, count, other.count);
+            count += other.count;
+            sum += other.sum;
+            sumSquares += other.sumSquares;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            return this;
+        }
+
+        SubjectStats toStats(String label) {
+            Arrays.parallelSort(values, 0, count);
+            return new SubjectStats(label, values, count, sum, sumSquares);
+        }
+    }
+
+    /**
+     * Summary of one subject (or one cohort within a subject). Percentiles are nearest-rank.
+     */
+    public static final class SubjectStats {
+        private final String label;
+        private final int count;
+        private final double mean;
+        private final double standardDeviation;
+        private final double min, p10, p25, median, p75, p90, p99, max;
+
+        SubjectStats(String label, double[] sorted, int count, double sum, double sumSquares) {
+            this.label = label;
+            this.count = count;
+            this.mean = sum / count;
+            this.standardDeviation = Math.sqrt(Math.max(0.0, sumSquares / count - mean * mean));
+            this.min = sorted[0];
+            this.p10 = percentile(sorted, count, 0.10);
+            this.p25 = percentile(sorted, count, 0.25);
+            this.median = percentile(sorted, count, 0.50);
+            this.p75 = percentile(sorted, count, 0.75);
+            this.p90 = percentile(sorted, count, 0.90);
+            this.p99 = percentile(sorted, count, 0.99);
+            this.max = sorted[count - 1];
+        }
+
+        static double percentile(double[] sorted, int count, double quantile) {
+            return sorted[Math.max(0, (int) Math.ceil(count * quantile) - 1)];
+        }
+
+        public String getLabel() { return label; }
+        public int getCount() { return count; }
+        public double getMean() { return mean; }
+        public double getStandardDeviation() { return standardDeviation; }
+        public double getMin() { return min; }
+        public double getP10() { return p10; }
+        public double getP25() { return p25; }
+        public double getMedian() { return median; }
+        public double getP75() { return p75; }
+        public double getP90() { return p90; }
+        public double getP99() { return p99; }
+        public double getMax() { return max; }
+
+        @Override
+        public String toString() {
+            return String.format("%s: n=%d mean=%.2f sd=%.2f min=%.1f p25=%.1f median=%.1f p75=%.1f p90=%.1f max=%.1f",
+                    label, count, mean, standardDeviation, min, p25, median, p75, p90, max);
+        }
+    }
+
+    /**
+     * Mergeable streaming quantile sketch (KLL). Items sit in a stack of compactors; an item at
+     * level h stands for 2^h inputs. When the sketch is over its budget, the lowest full level is
+     * sorted and every other item (from a random offset) moves up a level, halving that level while
+     * keeping ranks unbiased. Level capacities shrink by 2/3 going down from the top, so the sketch
+     * retains O(k) items for any input size and rank error is roughly 1.7 / k.
+     */
+    public static final class QuantileSketch {
+        static final int DEFAULT_K = 200;
+        private static final int MIN_WIDTH = 8;
+
+        private final int k;
+        private double[][] levels = {new double[MIN_WIDTH]};
+        private int[] sizes = {0};
+        private int[] capacities;
+        private int retained;
+        private int budget;
+        private long count;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+        private long randomState = 0x9E3779B97F4A7C15L;
+
+        public QuantileSketch(int k) {
+            if (k < MIN_WIDTH) {
+                throw new IllegalArgumentException("k must be at least " + MIN_WIDTH);
+            }
+            this.k = k;
+            resize();
+        }
+
+        public void update(double value) {
+            if (Double.isNaN(value)) {
+                return;
+            }
+            append(0, value);
+            count++;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+            if (retained >= budget) {
+                compact();
+            }
+        }
+
+        /**
+         * Adds another sketch's items to this one; the other sketch is left unchanged.
+         */
+        public void merge(QuantileSketch other) {
+            for (int h = 0; h < other.levels.length; h++) {
+                for (int i = 0; i < other.sizes[h]; i++) {
+                    append(h, other.levels[h][i]);
+                }
+            }
+            count += other.count;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+            while (retained >= budget) {
+                compact();
+            }
+        }
+
+        /**
+         * Approximate value at the given quantile (0 to 1), or NaN for an empty sketch.
+         */
+        public double quantile(double quantile) {
+            if (count == 0) {
+                return Double.NaN;
+            }
+            if (quantile <= 0) return min;
+            if (quantile >= 1) return max;
+            double[] values = new double[retained];
+            long[] weights = new long[retained];
+            Integer[] order = new Integer[retained];
+            int n = 0;
+            for (int h = 0; h < levels.length; h++) {
+                for (int i = 0; i < sizes[h]; i++) {
+                    values[n] = levels[h][i];
+                    weights[n] = 1L << h;
+                    order[n] = n;
+                    n++;
+                }
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> values[i]));
+            long total = 0;
+            for (long weight : weights) total += weight;
+            double target = quantile * total;
+            long seen = 0;
+            for (int i : order) {
+                seen += weights[i];
+                if (seen >= target) {
+                    return values[i];
+                }
+            }
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Items currently held, over all levels.
+         */
+        public int retained() {
+            return retained;
+        }
+
+        // Level capacities depend on the number of levels, so they are recomputed when one is added
+        private void resize() {
+            capacities = new int[levels.length];
+            budget = 0;
+            for (int h = 0; h < levels.length; h++) {
+                int depth = levels.length - 1 - h;
+                capacities[h] = Math.max(MIN_WIDTH, (int) Math.ceil(k * Math.pow(2.0 / 3.0, depth)));
+                budget += capacities[h];
+            }
+        }
+
+        private void append(int level, double value) {
+            while (level >= levels.length) {
+                levels = Arrays.copyOf(levels, levels.length + 1);
+                levels[levels.length - 1] = new double[MIN_WIDTH];
+                sizes = Arrays.copyOf(sizes, sizes.length + 1);
+                resize();
+            }
+            if (sizes[level] == levels[level].length) {
+                levels[level] = Arrays.copyOf(levels[level], sizes[level] * 2);
+            }
+            levels[level][sizes[level]++] = value;
+            retained++;
+        }
+
+        // Halves the lowest level at or over its capacity by promoting every other item
+        private void compact() {
+            int level = 0;
+            while (sizes[level] < capacities[level]) {
+                level++;
+            }
+            double[] items = levels[level];
+            int size = sizes[level];
+            Arrays.sort(items, 0, size);
+            int keep = size & 1; // an odd item out stays behind
+            int offset = keep + (nextBit() ? 1 : 0);
+            double[] promoted = new double[(size - keep) / 2];
+            for (int i = 0; i < promoted.length; i++) {
+                promoted[i] = items[offset + 2 * i];
+            }
+            sizes[level] = keep;
+            retained -= size - keep;
+            for (double value : promoted) {
+                append(level + 1, value);
+            }
+        }
+
+        private boolean nextBit() {
+            randomState ^= randomState << 13;
+            randomState ^= randomState >>> 7;
+            randomState ^= randomState << 17;
+            return (randomState & 1) != 0;
+        }
+    }
+}
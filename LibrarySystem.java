@@ -1,59 +1,486 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
+/**
+ * Library Management Module
+ * Data Structures Used:
+ * - ConcurrentHashMap: ISBN -> inventory (the Book with its copy counts, current loans and a FIFO
+ *   hold queue); O(1) lookup, and availability is a volatile copy count read without locking
+ * - Hold queue: ArrayDeque of student IDs plus a ticket per holder, so a hold position is
+ *   ticket - head ticket + 1 in O(1); a returned copy goes straight to the head of the queue
+ * - TreeMap secondary indexes on normalized title and author, keyed "value\0isbn" so equal titles
+ *   stay distinct; a prefix query is one subMap range: O(log n + k)
+ * - Inverted index: lower-cased title/author token -> books containing it; a keyword query walks
+ *   the rarest token's postings and checks the others by hash lookup
+ * - TransactionLog: bounded ring of recent transactions with older entries spilled to encoded
+ *   segments, indexed by student and by ISBN
+ * Index queries are lazy streams, so paging (offset/limit) and the availability filter only touch
+ * the entries they return or skip.
+ *
+ * Concurrency: borrowBook, returnBook and placeHold may be called from many threads; each ISBN's
+ * inventory has its own lock, so traffic on different books does not contend. Every operation is
+ * expressed as transactions (BORROW, RETURN, HOLD) that are journaled and then applied, which is
+ * also how journal replay rebuilds loans and hold queues. Catalog changes (addBook) and catalog
+ * searches are not synchronized with each other and must not run concurrently.
+ */
 public class LibrarySystem {
-    private Map<String, Book> bookCatalog;
-    private Stack<Transaction> transactionHistory;
+    static final int DEFAULT_RECENT_CAPACITY = 65_536;
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private Map<String, Inventory> bookCatalog;
+    private final TransactionLog transactionHistory;
+    private TransactionJournal journal;
+    private final TreeMap<String, Book> titleIndex = new TreeMap<>();
+    private final TreeMap<String, Book> authorIndex = new TreeMap<>();
+    private final Map<String, Set<Book>> tokenIndex = new HashMap<>();
     
+    /**
+     * Keeps the most recent DEFAULT_RECENT_CAPACITY transactions in memory and spills older ones to
+     * a temporary directory that is deleted when the JVM exits.
+     */
     public LibrarySystem() {
-        this.bookCatalog = new HashMap<>();
-        this.transactionHistory = new Stack<>();
+        this(DEFAULT_RECENT_CAPACITY, null);
+    }
+
+    /**
+     * @param recentCapacity transactions kept in memory as objects; older ones are spilled to disk
+     * @param spillDirectory directory under which spilled history segments are written (each
+     *                       library creates its own subdirectory there on the first spill), or null
+     *                       for a temporary directory deleted when the JVM exits
+     */
+    public LibrarySystem(int recentCapacity, Path spillDirectory) {
+        this(spillDirectory == null
+                ? TransactionLog.spillingToTemporaryDirectory(recentCapacity)
+                : new TransactionLog(recentCapacity, spillDirectory));
+    }
+
+    private LibrarySystem(TransactionLog transactionHistory) {
+        this.bookCatalog = new ConcurrentHashMap<>();
+        this.transactionHistory = transactionHistory;
+    }
+
+    /**
+     * A library that keeps spilled history on the heap as compact encoded segments instead of on
+     * disk, so its memory grows with the history; for short-lived systems without a writable disk.
+     */
+    public static LibrarySystem withInMemoryHistory(int recentCapacity) {
+        return new LibrarySystem(new TransactionLog(recentCapacity, null));
     }
     
+    /**
+     * Journals every subsequent borrow, return and hold before it is applied; null detaches.
+     */
+    public void setJournal(TransactionJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Adds the book to the catalog. Re-adding a catalogued ISBN adds the book's copies to the
+     * existing entry instead (its title, author, loans and holds stay as they are); new copies go
+     * to students holding the book first, as a returned copy would.
+     */
     public void addBook(Book book) {
-        bookCatalog.put(book.getIsbn(), book);
+        Inventory inventory = bookCatalog.putIfAbsent(book.getIsbn(), new Inventory(book));
+        if (inventory == null) {
+            index(book);
+            return;
+        }
+        synchronized (inventory) {
+            inventory.book.addCopies(book.getTotalCopies());
+            Date now = new Date();
+            while (inventory.book.isAvailable() && !inventory.holds.isEmpty()) {
+                record(inventory, new Transaction(book.getIsbn(), inventory.holds.peekFirst(), now, "BORROW"));
+            }
+        }
     }
     
+    /**
+     * Lends one copy. Fails if the book is unknown or every copy is out; use placeHold to queue.
+     */
     public boolean borrowBook(String isbn, String studentId) {
-        Book book = bookCatalog.get(isbn);
-        if (book == null || !book.isAvailable()) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
             return false;
         }
-        
-        book.setAvailable(false);
-        transactionHistory.push(new Transaction(isbn, studentId, new Date(), "BORROW"));
-        return true;
+        synchronized (inventory) {
+            if (!inventory.book.isAvailable()) {
+                return false;
+            }
+            record(inventory, new Transaction(isbn, studentId, new Date(), "BORROW"));
+            return true;
+        }
     }
     
+    /**
+     * Takes back a copy the student has on loan. If students are holding the book, the copy is
+     * lent straight to the first of them (recorded as a BORROW for that student).
+     */
     public boolean returnBook(String isbn, String studentId) {
-        Book book = bookCatalog.get(isbn);
-        if (book == null || book.isAvailable()) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
             return false;
         }
-        
-        book.setAvailable(true);
-        transactionHistory.push(new Transaction(isbn, studentId, new Date(), "RETURN"));
-        return true;
+        synchronized (inventory) {
+            if (!inventory.loans.containsKey(studentId)) {
+                return false;
+            }
+            Date now = new Date();
+            record(inventory, new Transaction(isbn, studentId, now, "RETURN"));
+            String next = inventory.holds.peekFirst();
+            if (next != null) {
+                record(inventory, new Transaction(isbn, next, now, "BORROW"));
+            }
+            return true;
+        }
     }
-    
+
+    /**
+     * Queues the student for the next returned copy.
+     *
+     * @return the student's 1-based position in the hold queue, or -1 if the book is unknown, a
+     *         copy is available to borrow now, or the student is already queued
+     */
+    public int placeHold(String isbn, String studentId) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
+            return -1;
+        }
+        synchronized (inventory) {
+            if (inventory.book.isAvailable() || inventory.holdTickets.containsKey(studentId)) {
+                return -1;
+            }
+            record(inventory, new Transaction(isbn, studentId, new Date(), "HOLD"));
+            return inventory.holdPosition(studentId);
+        }
+    }
+
+    /**
+     * @return the student's 1-based hold position for the book, or 0 if they are not queued
+     */
+    public int getHoldPosition(String isbn, String studentId) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
+            return 0;
+        }
+        synchronized (inventory) {
+            return inventory.holdPosition(studentId);
+        }
+    }
+
+    public int getHoldCount(String isbn) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
+            return 0;
+        }
+        synchronized (inventory) {
+            return inventory.holds.size();
+        }
+    }
+
+    public int getAvailableCopies(String isbn) {
+        Inventory inventory = bookCatalog.get(isbn);
+        return inventory == null ? 0 : inventory.book.getAvailableCopies();
+    }
+
+    public int getBookCount() {
+        return bookCatalog.size();
+    }
+
+    public long getTransactionCount() {
+        return transactionHistory.size();
+    }
+
+    /**
+     * Directory holding this library's spilled history, or null while none has been spilled to
+     * disk (always null for withInMemoryHistory).
+     */
+    Path getHistoryDirectory() {
+        return transactionHistory.getSpillDirectory();
+    }
+
     public Book searchBook(String isbn) {
-        return bookCatalog.get(isbn);
+        Inventory inventory = bookCatalog.get(isbn);
+        return inventory == null ? null : inventory.book;
     }
     
+    /**
+     * Books whose title starts with the prefix (case-insensitive), ordered by title then ISBN.
+     */
+    public Stream<Book> streamByTitlePrefix(String prefix, boolean availableOnly) {
+        return range(titleIndex, normalize(prefix), availableOnly);
+    }
+
+    public List<Book> searchByTitlePrefix(String prefix, boolean availableOnly, int offset, int limit) {
+        return page(streamByTitlePrefix(prefix, availableOnly), offset, limit);
+    }
+
+    /**
+     * Books whose author starts with the prefix (case-insensitive), ordered by author then ISBN.
+     */
+    public Stream<Book> streamByAuthorPrefix(String prefix, boolean availableOnly) {
+        return range(authorIndex, normalize(prefix), availableOnly);
+    }
+
+    /**
+     * All books by exactly this author (case-insensitive), ordered by ISBN.
+     */
+    public Stream<Book> streamByAuthor(String author, boolean availableOnly) {
+        return range(authorIndex, normalize(author) + '\0', availableOnly);
+    }
+
+    public List<Book> searchByAuthor(String author, boolean availableOnly, int offset, int limit) {
+        return page(streamByAuthor(author, availableOnly), offset, limit);
+    }
+
+    /**
+     * Books whose title or author contains every word of the query, in catalog insertion order.
+     */
+    public Stream<Book> streamByKeywords(String query, boolean availableOnly) {
+        List<Set<Book>> postings = new ArrayList<>();
+        for (String token : tokenize(query)) {
+            Set<Book> books = tokenIndex.get(token);
+            if (books == null) {
+                return Stream.empty();
+            }
+            postings.add(books);
+        }
+        if (postings.isEmpty()) {
+            return Stream.empty();
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        Set<Book> rarest = postings.get(0);
+        List<Set<Book>> others = postings.subList(1, postings.size());
+        Stream<Book> matches = rarest.stream().filter(book -> others.stream().allMatch(set -> set.contains(book)));
+        return availableOnly ? matches.filter(Book::isAvailable) : matches;
+    }
+
+    public List<Book> searchByKeywords(String query, boolean availableOnly, int offset, int limit) {
+        return page(streamByKeywords(query, availableOnly), offset, limit);
+    }
+
+    private static Stream<Book> range(TreeMap<String, Book> index, String prefix, boolean availableOnly) {
+        Stream<Book> books = index.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values().stream();
+        return availableOnly ? books.filter(Book::isAvailable) : books;
+    }
+
+    private static List<Book> page(Stream<Book> books, int offset, int limit) {
+        List<Book> page = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        books.skip(Math.max(0, offset)).limit(Math.max(0, limit)).forEach(page::add);
+        return page;
+    }
+
+    private void index(Book book) {
+        titleIndex.put(indexKey(book.getTitle(), book), book);
+        authorIndex.put(indexKey(book.getAuthor(), book), book);
+        for (String token : bookTokens(book)) {
+            tokenIndex.computeIfAbsent(token, t -> new LinkedHashSet<>()).add(book);
+        }
+    }
+
+    private static String indexKey(String value, Book book) {
+        return normalize(value) + '\0' + book.getIsbn();
+    }
+
+    private static Set<String> bookTokens(Book book) {
+        Set<String> tokens = new HashSet<>(tokenize(book.getTitle()));
+        tokens.addAll(tokenize(book.getAuthor()));
+        return tokens;
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : TOKEN_SEPARATOR.split(normalize(text))) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Visits every catalogued book.
+     */
+    void forEachBook(Consumer<Book> action) {
+        for (Inventory inventory : bookCatalog.values()) {
+            action.accept(inventory.book);
+        }
+    }
+
+    /**
+     * Copies of the book each student has on loan.
+     */
+    Map<String, Integer> getLoans(String isbn) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
+            return Collections.emptyMap();
+        }
+        synchronized (inventory) {
+            return new LinkedHashMap<>(inventory.loans);
+        }
+    }
+
+    /**
+     * Students holding the book, first in line first.
+     */
+    List<String> getHolds(String isbn) {
+        Inventory inventory = bookCatalog.get(isbn);
+        if (inventory == null) {
+            return Collections.emptyList();
+        }
+        synchronized (inventory) {
+            return new ArrayList<>(inventory.holds);
+        }
+    }
+
+    /**
+     * Restores loans and holds of an already added book from a snapshot. Available copies are
+     * taken from the Book as stored.
+     */
+    void restoreInventory(String isbn, Map<String, Integer> loans, List<String> holds) {
+        Inventory inventory = bookCatalog.get(isbn);
+        synchronized (inventory) {
+            inventory.loans.putAll(loans);
+            for (String studentId : holds) {
+                inventory.addHold(studentId);
+            }
+        }
+    }
+
+    /**
+     * Visits the transaction history oldest first.
+     */
+    void forEachTransaction(Consumer<Transaction> action) {
+        transactionHistory.forEach(action);
+    }
+
+    /**
+     * Re-applies a journaled transaction: updates the book's copies, loans and holds and records
+     * the transaction without journaling it again.
+     */
+    void applyTransaction(Transaction transaction) {
+        Inventory inventory = bookCatalog.get(transaction.getIsbn());
+        if (inventory == null) {
+            transactionHistory.append(transaction);
+            return;
+        }
+        synchronized (inventory) {
+            inventory.apply(transaction);
+            transactionHistory.append(transaction);
+        }
+    }
+
+    // Caller holds the inventory lock, so journal order matches apply order for each book
+    private void record(Inventory inventory, Transaction transaction) {
+        journal(transaction);
+        inventory.apply(transaction);
+        transactionHistory.append(transaction);
+    }
+
+    private void journal(Transaction transaction) {
+        if (journal != null) {
+            try {
+                journal.appendTransaction(transaction);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Transaction not journaled, so it was not applied", e);
+            }
+        }
+    }
+
+    /**
+     * Appends an already recorded transaction, e.g. when restoring a snapshot.
+     */
+    void restoreTransaction(Transaction transaction) {
+        transactionHistory.append(transaction);
+    }
+
+    /**
+     * Copies, loans and hold queue of one ISBN; guarded by its own monitor.
+     */
+    private static final class Inventory {
+        final Book book;
+        final Map<String, Integer> loans = new HashMap<>(); // studentId -> copies on loan
+        final ArrayDeque<String> holds = new ArrayDeque<>();
+        final Map<String, Long> holdTickets = new HashMap<>();
+        long headTicket; // ticket of holds.peekFirst()
+        long nextTicket;
+
+        Inventory(Book book) {
+            this.book = book;
+        }
+
+        // Mechanical state change for one transaction; validity is checked by the caller
+        void apply(Transaction transaction) {
+            String studentId = transaction.getStudentId();
+            switch (transaction.getType()) {
+                case "BORROW":
+                    if (studentId.equals(holds.peekFirst())) {
+                        holds.pollFirst();
+                        holdTickets.remove(studentId);
+                        headTicket++;
+                    }
+                    book.setAvailableCopies(book.getAvailableCopies() - 1);
+                    loans.merge(studentId, 1, Integer::sum);
+                    break;
+                case "RETURN":
+                    loans.computeIfPresent(studentId, (id, copies) -> copies > 1 ? copies - 1 : null);
+                    book.setAvailableCopies(book.getAvailableCopies() + 1);
+                    break;
+                case "HOLD":
+                    addHold(studentId);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        void addHold(String studentId) {
+            if (holdTickets.putIfAbsent(studentId, nextTicket) == null) {
+                holds.addLast(studentId);
+                nextTicket++;
+            }
+        }
+
+        int holdPosition(String studentId) {
+            Long ticket = holdTickets.get(studentId);
+            return ticket == null ? 0 : (int) (ticket - headTicket + 1);
+        }
+    }
+
+    /**
+     * Up to count of the most recent transactions, newest first (at most the recent capacity).
+     */
     public List<Transaction> getRecentTransactions(int count) {
-        List<Transaction> recent = new ArrayList<>();
-        Stack<Transaction> temp = new Stack<>();
-        
-        for (int i = 0; i < count && !transactionHistory.isEmpty(); i++) {
-            Transaction transaction = transactionHistory.pop();
-            recent.add(transaction);
-            temp.push(transaction);
-        }
-        
-        // Restore the stack
-        while (!temp.isEmpty()) {
-            transactionHistory.push(temp.pop());
-        }
-        
+        List<Transaction> recent = new ArrayList<>(Math.max(0, Math.min(count, transactionHistory.getCapacity())));
+        transactionHistory.forEachRecent(count, recent::add);
         return recent;
     }
-}
\ No newline at end of file
+
+    /**
+     * Allocation-free variant of getRecentTransactions.
+     */
+    public void forEachRecentTransaction(int count, Consumer<Transaction> action) {
+        transactionHistory.forEachRecent(count, action);
+    }
+
+    /**
+     * The student's borrows and returns, newest first.
+     */
+    public List<Transaction> getStudentHistory(String studentId, int limit) {
+        return transactionHistory.studentHistory(studentId, limit);
+    }
+
+    /**
+     * The most recent borrows of one book, newest first.
+     */
+    public List<Transaction> getRecentBorrows(String isbn, int limit) {
+        return transactionHistory.bookHistory(isbn, "BORROW", limit);
+    }
+}
@@ -0,0 +1,136 @@
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.DoubleSupplier;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Guards one module of a concurrent SchoolManagementSystem with a StampedLock.
+ * - exclusive: writers to the module run one at a time under the write lock.
+ * - optimistic: bounded point reads (hash lookups, array reads) run without acquiring anything. A
+ *   reader only reads the lock state, so readers never write a shared cache line and scale with
+ *   cores. A read that overlapped a write (detected by validate, or by the exception a torn state
+ *   caused) is retried once under the read lock.
+ * - shared: walks that could follow a half-rotated tree or a resizing map take the read lock;
+ *   readers hold it together and wait only while a write is in progress.
+ * - version / unchangedSince: lets callers cache an immutable result and keep serving it, with no
+ *   lock at all, until the next write.
+ * The disabled instance (single-threaded systems) calls straight through.
+ */
+class ModuleLock {
+    static final ModuleLock DISABLED = new ModuleLock(null);
+
+    private final StampedLock lock;
+
+    private ModuleLock(StampedLock lock) {
+        this.lock = lock;
+    }
+
+    static ModuleLock create(boolean concurrent) {
+        return concurrent ? new ModuleLock(new StampedLock()) : DISABLED;
+    }
+
+    <T> T optimistic(Supplier<T> read) {
+        if (lock != null) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    T result = read.get();
+                    if (lock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (lock.validate(stamp)) {
+                        throw e; // a genuine failure, not a torn read
+                    }
+                }
+            }
+        }
+        return shared(read);
+    }
+
+    double optimisticDouble(DoubleSupplier read) {
+        if (lock != null) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    double result = read.getAsDouble();
+                    if (lock.validate(stamp)) {
+                        return result;
+                    }
+                } catch (RuntimeException e) {
+                    if (lock.validate(stamp)) {
+                        throw e;
+                    }
+                }
+            }
+            long readStamp = lock.readLock();
+            try {
+                return read.getAsDouble();
+            } finally {
+                lock.unlockRead(readStamp);
+            }
+        }
+        return read.getAsDouble();
+    }
+
+    int optimisticInt(IntSupplier read) {
+        return optimistic(read::getAsInt);
+    }
+
+    <T> T shared(Supplier<T> read) {
+        if (lock == null) {
+            return read.get();
+        }
+        long stamp = lock.readLock();
+        try {
+            return read.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    <T> T exclusive(Supplier<T> write) {
+        if (lock == null) {
+            return write.get();
+        }
+        long stamp = lock.writeLock();
+        try {
+            return write.get();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    void exclusive(Runnable write) {
+        exclusive(() -> {
+            write.run();
+            return null;
+        });
+    }
+
+    /**
+     * Takes the read lock for a caller that cannot pass a Supplier (e.g. one throwing IOException);
+     * pass the result to unlockShared. Returns 0 when disabled.
+     */
+    long lockShared() {
+        return lock == null ? 0 : lock.readLock();
+    }
+
+    void unlockShared(long stamp) {
+        if (lock != null) {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * A version of the module's state, to be checked with unchangedSince. Call it inside shared:
+     * no write can be in progress there, so the state being read belongs to this version.
+     */
+    long version() {
+        return lock == null ? 0 : lock.tryOptimisticRead();
+    }
+
+    boolean unchangedSince(long version) {
+        return lock != null && lock.validate(version);
+    }
+}
@@ -0,0 +1,2848 @@
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark harness for the School Management System modules.
+ * Usage: java PerformanceBenchmark [suite ...] (runs every suite when none is given)
+ * System properties:
+ * - bench.maxSize=N      caps dataset sizes so the larger runs fit the available heap (default 1M)
+ * - bench.sizes=a,b,...  replaces each suite's default dataset sizes
+ * - bench.warmup=N / bench.iterations=N  warmup and measured iterations per data-structure benchmark
+ * - bench.json=FILE      writes the data-structure results as JSON for regression tracking
+ * e.g. java -Xmx8g -Dbench.maxSize=10000000 -Dbench.json=results.json PerformanceBenchmark structures
+ */
+public class PerformanceBenchmark {
+    private static final Map<String, Runnable> SUITES = new LinkedHashMap<>();
+    private static final int MAX_SIZE = Integer.getInteger("bench.maxSize", 1_000_000);
+    private static final String SIZES = System.getProperty("bench.sizes");
+    private static final int WARMUP_ITERATIONS = Integer.getInteger("bench.warmup", 3);
+    private static final int MEASURED_ITERATIONS = Integer.getInteger("bench.iterations", 5);
+    private static final String JSON_OUTPUT = System.getProperty("bench.json");
+    private static final List<Result> RESULTS = new ArrayList<>();
+    private static volatile long sink; // consumes benchmark results so the JIT cannot drop the work
+
+    static {
+        SUITES.put("structures", PerformanceBenchmark::benchmarkStructures);
+        SUITES.put("registry", PerformanceBenchmark::benchmarkRegistry);
+        SUITES.put("lookup", PerformanceBenchmark::benchmarkRegistryIndexes);
+        SUITES.put("compact", PerformanceBenchmark::benchmarkCompactStudents);
+        SUITES.put("fees", PerformanceBenchmark::benchmarkFeeRanges);
+        SUITES.put("ledger", PerformanceBenchmark::benchmarkFeeLedger);
+        SUITES.put("revenue", PerformanceBenchmark::benchmarkFeeAggregates);
+        SUITES.put("skew", PerformanceBenchmark::benchmarkSkewedFees);
+        SUITES.put("columns", PerformanceBenchmark::benchmarkFeeColumns);
+        SUITES.put("performance", PerformanceBenchmark::benchmarkPerformanceGraph);
+        SUITES.put("gradeheap", PerformanceBenchmark::benchmarkGradeHeap);
+        SUITES.put("analytics", PerformanceBenchmark::benchmarkGradeAnalytics);
+        SUITES.put("import", PerformanceBenchmark::benchmarkBulkImport);
+        SUITES.put("enrollment", PerformanceBenchmark::benchmarkConcurrentEnrollment);
+        SUITES.put("waitlist", PerformanceBenchmark::benchmarkWaitlist);
+        SUITES.put("timetable", PerformanceBenchmark::benchmarkTimetable);
+        SUITES.put("termrun", PerformanceBenchmark::benchmarkTermEnrollmentRun);
+        SUITES.put("facade", PerformanceBenchmark::benchmarkConcurrentFacade);
+        SUITES.put("http", PerformanceBenchmark::benchmarkHttpFrontEnd);
+        SUITES.put("snapshot", PerformanceBenchmark::benchmarkSnapshot);
+        SUITES.put("journal", PerformanceBenchmark::benchmarkJournal);
+        SUITES.put("catalog", PerformanceBenchmark::benchmarkCatalogSearch);
+        SUITES.put("examweek", PerformanceBenchmark::benchmarkExamWeek);
+        SUITES.put("history", PerformanceBenchmark::benchmarkTransactionHistory);
+        SUITES.put("metrics", PerformanceBenchmark::benchmarkMetrics);
+    }
+
+    public static void main(String[] args) {
+        List<String> selected = args.length == 0 ? new ArrayList<>(SUITES.keySet()) : Arrays.asList(args);
+        for (String name : selected) {
+            Runnable suite = SUITES.get(name);
+            if (suite == null) {
+                System.out.println("Unknown suite '" + name + "', available: " + SUITES.keySet());
+                continue;
+            }
+            System.out.println("=== " + name.toUpperCase() + " ===");
+            suite.run();
+            System.out.println();
+        }
+        if (JSON_OUTPUT != null && !RESULTS.isEmpty()) {
+            writeJson(Paths.get(JSON_OUTPUT));
+        }
+    }
+
+    // ---------------------------------------------------------------- Data structure operations
+
+    /**
+     * Per-operation cost of every module's core operations at each dataset size, measured as
+     * warmup iterations followed by measured iterations (mean +/- standard deviation).
+     */
+    private static void benchmarkStructures() {
+        System.out.printf("%-40s %10s %14s %12s%n", "benchmark", "size", "ns/op", "+/- ns/op");
+        for (int n : sizes(1_000, 10_000, 100_000, 1_000_000, 10_000_000)) {
+            Random random = new Random(n);
+            String[] ids = new String[n];
+            StudentRegistry registry = new StudentRegistry();
+            for (int i = 0; i < n; i++) {
+                ids[i] = studentId(i);
+                registry.addStudent(new Student(ids[i], "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+            }
+            int batch = Math.min(n, 10_000);
+
+            measure("StudentRegistry.getStudent", n, batch, () -> {
+                long found = 0;
+                for (int i = 0; i < batch; i++) {
+                    if (registry.getStudent(ids[random.nextInt(n)]) != null) found++;
+                }
+                return found;
+            });
+            int[] round = {0};
+            measure("StudentRegistry.add+remove", n, batch, () -> {
+                String prefix = "N" + round[0]++ + "-";
+                for (int i = 0; i < batch; i++) {
+                    registry.addStudent(new Student(prefix + i, "New", "new@meru.edu", 9));
+                }
+                for (int i = 0; i < batch; i++) {
+                    registry.removeStudent(prefix + i);
+                }
+                return registry.getSize();
+            });
+
+            int seats = 200;
+            CourseScheduler scheduler = new CourseScheduler();
+            measure("CourseScheduler.processEnrollment", n, seats, () -> {
+                String courseId = "C" + round[0]++;
+                scheduler.registerCourse(courseId, seats);
+                for (int i = 0; i < seats; i++) {
+                    scheduler.enrollStudent(courseId, ids[random.nextInt(n)]);
+                }
+                return scheduler.processEnrollment(courseId, registry).size();
+            });
+
+            FeeRecord[] feeRecords = new FeeRecord[n];
+            for (int i = 0; i < n; i++) {
+                feeRecords[i] = new FeeRecord(ids[i], 100 + random.nextInt(900),
+                        new Date(TERM_START_MS + (long) (random.nextDouble() * 365 * DAY_MS)), "Tuition");
+            }
+            FeeTracker fees = new FeeTracker();
+            // Each call builds a fresh tree of n records, so the size parameter stays meaningful
+            measure("FeeTracker.addFeeRecord(build n)", n, n, () -> {
+                FeeTracker tracker = new FeeTracker();
+                for (FeeRecord record : feeRecords) {
+                    tracker.addFeeRecord(record);
+                }
+                return tracker.getFeeRecordsInRange(new Date(TERM_START_MS), new Date(TERM_START_MS)).size();
+            });
+            fees.addFeeRecords(Arrays.asList(feeRecords));
+            measure("FeeTracker.rangeQuery(1 day)", n, 1, () -> {
+                long start = TERM_START_MS + random.nextInt(364) * DAY_MS;
+                return fees.getFeeRecordsInRange(new Date(start), new Date(start + DAY_MS - 1)).size();
+            });
+
+            LibrarySystem library = new LibrarySystem();
+            String[] isbns = new String[n];
+            for (int i = 0; i < n; i++) {
+                isbns[i] = "ISBN" + i;
+                library.addBook(new Book(isbns[i], "Title " + i, "Author " + i % 1000));
+            }
+            measure("LibrarySystem.borrow+return", n, batch, () -> {
+                long ok = 0;
+                for (int i = 0; i < batch; i++) {
+                    String isbn = isbns[random.nextInt(n)];
+                    if (library.borrowBook(isbn, ids[i]) && library.returnBook(isbn, ids[i])) ok++;
+                }
+                return ok;
+            });
+            measure("LibrarySystem.getRecentTransactions(10)", n, 1, () -> library.getRecentTransactions(10).size());
+
+            PerformanceGraph graph = new PerformanceGraph();
+            for (int i = 0; i < n; i++) {
+                graph.addGrade(ids[i], SUBJECTS[i % SUBJECTS.length], 40 + random.nextInt(61));
+            }
+            measure("PerformanceGraph.addGrade", n, batch, () -> {
+                for (int i = 0; i < batch; i++) {
+                    graph.addGrade(ids[random.nextInt(n)], SUBJECTS[random.nextInt(SUBJECTS.length)], 40 + random.nextInt(61));
+                }
+                return batch;
+            });
+            measure("PerformanceGraph.getTopPerformers(10)", n, 1, () -> graph.getTopPerformers(10).size());
+        }
+    }
+
+    private interface Operation {
+        long run();
+    }
+
+    private static final class Result {
+        final String benchmark;
+        final int size;
+        final double score;
+        final double error;
+
+        Result(String benchmark, int size, double score, double error) {
+            this.benchmark = benchmark;
+            this.size = size;
+            this.score = score;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Runs the operation repeatedly for ~100 ms per iteration; opsPerCall is how many logical
+     * operations one call performs, so results are reported per operation.
+     */
+    private static void measure(String benchmark, int size, int opsPerCall, Operation operation) {
+        double[] scores = new double[MEASURED_ITERATIONS];
+        for (int iteration = -WARMUP_ITERATIONS; iteration < MEASURED_ITERATIONS; iteration++) {
+            long calls = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink += operation.run();
+                calls++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < 100_000_000L);
+            if (iteration >= 0) {
+                scores[iteration] = elapsed / (double) (calls * opsPerCall);
+            }
+        }
+        double mean = Arrays.stream(scores).average().orElse(0);
+        double variance = Arrays.stream(scores).map(x -> (x - mean) * (x - mean)).sum() / Math.max(1, scores.length - 1);
+        double error = Math.sqrt(variance);
+        RESULTS.add(new Result(benchmark, size, mean, error));
+        System.out.printf("%-40s %10d %14.1f %12.1f%n", benchmark, size, mean, error);
+    }
+
+    private static void writeJson(Path file) {
+        StringBuilder json = new StringBuilder("[\n");
+        for (int i = 0; i < RESULTS.size(); i++) {
+            Result result = RESULTS.get(i);
+            json.append(String.format(Locale.ROOT,
+                    "  {\"benchmark\": \"%s\", \"size\": %d, \"mode\": \"avgt\", \"unit\": \"ns/op\", "
+                            + "\"score\": %.3f, \"scoreError\": %.3f, \"warmupIterations\": %d, \"measurementIterations\": %d}%s%n",
+                    result.benchmark, result.size, result.score, result.error, WARMUP_ITERATIONS, MEASURED_ITERATIONS,
+                    i + 1 < RESULTS.size() ? "," : ""));
+        }
+        json.append("]\n");
+        try {
+            Files.write(file, json.toString().getBytes(StandardCharsets.UTF_8));
+            System.out.println("Wrote " + RESULTS.size() + " results to " + file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // ---------------------------------------------------------------- Student Registry
+
+    private static void benchmarkRegistry() {
+        System.out.printf("%10s %12s %12s %12s %12s %12s %12s%n",
+                "students", "add ns/op", "get ns/op", "miss ns/op", "remove ns/op", "add p99.9 us", "add max us");
+        for (int n : sizes(1_000, 10_000, 100_000, 1_000_000, 5_000_000)) {
+            Student[] students = new Student[n];
+            for (int i = 0; i < n; i++) {
+                students[i] = new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4);
+            }
+
+            StudentRegistry registry = new StudentRegistry();
+            long[] addLatencies = new long[n];
+            long start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                long t = System.nanoTime();
+                registry.addStudent(students[i]);
+                addLatencies[i] = System.nanoTime() - t;
+            }
+            double addNs = (System.nanoTime() - start) / (double) n;
+
+            int[] order = shuffledIndexes(n, 42);
+            start = System.nanoTime();
+            int found = 0;
+            for (int i : order) {
+                if (registry.getStudent(students[i].getStudentId()) != null) found++;
+            }
+            double getNs = (System.nanoTime() - start) / (double) n;
+
+            start = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                if (registry.getStudent("X" + i) != null) found--;
+            }
+            double missNs = (System.nanoTime() - start) / (double) n;
+
+            start = System.nanoTime();
+            for (int i : order) {
+                registry.removeStudent(students[i].getStudentId());
+            }
+            double removeNs = (System.nanoTime() - start) / (double) n;
+
+            check(found == n && registry.getSize() == 0, "registry lost or duplicated students at n=" + n);
+            Arrays.sort(addLatencies);
+            System.out.printf("%10d %12.1f %12.1f %12.1f %12.1f %12.1f %12.1f%n", n, addNs, getNs, missNs, removeNs,
+                    percentile(addLatencies, 0.999) / 1e3, addLatencies[n - 1] / 1e3);
+        }
+    }
+
+    private static final String[] FIRST_NAMES = {"Amina", "Brian", "Caro", "Daniel", "Esther", "Faith", "Garcia", "Hassan",
+            "Irene", "James", "Kevin", "Lucy", "Martin", "Njeri", "Otieno", "Peter", "Quincy", "Rose", "Samuel", "Wanjiru"};
+    private static final String[] LAST_NAMES = {"Achieng", "Barasa", "Cheruiyot", "Gachuhi", "Garcia", "Kamau", "Kariuki",
+            "Mutava", "Mwangi", "Njoroge", "Ochieng", "Odhiambo", "Otieno", "Waweru", "Wafula"};
+
+    /**
+     * Email, grade-level and name-prefix lookups through the registry's secondary indexes vs a scan
+     * of every student, from 10k to 1M students; results are checked against the scan, again after
+     * removing every third student. Also reports the add cost the indexes bring.
+     */
+    private static void benchmarkRegistryIndexes() {
+        System.out.printf("%10s %-22s %12s %14s %10s%n", "students", "lookup", "index us", "scan us", "matches");
+        for (int n : sizes(10_000, 100_000, 1_000_000)) {
+            Student[] students = new Student[n];
+            for (int i = 0; i < n; i++) {
+                String first = FIRST_NAMES[i % FIRST_NAMES.length];
+                String last = LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length];
+                students[i] = new Student(studentId(i), first + " " + last + " " + i, first.toLowerCase() + "." + i + "@meru.edu", 9 + i % 4);
+            }
+            StudentRegistry registry = new StudentRegistry();
+            long start = System.nanoTime();
+            for (Student student : students) registry.addStudent(student);
+            System.out.printf("%10d %-22s %12.3f %14s %10d%n", n, "add (with indexes)", (System.nanoTime() - start) / 1e3 / n, "-", n);
+
+            for (int pass = 0; pass < 2; pass++) {
+                String email = students[n / 6 * 3 + 1].getEmail().toUpperCase(Locale.ROOT); // survives the removals
+                runIndexLookup(registry, n, "email", () -> registry.findByEmail(email),
+                        student -> student.getEmail().equalsIgnoreCase(email));
+                runIndexLookup(registry, n, "grade level 12", () -> registry.getStudentsInGradeLevel(12),
+                        student -> student.getGradeLevel() == 12);
+                runIndexLookup(registry, n, "name prefix 'gar'", () -> registry.searchByNamePrefix("gar", 0, Integer.MAX_VALUE),
+                        student -> student.getName().toLowerCase(Locale.ROOT).startsWith("gar"));
+                runIndexLookup(registry, n, "name prefix (page 20)", () -> registry.searchByNamePrefix("Faith Ka", 0, 20),
+                        student -> student.getName().toLowerCase(Locale.ROOT).startsWith("faith ka"));
+                if (pass == 0) {
+                    // A second registry holding the same Student objects keeps its own grade-level slots
+                    StudentRegistry mirror = new StudentRegistry();
+                    for (int i = n - 1; i >= 0; i--) mirror.addStudent(students[i]);
+                    for (int i = 0; i < n; i += 3) registry.removeStudent(students[i].getStudentId());
+                    for (int i = n - 1; i >= 0; i -= 2) mirror.removeStudent(students[i].getStudentId());
+                    Set<Student> mirrorLevel = new HashSet<>();
+                    mirror.forEach(student -> {
+                        if (student.getGradeLevel() == 12) mirrorLevel.add(student);
+                    });
+                    check(new HashSet<>(mirror.getStudentsInGradeLevel(12)).equals(mirrorLevel), "shared students broke a grade level index");
+                    System.out.printf("%10d %-22s%n", registry.getSize(), "(after removing 1/3)");
+                }
+            }
+        }
+    }
+
+    private static void runIndexLookup(StudentRegistry registry, int n, String name, java.util.function.Supplier<List<Student>> lookup,
+                                       java.util.function.Predicate<Student> matches) {
+        int reps = Math.max(20, 2_000_000 / n);
+        List<Student> found = lookup.get();
+        for (int r = 0; r < reps; r++) sink += lookup.get().size(); // warm-up
+        long start = System.nanoTime();
+        for (int r = 0; r < reps; r++) sink += lookup.get().size();
+        double indexUs = (System.nanoTime() - start) / 1e3 / reps;
+
+        List<Student> scanned = new ArrayList<>();
+        start = System.nanoTime();
+        registry.forEach(student -> {
+            if (matches.test(student)) scanned.add(student);
+        });
+        double scanUs = (System.nanoTime() - start) / 1e3;
+        if (found.size() < 20 || name.contains("page")) {
+            check(new HashSet<>(scanned).containsAll(found) && (found.size() == scanned.size() || found.size() == 20),
+                    name + " index disagrees with a scan");
+        } else {
+            check(new HashSet<>(found).equals(new HashSet<>(scanned)), name + " index disagrees with a scan");
+        }
+        System.out.printf("%10d %-22s %12.3f %14.1f %10d%n", registry.getSize(), name, indexUs, scanUs, found.size());
+    }
+
+    private static final int COMPACT_COURSES = 2_000;
+
+    /**
+     * StudentRegistry vs CompactStudentStore holding the same students (4 courses each from a
+     * 2,000-course catalog), 100k-5M students (`-Dbench.maxSize=5000000 -Xmx4g` for the largest):
+     * retained heap and off-heap bytes, build time, lookup cost, the pause of a full GC with the
+     * structure live, and young-GC time while the application churns short-lived garbage. The store
+     * is checked field by field against the generated students, and course and removal updates
+     * against the registry.
+     */
+    private static void benchmarkCompactStudents() {
+        System.out.printf("%10s %-18s %10s %10s %10s %12s %12s %14s%n",
+                "students", "layout", "heap MB", "off MB", "build ms", "lookup ns", "full GC ms", "young GC ms/s");
+        for (int n : sizes(100_000, 1_000_000, 5_000_000)) {
+            int[] order = shuffledIndexes(n, 7);
+            String[] ids = new String[n];
+            for (int i = 0; i < n; i++) ids[i] = studentId(i);
+            long heap = usedHeap();
+            long t = System.nanoTime();
+            StudentRegistry registry = new StudentRegistry();
+            for (int i = 0; i < n; i++) registry.addStudent(compactTestStudent(i));
+            double buildMs = (System.nanoTime() - t) / 1e6;
+            double heapMb = (usedHeap() - heap) / 1e6;
+            t = System.nanoTime();
+            for (int i : order) sink += registry.getStudent(ids[i]).getGradeLevel();
+            double lookupNs = (System.nanoTime() - t) / (double) n;
+            System.out.printf("%10d %-18s %10.1f %10s %10.0f %12.1f %12.1f %14.1f%n", n, "StudentRegistry", heapMb, "-", buildMs,
+                    lookupNs, fullGcMillis(), youngGcMillisPerSecond());
+            registry = null;
+
+            heap = usedHeap();
+            t = System.nanoTime();
+            CompactStudentStore store = new CompactStudentStore();
+            for (int i = 0; i < n; i++) store.addStudent(compactTestStudent(i));
+            buildMs = (System.nanoTime() - t) / 1e6;
+            heapMb = (usedHeap() - heap) / 1e6;
+            CompactStudentStore.StudentView view = store.view();
+            t = System.nanoTime();
+            for (int i : order) {
+                view.moveTo(ids[i]);
+                sink += view.getGradeLevel();
+            }
+            lookupNs = (System.nanoTime() - t) / (double) n;
+            System.out.printf("%10d %-18s %10.1f %10.1f %10.0f %12.1f %12.1f %14.1f%n", n, "CompactStudentStore", heapMb,
+                    store.getOffHeapBytes() / 1e6, buildMs, lookupNs, fullGcMillis(), youngGcMillisPerSecond());
+
+            for (int i = 0; i < n; i += Math.max(1, n / 10_000)) {
+                Student expected = compactTestStudent(i);
+                check(view.moveTo(expected.getStudentId()) && view.getName().equals(expected.getName())
+                                && view.getEmail().equals(expected.getEmail()) && view.getGradeLevel() == expected.getGradeLevel()
+                                && view.toStudent().getCourses().equals(expected.getCourses()),
+                        "compact store returned a different " + expected.getStudentId());
+            }
+            check(store.getSize() == n && !store.contains("X1") && !store.addStudent(compactTestStudent(0)), "compact store size or duplicate check is wrong");
+        }
+        checkCompactUpdates();
+    }
+
+    // Deterministic test student i: 4 courses, shared name parts and grade levels
+    private static Student compactTestStudent(int i) {
+        String first = FIRST_NAMES[i % FIRST_NAMES.length];
+        Student student = new Student(studentId(i), first + " " + LAST_NAMES[(i / FIRST_NAMES.length) % LAST_NAMES.length],
+                first.toLowerCase(Locale.ROOT) + "." + i + "@meru.edu", 9 + i % 4);
+        for (int c = 0; c < 4; c++) {
+            student.addCourse(String.format("C%04d", (i * 7 + c * 131) % COMPACT_COURSES));
+        }
+        return student;
+    }
+
+    // Random course adds / drops (past the inline slots) and removals / re-registrations, mirrored
+    // on heap Students in a registry
+    private static void checkCompactUpdates() {
+        int n = 10_000;
+        StudentRegistry registry = new StudentRegistry();
+        CompactStudentStore store = new CompactStudentStore();
+        for (int i = 0; i < n; i++) {
+            registry.addStudent(compactTestStudent(i));
+            store.addStudent(compactTestStudent(i));
+        }
+        Random random = new Random(11);
+        for (int op = 0; op < 200_000; op++) {
+            String id = studentId(random.nextInt(n));
+            Student student = registry.getStudent(id);
+            int action = random.nextInt(10);
+            if (action == 0) {
+                check(store.removeStudent(id) == registry.removeStudent(id), "remove disagrees for " + id);
+                if (student == null) {
+                    Student fresh = compactTestStudent(Integer.parseInt(id.substring(1)));
+                    check(store.addStudent(fresh) == registry.addStudent(fresh), "re-register disagrees for " + id);
+                }
+            } else if (student != null) {
+                String course = String.format("C%04d", random.nextInt(20));
+                boolean taken = student.getCourses().contains(course);
+                if (action < 6) {
+                    check(store.addCourse(id, course) == !taken, "addCourse disagrees for " + id);
+                    if (!taken) student.addCourse(course);
+                } else {
+                    check(store.removeCourse(id, course) == taken, "removeCourse disagrees for " + id);
+                    student.removeCourse(course);
+                }
+            }
+        }
+        check(store.getSize() == registry.getSize(), "compact store size differs from the registry");
+        CompactStudentStore.StudentView view = store.view();
+        registry.forEach(student -> {
+            check(view.moveTo(student.getStudentId()) && view.getCourseCount() == student.getCourses().size(),
+                    "course count differs for " + student.getStudentId());
+            for (String course : student.getCourses()) {
+                check(view.takesCourse(course), student.getStudentId() + " lost " + course);
+            }
+        });
+        int[] visited = new int[1];
+        store.forEach(student -> visited[0]++);
+        check(visited[0] == registry.getSize(), "forEach visited " + visited[0] + " students");
+        System.out.println("updates: 200k course adds / drops and removals match the heap registry");
+    }
+
+    // Average pause of an explicit full collection with everything currently reachable kept live
+    private static double fullGcMillis() {
+        long total = 0;
+        for (int i = 0; i < 3; i++) {
+            long t = System.nanoTime();
+            System.gc();
+            total += System.nanoTime() - t;
+        }
+        return total / 3 / 1e6;
+    }
+
+    // Collector time per second while one thread allocates short-lived objects for 2 seconds
+    private static double youngGcMillisPerSecond() {
+        long before = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) before += gc.getCollectionTime();
+        long t = System.nanoTime();
+        long end = t + 2_000_000_000L;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < 10_000; i++) {
+                sink += new Student(String.valueOf(i), "churn", "churn", i).getStudentId().length();
+            }
+        }
+        long after = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) after += gc.getCollectionTime();
+        return (after - before) / ((System.nanoTime() - t) / 1e9);
+    }
+
+    // ---------------------------------------------------------------- Fee Tracker
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final long TERM_START_MS = 1_767_225_600_000L; // 2026-01-01T00:00Z
+
+    private static void benchmarkFeeRanges() {
+        String[][] ranges = {{"1 day", "1"}, {"1 week", "7"}, {"30 days", "30"}, {"full year", "365"}};
+        for (int n : sizes(100_000, 1_000_000, 5_000_000)) {
+            FeeTracker tracker = new FeeTracker();
+            Random random = new Random(7);
+            for (int i = 0; i < n; i++) {
+                Date date = new Date(TERM_START_MS + (long) (random.nextDouble() * 365 * DAY_MS));
+                tracker.addFeeRecord(new FeeRecord(studentId(i), 100 + random.nextInt(900), date, "Tuition"));
+            }
+            System.out.printf("%d records%n%12s %10s %14s %14s %14s%n", n, "range", "matches",
+                    "pruned us", "cursor us", "full walk us");
+            for (String[] range : ranges) {
+                Date start = new Date(TERM_START_MS + 100 * DAY_MS);
+                Date end = new Date(start.getTime() + Long.parseLong(range[1]) * DAY_MS - 1);
+                int reps = Math.max(1, 2_000_000 / n);
+
+                long t = System.nanoTime();
+                int matches = 0;
+                for (int r = 0; r < reps; r++) matches = tracker.getFeeRecordsInRange(start, end).size();
+                double prunedUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                t = System.nanoTime();
+                long streamed = 0;
+                for (int r = 0; r < reps; r++) streamed = tracker.streamFeeRecordsInRange(start, end).count();
+                double cursorUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                // The pre-pruning behaviour: visit every record in order and filter by date
+                t = System.nanoTime();
+                int walked = 0;
+                for (int r = 0; r < reps; r++) {
+                    walked = 0;
+                    Iterator<FeeRecord> all = tracker.iterateFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+                    while (all.hasNext()) {
+                        Date date = all.next().getTransactionDate();
+                        if (!date.before(start) && !date.after(end)) walked++;
+                    }
+                }
+                double fullUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                check(matches == streamed && matches == walked, "range query mismatch for " + range[0]);
+                System.out.printf("%12s %10d %14.1f %14.1f %14.1f%n", range[0], matches, prunedUs, cursorUs, fullUs);
+            }
+        }
+    }
+
+    /**
+     * Per-student ledger index next to the AVL tree: O(1) totals and balances and O(log m + k)
+     * student history, against scanning the tree. Ledger totals are checked against the tree,
+     * including students paying several times at the same instant.
+     */
+    private static void benchmarkFeeLedger() {
+        String[] types = {"Tuition", "Lab Fee", "Library Fine", "Transportation"};
+        System.out.printf("%-40s %10s %14s %12s%n", "benchmark", "size", "ns/op", "+/- ns/op");
+        for (int n : sizes(200_000, 2_000_000, 20_000_000)) {
+            int students = Math.max(1, n / 20);
+            FeeTracker tracker = new FeeTracker();
+            Random random = new Random(17);
+            long t = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                // Whole seconds, so some records share a date, sometimes with the same student
+                long date = TERM_START_MS + random.nextInt(120 * 24 * 3600) * 1000L;
+                tracker.addFeeRecord(new FeeRecord(studentId(random.nextInt(students)), 50 + random.nextInt(950),
+                        new Date(date), types[random.nextInt(types.length)]));
+            }
+            double insertNs = (System.nanoTime() - t) / (double) n;
+            for (int s = 0; s < students; s++) {
+                tracker.setAmountDue(studentId(s), 20_000);
+            }
+
+            double treeTotal = 0;
+            Map<String, Double> sampled = new HashMap<>();
+            for (int s = 0; s < 20; s++) sampled.put(studentId(s * (students / 20 + 1) % students), 0.0);
+            Iterator<FeeRecord> all = tracker.iterateFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+            while (all.hasNext()) {
+                FeeRecord record = all.next();
+                treeTotal += record.getAmount();
+                sampled.computeIfPresent(record.getStudentId(), (id, sum) -> sum + record.getAmount());
+            }
+            double ledgerTotal = 0;
+            for (int s = 0; s < students; s++) ledgerTotal += tracker.getTotalPaid(studentId(s));
+            check(Math.abs(treeTotal - ledgerTotal) < 1e-3, "ledger total " + ledgerTotal + " != tree total " + treeTotal);
+            for (Map.Entry<String, Double> student : sampled.entrySet()) {
+                double byType = 0;
+                for (String type : types) byType += tracker.getTotalPaid(student.getKey(), type);
+                check(Math.abs(tracker.getTotalPaid(student.getKey()) - student.getValue()) < 1e-6
+                                && Math.abs(byType - student.getValue()) < 1e-6
+                                && Math.abs(tracker.getOutstandingBalance(student.getKey()) - (20_000 - student.getValue())) < 1e-6,
+                        "ledger disagrees with the tree for " + student.getKey());
+            }
+            System.out.printf("%-40s %10d %14.1f %12s%n", "FeeTracker.addFeeRecord (tree + ledger)", tracker.getSize(), insertNs, "-");
+
+            String[] ids = new String[students];
+            for (int s = 0; s < students; s++) ids[s] = studentId(s);
+            int batch = 10_000;
+            measure("FeeTracker.getOutstandingBalance", tracker.getSize(), batch, () -> {
+                double owed = 0;
+                for (int i = 0; i < batch; i++) owed += tracker.getOutstandingBalance(ids[random.nextInt(students)]);
+                return (long) owed;
+            });
+            Date termStart = new Date(TERM_START_MS + 30 * DAY_MS);
+            Date termEnd = new Date(TERM_START_MS + 60 * DAY_MS);
+            measure("FeeTracker.getStudentFeeHistory(30d)", tracker.getSize(), batch, () -> {
+                long found = 0;
+                for (int i = 0; i < batch; i++) found += tracker.getStudentFeeHistory(ids[random.nextInt(students)], termStart, termEnd).size();
+                return found;
+            });
+            // What the question cost before: walk the term's records in the tree and filter by student
+            measure("tree scan: student paid in 30d", tracker.getSize(), 1, () -> {
+                String id = ids[random.nextInt(students)];
+                double paid = 0;
+                Iterator<FeeRecord> records = tracker.iterateFeeRecordsInRange(termStart, termEnd);
+                while (records.hasNext()) {
+                    FeeRecord record = records.next();
+                    if (record.getStudentId().equals(id)) paid += record.getAmount();
+                }
+                return (long) paid;
+            });
+        }
+    }
+
+    /**
+     * Range totals from the augmented AVL nodes against materializing the range and summing it.
+     * Random ranges, with edges landing exactly on record dates, are checked against the list,
+     * on both an incrementally built tree and one rebuilt through loadSorted.
+     */
+    private static void benchmarkFeeAggregates() {
+        String[][] ranges = {{"1 day", "1"}, {"1 week", "7"}, {"30 days", "30"}, {"full year", "365"}};
+        for (int n : sizes(100_000, 1_000_000, 5_000_000)) {
+            FeeTracker tracker = new FeeTracker();
+            Random random = new Random(23);
+            for (int i = 0; i < n; i++) {
+                // Whole minutes, so many records share a date with records of other students
+                Date date = new Date(TERM_START_MS + random.nextInt(365 * 24 * 60) * 60_000L);
+                tracker.addFeeRecord(new FeeRecord(studentId(random.nextInt(n / 10 + 1)), 50 + random.nextInt(950), date, "Tuition"));
+            }
+            FeeTracker rebuilt = new FeeTracker();
+            rebuilt.loadSorted(tracker.getFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)));
+            for (int q = 0; q < 200; q++) {
+                long from = TERM_START_MS + random.nextInt(365 * 24 * 60) * 60_000L;
+                long to = from + random.nextInt(q % 2 == 0 ? 24 * 60 : 60 * 24 * 60) * 60_000L;
+                Date start = new Date(from);
+                Date end = new Date(to);
+                List<FeeRecord> records = tracker.getFeeRecordsInRange(start, end);
+                double sum = 0;
+                double min = Double.NaN;
+                double max = Double.NaN;
+                for (FeeRecord record : records) {
+                    double amount = record.getAmount();
+                    sum += amount;
+                    if (Double.isNaN(min) || amount < min) min = amount;
+                    if (Double.isNaN(max) || amount > max) max = amount;
+                }
+                for (FeeTracker t : new FeeTracker[]{tracker, rebuilt}) {
+                    FeeTracker.FeeSummary summary = t.summarizeFeesInRange(start, end);
+                    check(summary.getCount() == records.size() && Math.abs(summary.getSum() - sum) < 1e-6
+                                    && Double.compare(summary.getMin(), min) == 0 && Double.compare(summary.getMax(), max) == 0,
+                            "range summary " + summary + " disagrees with " + records.size() + " listed records");
+                }
+            }
+
+            System.out.printf("%d records%n%12s %10s %16s %16s%n", n, "range", "matches", "aggregate ns", "list+sum ns");
+            for (String[] range : ranges) {
+                Date start = new Date(TERM_START_MS + 100 * DAY_MS);
+                Date end = new Date(start.getTime() + Long.parseLong(range[1]) * DAY_MS - 1);
+                int reps = Math.max(1, 2_000_000 / n);
+
+                long t = System.nanoTime();
+                double total = 0;
+                for (int r = 0; r < 100_000; r++) total += tracker.sumFeesInRange(start, end);
+                double aggregateNs = (System.nanoTime() - t) / 1e5;
+                sink += (long) total;
+
+                t = System.nanoTime();
+                double listed = 0;
+                for (int r = 0; r < reps; r++) {
+                    listed = 0;
+                    for (FeeRecord record : tracker.getFeeRecordsInRange(start, end)) listed += record.getAmount();
+                }
+                double listNs = (System.nanoTime() - t) / (double) reps;
+
+                check(Math.abs(tracker.sumFeesInRange(start, end) - listed) < 1e-6, "range total mismatch for " + range[0]);
+                System.out.printf("%12s %10d %16.1f %16.1f%n", range[0], tracker.countFeesInRange(start, end), aggregateNs, listNs);
+            }
+        }
+    }
+
+    /**
+     * Fee feeds whose timestamps are far from unique: bank files stamped per batch, per day, or
+     * all at one instant. Every record must be kept, iterated in (date, arrival) order, and
+     * counted by the range aggregates and ledgers; "lost before" is how many records the former
+     * (date, studentId) key would have discarded as duplicates.
+     */
+    private static void benchmarkSkewedFees() {
+        String[] distributions = {"unique ms", "hourly batches", "daily batches", "hot instants", "one instant"};
+        System.out.printf("%16s %10s %12s %8s %10s %14s %14s %12s%n", "timestamps", "records", "lost before",
+                "height", "insert ns", "1-day list us", "1-day sum ns", "load ms");
+        for (int n : sizes(100_000, 1_000_000, 2_000_000)) {
+            for (String distribution : distributions) {
+                Random random = new Random(29);
+                int students = Math.max(1, n / 50);
+                FeeRecord[] records = new FeeRecord[n];
+                for (int i = 0; i < n; i++) {
+                    long offset;
+                    switch (distribution) {
+                        case "unique ms": offset = i * (365 * DAY_MS / n); break;
+                        case "hourly batches": offset = (i * 365L * 24 / n) * 3_600_000L; break;
+                        case "daily batches": offset = (i * 365L / n) * DAY_MS; break;
+                        // Nine in ten records land on one of five instants, the rest spread out
+                        case "hot instants": offset = random.nextInt(10) == 0 ? random.nextInt(365 * 24 * 60) * 60_000L
+                                : random.nextInt(5) * 73 * DAY_MS; break;
+                        default: offset = 0;
+                    }
+                    records[i] = new FeeRecord(studentId(random.nextInt(students)), 1 + random.nextInt(999),
+                            new Date(TERM_START_MS + offset), "Tuition");
+                }
+
+                FeeTracker tracker = new FeeTracker();
+                long t = System.nanoTime();
+                for (FeeRecord record : records) tracker.addFeeRecord(record);
+                double insertNs = (System.nanoTime() - t) / (double) n;
+
+                // Expected contents: the input stably sorted by date, i.e. arrival order within a date
+                FeeRecord[] expected = records.clone();
+                Arrays.sort(expected, Comparator.comparingLong(record -> record.getTransactionDate().getTime()));
+                double total = 0;
+                for (FeeRecord record : records) total += record.getAmount();
+                Iterator<FeeRecord> stored = tracker.iterateFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+                for (int i = 0; i < n; i++) {
+                    check(stored.hasNext() && stored.next() == expected[i], distribution + ": record " + i + " missing or out of order");
+                }
+                check(!stored.hasNext() && tracker.getSize() == n, distribution + ": tree holds extra records");
+                // The stream is in arrival order within a date, so sorted() must still reorder it
+                FeeRecord[] natural = records.clone();
+                Arrays.sort(natural);
+                check(Arrays.equals(tracker.streamFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).sorted().toArray(), natural),
+                        distribution + ": sorted() on the range stream does not give FeeRecord order");
+                FeeTracker.FeeSummary all = tracker.summarizeFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+                check(all.getCount() == n && Math.abs(all.getSum() - total) < 1e-6, distribution + ": aggregates lost records");
+                double paid = 0;
+                for (int s = 0; s < students; s++) paid += tracker.getTotalPaid(studentId(s));
+                check(Math.abs(paid - total) < 1e-6, distribution + ": ledgers lost records");
+
+                int lost = 0;
+                Set<String> seen = new HashSet<>();
+                for (int i = 0; i < n; i++) {
+                    if (i > 0 && !expected[i].getTransactionDate().equals(expected[i - 1].getTransactionDate())) seen.clear();
+                    if (!seen.add(expected[i].getStudentId())) lost++;
+                }
+
+                t = System.nanoTime();
+                FeeTracker loaded = new FeeTracker();
+                loaded.loadSorted(Arrays.asList(expected));
+                double loadMs = (System.nanoTime() - t) / 1e6;
+                check(loaded.getHeight() <= tracker.getHeight()
+                                && loaded.countFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)) == n
+                                && loaded.getFeeRecordsInRange(new Date(TERM_START_MS), new Date(TERM_START_MS)).equals(
+                                        tracker.getFeeRecordsInRange(new Date(TERM_START_MS), new Date(TERM_START_MS))),
+                        distribution + ": bulk load differs from inserts");
+
+                Date dayStart = new Date(TERM_START_MS);
+                Date dayEnd = new Date(TERM_START_MS + DAY_MS - 1);
+                int reps = 20;
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) sink += tracker.getFeeRecordsInRange(dayStart, dayEnd).size();
+                double listUs = (System.nanoTime() - t) / 1e3 / reps;
+                t = System.nanoTime();
+                for (int r = 0; r < 100_000; r++) sink += (long) tracker.sumFeesInRange(dayStart, dayEnd);
+                double sumNs = (System.nanoTime() - t) / 1e5;
+
+                System.out.printf("%16s %10d %12d %8d %10.1f %14.1f %14.1f %12.1f%n", distribution, n, lost,
+                        tracker.getHeight(), insertNs, listUs, sumNs, loadMs);
+            }
+        }
+    }
+
+    /**
+     * Read-optimized sorted columns against the AVL tree after a nightly-style bulk load: build
+     * time, retained heap, and for each range width a full scan, a one-student scan and a range
+     * total. Both backends must agree on every answer.
+     */
+    private static void benchmarkFeeColumns() {
+        String[] types = {"Tuition", "Lab Fee", "Library Fine", "Transportation"};
+        String[][] ranges = {{"1 day", "1"}, {"1 week", "7"}, {"30 days", "30"}, {"full year", "365"}};
+        for (int n : sizes(1_000_000, 5_000_000, 20_000_000)) {
+            int students = n / 20;
+            Random random = new Random(31);
+            String[] ids = new String[students];
+            for (int s = 0; s < students; s++) ids[s] = studentId(s);
+
+            long heap = usedHeap();
+            List<FeeRecord> records = new ArrayList<>(n);
+            long step = 365 * DAY_MS / n;
+            long date = TERM_START_MS;
+            for (int i = 0; i < n; i++) {
+                date += random.nextInt((int) (2 * step + 1)); // ~1 in (2 * step) records shares its predecessor's date
+                records.add(new FeeRecord(ids[random.nextInt(students)], 50 + random.nextInt(950), new Date(date), types[i & 3]));
+            }
+            FeeTracker tracker = new FeeTracker();
+            long t = System.nanoTime();
+            tracker.loadSorted(records);
+            double treeBuildMs = (System.nanoTime() - t) / 1e6;
+            records = null;
+            double treeMb = (usedHeap() - heap) / 1e6;
+
+            heap = usedHeap();
+            t = System.nanoTime();
+            FeeColumns columns = tracker.getColumns();
+            double columnsBuildMs = (System.nanoTime() - t) / 1e6;
+            double columnsMb = (usedHeap() - heap) / 1e6;
+            check(tracker.getColumns() == columns && columns.getSize() == n, "columns were not cached or lost records");
+
+            System.out.printf("%d records: tree + ledger load %.0f ms, %.0f MB retained; columns build %.0f ms, %.0f MB%n",
+                    n, treeBuildMs, treeMb, columnsBuildMs, columnsMb);
+            System.out.printf("%12s %10s %12s %12s %14s %14s %12s %12s%n", "range", "matches", "tree scan us", "cols scan us",
+                    "tree 1-stu us", "cols 1-stu us", "tree sum ns", "cols sum ns");
+            for (int pass = 0; pass < 2 * ranges.length; pass++) { // the first round over the ranges is warm-up
+                String[] range = ranges[pass % ranges.length];
+                Date start = new Date(TERM_START_MS + 100 * DAY_MS);
+                Date end = new Date(Math.min(start.getTime() + Long.parseLong(range[1]) * DAY_MS, TERM_START_MS + 365 * DAY_MS) - 1);
+                int reps = Math.max(3, (int) (200_000_000L / n / Long.parseLong(range[1])));
+                String student = ids[random.nextInt(students)];
+
+                double[] treeScan = new double[1];
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) {
+                    treeScan[0] = 0;
+                    Iterator<FeeRecord> cursor = tracker.iterateFeeRecordsInRange(start, end);
+                    while (cursor.hasNext()) treeScan[0] += cursor.next().getAmount();
+                }
+                double treeScanUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                double[] columnScan = new double[1];
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) {
+                    columnScan[0] = 0;
+                    columns.forEachInRange(start, end, (id, amount, when, type) -> columnScan[0] += amount);
+                }
+                double columnScanUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                double treePaid = 0;
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) {
+                    treePaid = 0;
+                    Iterator<FeeRecord> cursor = tracker.iterateFeeRecordsInRange(start, end);
+                    while (cursor.hasNext()) {
+                        FeeRecord record = cursor.next();
+                        if (record.getStudentId().equals(student)) treePaid += record.getAmount();
+                    }
+                }
+                double treeStudentUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                double columnPaid = 0;
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) columnPaid = columns.sumPaidInRange(student, start, end);
+                double columnStudentUs = (System.nanoTime() - t) / 1e3 / reps;
+
+                t = System.nanoTime();
+                for (int r = 0; r < 100_000; r++) sink += (long) tracker.sumFeesInRange(start, end);
+                double treeSumNs = (System.nanoTime() - t) / 1e5;
+                t = System.nanoTime();
+                for (int r = 0; r < 100_000; r++) sink += (long) columns.sumFeesInRange(start, end);
+                double columnSumNs = (System.nanoTime() - t) / 1e5;
+
+                int matches = columns.countFeesInRange(start, end);
+                double tolerance = 1e-9 * Math.max(1.0, treeScan[0]);
+                check(matches == tracker.countFeesInRange(start, end)
+                                && Math.abs(treeScan[0] - columnScan[0]) < 1e-6
+                                && Math.abs(tracker.sumFeesInRange(start, end) - columns.sumFeesInRange(start, end)) < tolerance
+                                && Math.abs(treePaid - columnPaid) < 1e-6,
+                        "columns disagree with the tree for " + range[0]);
+                if (pass < ranges.length) continue;
+                System.out.printf("%12s %10d %12.1f %12.1f %14.1f %14.1f %12.1f %12.1f%n", range[0], matches,
+                        treeScanUs, columnScanUs, treeStudentUs, columnStudentUs, treeSumNs, columnSumNs);
+            }
+            Date day = new Date(TERM_START_MS + 200 * DAY_MS);
+            Date dayEnd = new Date(day.getTime() + DAY_MS - 1);
+            List<FeeRecord> fromTree = tracker.getFeeRecordsInRange(day, dayEnd);
+            List<FeeRecord> fromColumns = columns.getFeeRecordsInRange(day, dayEnd);
+            check(fromTree.size() == fromColumns.size(), "column records differ in number");
+            for (int i = 0; i < fromTree.size(); i++) {
+                FeeRecord a = fromTree.get(i);
+                FeeRecord b = fromColumns.get(i);
+                check(a.getStudentId().equals(b.getStudentId()) && a.getAmount() == b.getAmount()
+                                && a.getTransactionDate().equals(b.getTransactionDate()) && a.getPaymentType().equals(b.getPaymentType()),
+                        "column record " + i + " differs from the tree");
+            }
+            tracker.addFeeRecord(new FeeRecord(ids[0], 1.0, new Date(TERM_START_MS), "Tuition"));
+            check(tracker.getColumns() != columns && tracker.getColumns().getSize() == n + 1, "columns not rebuilt after a write");
+        }
+    }
+
+    // ---------------------------------------------------------------- Performance Graph
+
+    private static final String[] SUBJECTS = {"Math", "Science", "English", "History", "Geography", "Physics",
+            "Chemistry", "Biology", "Art", "Music", "Kiswahili", "Computing"};
+
+    private static void benchmarkPerformanceGraph() {
+        System.out.printf("%10s %12s %14s %16s%n", "students", "grades", "addGrade ns/op", "top-10 ns/op");
+        for (int n : sizes(10_000, 100_000, 500_000, 1_000_000)) {
+            String[] ids = new String[n];
+            for (int i = 0; i < n; i++) ids[i] = studentId(i);
+            PerformanceGraph graph = new PerformanceGraph();
+            Random random = new Random(3);
+            long grades = (long) n * SUBJECTS.length;
+            long t = System.nanoTime();
+            for (String subject : SUBJECTS) {
+                for (int i = 0; i < n; i++) {
+                    graph.addGrade(ids[i], subject, 40 + random.nextInt(6001) / 100.0);
+                }
+            }
+            double addNs = (System.nanoTime() - t) / (double) grades;
+
+            int reps = 100_000;
+            t = System.nanoTime();
+            int returned = 0;
+            for (int r = 0; r < reps; r++) returned += graph.getTopPerformers(10).size();
+            double topNs = (System.nanoTime() - t) / (double) reps;
+
+            check(returned == reps * 10, "top performers returned fewer than 10 students");
+            System.out.printf("%10d %12d %14.1f %16.1f%n", n, grades, addNs, topNs);
+        }
+    }
+
+    /**
+     * Retained heap of n students x 12 subjects in the columnar PerformanceGraph (including its
+     * ranking) against the boxed Map<String, Map<String, Double>> layout it replaced. Student ID
+     * strings are shared by both and excluded.
+     */
+    private static void benchmarkGradeHeap() {
+        System.out.printf("%10s %12s %16s %16s %10s%n", "students", "grades", "boxed MB", "columnar MB", "ratio");
+        for (int n : sizes(10_000, 100_000, 500_000)) {
+            String[] ids = new String[n];
+            double[][] values = new double[SUBJECTS.length][n];
+            Random random = new Random(5);
+            for (int i = 0; i < n; i++) {
+                ids[i] = studentId(i);
+                for (int s = 0; s < SUBJECTS.length; s++) values[s][i] = 40 + random.nextInt(6001) / 100.0;
+            }
+
+            long base = usedHeap();
+            Map<String, Map<String, Double>> boxed = new HashMap<>();
+            for (int s = 0; s < SUBJECTS.length; s++) {
+                for (int i = 0; i < n; i++) {
+                    boxed.computeIfAbsent(ids[i], id -> new HashMap<>()).put(SUBJECTS[s], values[s][i]);
+                }
+            }
+            long boxedBytes = usedHeap() - base;
+            double boxedAverage = boxed.get(ids[n / 2]).values().stream().mapToDouble(Double::doubleValue).average().orElse(0);
+            boxed = null;
+
+            base = usedHeap();
+            PerformanceGraph graph = new PerformanceGraph();
+            for (int s = 0; s < SUBJECTS.length; s++) {
+                for (int i = 0; i < n; i++) graph.addGrade(ids[i], SUBJECTS[s], values[s][i]);
+            }
+            long columnarBytes = usedHeap() - base;
+            check(Math.abs(graph.getStudentAverage(ids[n / 2]) - boxedAverage) < 1e-9, "columnar average differs at n=" + n);
+            sink += graph.getStudentCount();
+
+            System.out.printf("%10d %12d %16.1f %16.1f %9.1fx%n", n, (long) n * SUBJECTS.length,
+                    boxedBytes / 1e6, columnarBytes / 1e6, boxedBytes / (double) columnarBytes);
+        }
+    }
+
+    /**
+     * Full-school report (exact stats, histogram, cohorts and quantile sketch for every subject)
+     * over 12 subjects, against a single-threaded copy-and-sort baseline. Exact results must match
+     * the baseline and sketch quantiles must be within 2% rank error.
+     */
+    private static void benchmarkGradeAnalytics() {
+        System.out.printf("%10s %10s %10s %10s %10s %10s %12s %14s%n", "grades", "students", "stats ms", "hist ms",
+                "cohort ms", "sketch ms", "baseline ms", "max rank err");
+        for (int grades : sizes(60_000, 600_000, 6_000_000)) {
+            int students = grades / SUBJECTS.length;
+            PerformanceGraph graph = new PerformanceGraph();
+            StudentRegistry registry = new StudentRegistry(students);
+            Random random = new Random(16);
+            String[] ids = new String[SUBJECTS.length];
+            double[] values = new double[SUBJECTS.length];
+            for (int i = 0; i < students; i++) {
+                registry.addStudent(new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+                Arrays.fill(ids, studentId(i));
+                for (int s = 0; s < SUBJECTS.length; s++) {
+                    values[s] = Math.max(0, Math.min(100, 70 + 12 * random.nextGaussian() + (i % 4)));
+                }
+                graph.addGrades(ids, SUBJECTS, values, SUBJECTS.length);
+            }
+            GradeAnalytics analytics = new GradeAnalytics(graph, registry);
+
+            double[] best = {Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE, Double.MAX_VALUE}; // stats, histograms, cohorts, sketches
+            Map<String, GradeAnalytics.SubjectStats> stats = null;
+            Map<String, GradeAnalytics.QuantileSketch> sketches = new HashMap<>();
+            for (int round = 0; round < 3; round++) {
+                long t0 = System.nanoTime();
+                stats = analytics.allSubjectStats();
+                long t1 = System.nanoTime();
+                for (String subject : SUBJECTS) sink += analytics.histogram(subject, 0, 100, 20)[10];
+                long t2 = System.nanoTime();
+                for (String subject : SUBJECTS) sink += analytics.cohortStats(subject).size();
+                long t3 = System.nanoTime();
+                for (String subject : SUBJECTS) sketches.put(subject, analytics.sketch(subject));
+                long t4 = System.nanoTime();
+                long[] phases = {t1 - t0, t2 - t1, t3 - t2, t4 - t3};
+                for (int p = 0; p < phases.length; p++) best[p] = Math.min(best[p], phases[p] / 1e6);
+            }
+
+            // Baseline: one thread, copy each column out and sort it
+            long t = System.nanoTime();
+            double worstRankError = 0;
+            for (String subject : SUBJECTS) {
+                double[] column = graph.column(subject);
+                double[] sorted = new double[students];
+                int count = 0;
+                double sum = 0;
+                for (int i = 0; i < students; i++) {
+                    if (!Double.isNaN(column[i])) {
+                        sorted[count++] = column[i];
+                        sum += column[i];
+                    }
+                }
+                Arrays.sort(sorted, 0, count);
+                GradeAnalytics.SubjectStats subjectStats = stats.get(subject);
+                check(subjectStats.getCount() == count && Math.abs(subjectStats.getMean() - sum / count) < 1e-9
+                                && subjectStats.getMedian() == GradeAnalytics.SubjectStats.percentile(sorted, count, 0.5)
+                                && subjectStats.getP90() == GradeAnalytics.SubjectStats.percentile(sorted, count, 0.9),
+                        "parallel stats for " + subject + " differ from the baseline");
+                GradeAnalytics.QuantileSketch sketch = sketches.get(subject);
+                for (double q = 0.05; q < 1; q += 0.05) {
+                    double estimate = sketch.quantile(q);
+                    int rank = Arrays.binarySearch(sorted, 0, count, estimate);
+                    worstRankError = Math.max(worstRankError, Math.abs(Math.abs(rank) / (double) count - q));
+                }
+            }
+            double baselineMs = (System.nanoTime() - t) / 1e6;
+            check(worstRankError < 0.02, "sketch rank error " + worstRankError + " exceeds 2%");
+            System.out.printf("%10d %10d %10.0f %10.0f %10.0f %10.0f %12.0f %13.2f%%%n", grades, students,
+                    best[0], best[1], best[2], best[3], baselineMs, 100 * worstRankError);
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    // ---------------------------------------------------------------- Bulk Import
+
+    private static void benchmarkBulkImport() {
+        // Row mix of a term import: 1 student : 12 grades : 7 fee records
+        for (int rows : sizes(100_000, 1_000_000, 10_000_000)) {
+            int students = rows / 20;
+            Path dir = null;
+            try {
+                dir = Files.createTempDirectory("sms-import");
+                Path studentsCsv = dir.resolve("students.csv");
+                Path gradesCsv = dir.resolve("grades.csv");
+                Path feesCsv = dir.resolve("fees.csv");
+                writeImportFiles(students, studentsCsv, gradesCsv, feesCsv);
+
+                SchoolManagementSystem sms = new SchoolManagementSystem();
+                long t = System.nanoTime();
+                List<ImportReport> reports = sms.bulkImport(studentsCsv, gradesCsv, feesCsv);
+                double seconds = (System.nanoTime() - t) / 1e9;
+
+                long total = 0;
+                for (ImportReport report : reports) {
+                    System.out.println("  " + report);
+                    total += report.getRecordCount();
+                }
+                check(sms.getStudentRegistrySize() == students, "bulk import lost students");
+                System.out.printf("%d rows in %.2f s: %.0f records/s%n", total, seconds, total / seconds);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+        checkBulkImportFailures();
+        checkBulkImportUnderLoad();
+    }
+
+    // A failing grades import must not leave the fee import running against a closed parser pool,
+    // and a batch size below one is rejected up front
+    private static void checkBulkImportFailures() {
+        int students = 5_000;
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sms-import");
+            Path studentsCsv = dir.resolve("students.csv");
+            Path gradesCsv = dir.resolve("grades.csv");
+            Path feesCsv = dir.resolve("fees.csv");
+            writeImportFiles(students, studentsCsv, gradesCsv, feesCsv);
+            Files.delete(gradesCsv);
+
+            SchoolManagementSystem sms = new SchoolManagementSystem();
+            boolean failed = false;
+            try {
+                sms.bulkImport(studentsCsv, gradesCsv, feesCsv);
+            } catch (NoSuchFileException expected) {
+                failed = true;
+            }
+            check(failed, "bulk import did not report the missing grades file");
+            long fees = sms.countFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+            check(fees == students * 7L, "fee import was still running when bulk import failed: " + fees + " of " + students * 7L);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(dir);
+        }
+        for (int batchSize : new int[] {0, -1}) {
+            boolean rejected = false;
+            try {
+                new BulkImporter(new StudentRegistry(), new PerformanceGraph(), new FeeTracker(), batchSize, 1).close();
+            } catch (IllegalArgumentException expected) {
+                rejected = true;
+            }
+            check(rejected, "bulk importer accepted batch size " + batchSize);
+        }
+        System.out.println("failures: a failed grades import waits for the fee import; batch sizes below 1 are rejected");
+    }
+
+    // In concurrent mode other callers keep writing and reading while an import runs; every batch
+    // goes through the locked facade methods, so neither side loses records
+    private static void checkBulkImportUnderLoad() {
+        int students = 20_000;
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sms-import");
+            Path studentsCsv = dir.resolve("students.csv");
+            Path gradesCsv = dir.resolve("grades.csv");
+            Path feesCsv = dir.resolve("fees.csv");
+            writeImportFiles(students, studentsCsv, gradesCsv, feesCsv);
+
+            SchoolManagementSystem sms = new SchoolManagementSystem(true);
+            AtomicBoolean done = new AtomicBoolean();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            int[] extra = new int[1];
+            long[] reads = new long[1];
+            Thread writer = new Thread(() -> {
+                while (!done.get()) {
+                    String id = "EXTRA" + extra[0];
+                    check(sms.registerStudent(new Student(id, "Extra " + extra[0], id + "@meru.edu", 9)), "extra student " + id + " not registered");
+                    sms.addGrade(id, "Math", 50 + extra[0] % 50);
+                    sms.addFeeRecord(id, 100, new Date(TERM_START_MS), "Tuition");
+                    extra[0]++;
+                    check(sms.getTopPerformers(10).size() <= 10 && sms.getStudentRegistrySize() > 0, "reads failed during the import");
+                    reads[0] += 2;
+                }
+            });
+            writer.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+            writer.start();
+            sms.bulkImport(studentsCsv, gradesCsv, feesCsv);
+            done.set(true);
+            joinQuietly(writer);
+            if (failure.get() != null) {
+                throw new IllegalStateException("writes failed during a concurrent bulk import", failure.get());
+            }
+            check(sms.getStudentRegistrySize() == students + extra[0],
+                    "registry holds " + sms.getStudentRegistrySize() + " of " + (students + extra[0]) + " students");
+            long fees = sms.countFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+            check(fees == students * 7L + extra[0], "fee tracker holds " + fees + " of " + (students * 7L + extra[0]) + " records");
+            System.out.printf("under load: %d students imported alongside %d concurrent registrations, %d reads%n",
+                    students, extra[0], reads[0]);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void writeImportFiles(int students, Path studentsCsv, Path gradesCsv, Path feesCsv) throws IOException {
+        Random random = new Random(11);
+        try (BufferedWriter out = Files.newBufferedWriter(studentsCsv)) {
+            out.write("studentId,name,email,gradeLevel\n");
+            for (int i = 0; i < students; i++) {
+                out.write(studentId(i) + ",Student " + i + ",s" + i + "@meru.edu," + (9 + i % 4) + "\n");
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(gradesCsv)) {
+            out.write("studentId,subject,grade\n");
+            for (String subject : SUBJECTS) {
+                for (int i = 0; i < students; i++) {
+                    out.write(studentId(i) + "," + subject + "," + (40 + random.nextInt(61)) + "\n");
+                }
+            }
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(feesCsv)) {
+            out.write("studentId,amount,date,paymentType\n");
+            for (int i = 0; i < students * 7; i++) {
+                long date = TERM_START_MS + (long) (random.nextDouble() * 120 * DAY_MS);
+                out.write(studentId(i % students) + "," + (50 + random.nextInt(950)) + "," + date + ",Tuition\n");
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- Course Scheduler
+
+    private static void benchmarkConcurrentEnrollment() {
+        int courses = 64;
+        int perThread = 50_000;
+        System.out.printf("%8s %18s %18s%n", "threads", "global lock ops/s", "mpsc ring ops/s");
+        for (int threads : new int[]{1, 2, 4, 8, 16}) {
+            double locked = runEnrollmentStress(threads, perThread, courses, false);
+            double concurrent = runEnrollmentStress(threads, perThread, courses, true);
+            System.out.printf("%8d %18.0f %18.0f%n", threads, locked, concurrent);
+        }
+    }
+
+    /**
+     * Every thread enqueues its own numbered student IDs into random courses, then each course is
+     * drained and checked: nothing may be lost or duplicated, and each thread's IDs must come out
+     * of a course (roster, then waitlist) in the order that thread enqueued them. Courses have
+     * about half as many seats as requests, so both the ring overflow and the waitlist are used.
+     */
+    private static double runEnrollmentStress(int threads, int perThread, int courses, boolean concurrent) {
+        CourseScheduler scheduler = new CourseScheduler(concurrent);
+        StudentRegistry registry = new StudentRegistry(threads * perThread);
+        String[][] ids = new String[threads][perThread];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 0; i < perThread; i++) {
+                ids[t][i] = "T" + t + "-" + i;
+                registry.addStudent(new Student(ids[t][i], "Student", "s@meru.edu", 10));
+            }
+        }
+        for (int c = 0; c < courses; c++) {
+            scheduler.registerCourse("C" + c, threads * perThread / courses / 2);
+        }
+
+        Object globalLock = new Object();
+        long[] accepted = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(worker);
+                awaitQuietly(start);
+                for (int i = 0; i < perThread; i++) {
+                    String courseId = "C" + random.nextInt(courses);
+                    boolean ok;
+                    if (concurrent) {
+                        ok = scheduler.enrollStudent(courseId, ids[worker][i]);
+                    } else {
+                        synchronized (globalLock) {
+                            ok = scheduler.enrollStudent(courseId, ids[worker][i]);
+                        }
+                    }
+                    if (ok) accepted[worker]++;
+                }
+            });
+            workers[t].start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) joinQuietly(worker);
+        double opsPerSecond = threads * (double) perThread * 1e9 / (System.nanoTime() - t0);
+
+        long expected = Arrays.stream(accepted).sum();
+        long drained = 0;
+        Set<String> seen = new HashSet<>();
+        for (int c = 0; c < courses; c++) {
+            int[] lastSeen = new int[threads];
+            Arrays.fill(lastSeen, -1);
+            List<String> admitted = new ArrayList<>(scheduler.processEnrollment("C" + c, registry));
+            admitted.addAll(scheduler.getWaitlist("C" + c)); // equal grade levels: waitlist is FIFO
+            for (String id : admitted) {
+                int dash = id.indexOf('-');
+                int thread = Integer.parseInt(id.substring(1, dash));
+                int sequence = Integer.parseInt(id.substring(dash + 1));
+                check(sequence > lastSeen[thread], "FIFO order violated in C" + c + " for thread " + thread);
+                check(seen.add(id), "student " + id + " dequeued twice");
+                lastSeen[thread] = sequence;
+                drained++;
+            }
+        }
+        check(drained == expected && expected == (long) threads * perThread,
+                "requested " + threads * perThread + " enrollments, accepted " + expected + " but drained " + drained);
+        return opsPerSecond;
+    }
+
+    /**
+     * Whole-term enrollment run over 5,000 courses x 200 seats: 100k students (capped by
+     * bench.maxSize) each queue 12 distinct courses, and every 10th course meets on the timetable
+     * so some requests clash. processEnrollment called course by course is compared with
+     * processAllEnrollments run sequentially and on the fork/join pool. Rosters, waitlists,
+     * rejections and every student's course list must match the course-by-course run, with no
+     * course listed twice, including for students who already carried a course before the run.
+     */
+    private static void benchmarkTermEnrollmentRun() {
+        int courses = 5_000;
+        int seats = 200;
+        int students = Math.min(MAX_SIZE, 100_000);
+        System.out.printf("%-36s %10s %12s %14s%n", "mode", "courses", "run ms", "requests/s");
+        Map<String, List<String>> reference = null;
+        for (String mode : new String[]{"processEnrollment per course", "processAllEnrollments sequential", "processAllEnrollments parallel"}) {
+            StudentRegistry registry = new StudentRegistry(students);
+            CourseScheduler scheduler = new CourseScheduler(false);
+            long requests = setUpTermRun(registry, scheduler, courses, seats, students);
+            List<String> courseIds = new ArrayList<>();
+            for (int c = 0; c < courses; c++) courseIds.add("T" + c);
+            List<String> ordered = orderedCourseIds(scheduler);
+            long t = System.nanoTime();
+            if (mode.startsWith("processEnrollment")) {
+                for (String courseId : ordered) scheduler.processEnrollment(courseId, registry);
+            } else {
+                scheduler.processAllEnrollments(registry, mode.endsWith("parallel"));
+            }
+            double ms = (System.nanoTime() - t) / 1e6;
+            System.out.printf("%-36s %10d %12.0f %14.0f%n", mode, courses, ms, requests / (ms / 1e3));
+
+            Map<String, List<String>> state = new TreeMap<>();
+            for (String courseId : courseIds) {
+                state.put(courseId + " roster", scheduler.getEnrolled(courseId));
+                state.put(courseId + " waitlist", scheduler.getWaitlist(courseId));
+                state.put(courseId + " rejected", new ArrayList<>(new TreeSet<>(scheduler.getRejections(courseId).keySet())));
+            }
+            long listed = 0;
+            for (int i = 0; i < students; i++) {
+                List<String> taken = registry.getStudent(studentId(i)).getCourses();
+                check(new HashSet<>(taken).size() == taken.size(), studentId(i) + " lists a course twice: " + taken);
+                List<String> sorted = new ArrayList<>(taken);
+                Collections.sort(sorted);
+                state.put(studentId(i) + " courses", sorted);
+                listed += taken.size();
+            }
+            long seated = courseIds.stream().mapToLong(courseId -> scheduler.getEnrolled(courseId).size()).sum();
+            check(listed >= seated && listed <= seated + (students + 49) / 50, "students list " + listed + " courses for " + seated + " seats");
+            if (reference == null) {
+                reference = state;
+            } else {
+                check(state.equals(reference), mode + " ended in a different state than processEnrollment per course");
+            }
+        }
+        System.out.println("check: rosters, waitlists, rejections and course lists identical in all modes, no duplicates");
+    }
+
+    // The order a course-by-course caller would use to match processAllEnrollments: courses without
+    // meetings first (they cannot clash), then the rest in scheduler order
+    // The order processAllEnrollments promises to match: the scheduler's course order, with the
+    // courses that have no meetings first
+    private static List<String> orderedCourseIds(CourseScheduler scheduler) {
+        List<String> courseIds = new ArrayList<>();
+        scheduler.forEachCourse((courseId, capacity, pending, enrolled, waitlisted) -> courseIds.add(courseId));
+        List<String> ordered = new ArrayList<>();
+        for (String courseId : courseIds) if (!scheduler.getTimetable().hasMeetings(courseId)) ordered.add(courseId);
+        for (String courseId : courseIds) if (scheduler.getTimetable().hasMeetings(courseId)) ordered.add(courseId);
+        return ordered;
+    }
+
+    private static long setUpTermRun(StudentRegistry registry, CourseScheduler scheduler, int courses, int seats, int students) {
+        Timetable timetable = new Timetable();
+        DayOfWeek[] days = {DayOfWeek.MONDAY, DayOfWeek.TUESDAY, DayOfWeek.WEDNESDAY, DayOfWeek.THURSDAY, DayOfWeek.FRIDAY};
+        for (int c = 0; c < courses; c++) {
+            scheduler.registerCourse("T" + c, seats);
+            if (c % 10 == 0) {
+                LocalTime start = LocalTime.of(8 + (c / 50) % 8, 0);
+                timetable.addMeeting("T" + c, days[(c / 10) % days.length], start, start.plusHours(1));
+            }
+        }
+        scheduler.setTimetable(timetable);
+        Random random = new Random(2025);
+        long requests = 0;
+        for (int i = 0; i < students; i++) {
+            Student student = new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4);
+            registry.addStudent(student);
+            Set<Integer> picked = new LinkedHashSet<>();
+            while (picked.size() < 12) picked.add(random.nextInt(courses));
+            if (i % 50 == 0) {
+                student.addCourse("T" + picked.iterator().next()); // carried in from an earlier import, and requested again
+            }
+            for (int c : picked) {
+                scheduler.enrollStudent("T" + c, studentId(i));
+                requests++;
+            }
+        }
+        return requests;
+    }
+
+    /**
+     * Cost of a drop that promotes the head of a large waitlist (TreeSet poll, O(log n)), and of
+     * raising capacity across thousands of courses at once. Promotions are checked against a
+     * reference ordering: higher grade level first, then request order.
+     */
+    private static void benchmarkWaitlist() {
+        System.out.printf("%-40s %10s %14s %12s%n", "benchmark", "size", "ns/op", "+/- ns/op");
+        for (int n : sizes(1_000, 10_000, 100_000, 1_000_000)) {
+            StudentRegistry registry = new StudentRegistry(n);
+            for (int i = 0; i < n; i++) {
+                registry.addStudent(new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+            }
+
+            // One course whose waitlist holds nearly everyone: each op is drop + promote + re-request
+            int seats = 100;
+            CourseScheduler scheduler = new CourseScheduler();
+            scheduler.registerCourse("BIG", seats);
+            for (int i = 0; i < n; i++) {
+                scheduler.enrollStudent("BIG", studentId(i));
+            }
+            ArrayDeque<String> roster = new ArrayDeque<>(scheduler.processEnrollment("BIG", registry));
+            check(scheduler.getWaitlist("BIG").size() == n - seats, "overflow requests were not waitlisted");
+            int batch = Math.min(n - seats, 1_000);
+            measure("CourseScheduler.drop+promote", n - seats, batch, () -> {
+                long promoted = 0;
+                for (int i = 0; i < batch; i++) {
+                    String dropped = roster.pollFirst();
+                    List<String> next = scheduler.dropStudent("BIG", dropped);
+                    roster.addAll(next);
+                    promoted += next.size();
+                    scheduler.enrollStudent("BIG", dropped);
+                    scheduler.processEnrollment("BIG", registry);
+                }
+                return promoted;
+            });
+
+            // Many courses at once: raise every capacity and check who was promoted
+            int courses = Math.max(1, n / 20);
+            CourseScheduler term = new CourseScheduler();
+            Map<String, List<Student>> requests = new HashMap<>();
+            Random random = new Random(n);
+            for (int c = 0; c < courses; c++) {
+                String courseId = "C" + c;
+                term.registerCourse(courseId, 10);
+                List<Student> requested = new ArrayList<>();
+                for (int r = 0; r < 40; r++) {
+                    Student student = registry.getStudent(studentId(random.nextInt(n)));
+                    if (!requested.contains(student)) requested.add(student);
+                    term.enrollStudent(courseId, student.getStudentId());
+                }
+                requests.put(courseId, requested);
+                term.processEnrollment(courseId, registry);
+            }
+            Map<String, Integer> raised = new HashMap<>();
+            for (int c = 0; c < courses; c++) raised.put("C" + c, 20);
+            long t = System.nanoTime();
+            Map<String, List<String>> promoted = term.setCapacities(raised);
+            long elapsed = System.nanoTime() - t;
+            long total = 0;
+            for (Map.Entry<String, List<Student>> course : requests.entrySet()) {
+                List<Student> waitlisted = new ArrayList<>(course.getValue().subList(Math.min(10, course.getValue().size()), course.getValue().size()));
+                waitlisted.sort(Comparator.comparingInt(Student::getGradeLevel).reversed()); // stable: request order within a level
+                List<String> expected = new ArrayList<>();
+                for (Student student : waitlisted.subList(0, Math.min(10, waitlisted.size()))) expected.add(student.getStudentId());
+                List<String> actual = promoted.getOrDefault(course.getKey(), Collections.emptyList());
+                check(actual.equals(expected), "wrong promotions in " + course.getKey() + ": " + actual + " vs " + expected);
+                total += actual.size();
+            }
+            System.out.printf("%-40s %10d %14.1f %12s%n", "CourseScheduler.setCapacities/promotion", courses,
+                    total == 0 ? 0.0 : elapsed / (double) total, courses + " courses");
+        }
+    }
+
+    /**
+     * Per-enrollment timetable validation, and whole-term conflict analysis (sequential and on the
+     * fork/join pool) over students whose courses were assigned without validation. The analysis
+     * is checked against the pairwise interval comparison it replaces.
+     */
+    private static void benchmarkTimetable() {
+        int courses = 2_000;
+        int perStudent = 5;
+        Timetable timetable = new Timetable();
+        Random random = new Random(15);
+        int[][] meetings = new int[courses][]; // [start, end) pairs in minutes of the week
+        String[] courseIds = new String[courses];
+        for (int c = 0; c < courses; c++) {
+            String courseId = courseIds[c] = "C" + c;
+            meetings[c] = new int[4];
+            for (int m = 0; m < 2; m++) {
+                DayOfWeek day = DayOfWeek.of(1 + random.nextInt(5));
+                int start = 8 * 60 + 30 * random.nextInt(20);
+                int end = start + 30 * (2 + random.nextInt(2));
+                timetable.addMeeting(courseId, day, LocalTime.of(start / 60, start % 60), LocalTime.of(end / 60, end % 60));
+                int dayStart = (day.getValue() - 1) * 24 * 60;
+                meetings[c][2 * m] = dayStart + start;
+                meetings[c][2 * m + 1] = dayStart + end;
+            }
+            if (c % 10 == 0 && c > 0) timetable.addPrerequisite(courseId, "C" + (c - 1));
+        }
+
+        System.out.printf("%-40s %10s %14s %12s%n", "benchmark", "size", "ns/op", "+/- ns/op");
+        for (int n : sizes(10_000, 100_000, 1_000_000)) {
+            StudentRegistry registry = new StudentRegistry(n);
+            Student[] students = new Student[n];
+            for (int i = 0; i < n; i++) {
+                students[i] = new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4);
+                for (int k = 0; k < perStudent; k++) {
+                    students[i].addCourse(courseIds[random.nextInt(courses)]);
+                }
+                if (i % 3 == 0) timetable.recordCompletion(studentId(i), "C" + random.nextInt(courses));
+                registry.addStudent(students[i]);
+            }
+
+            int batch = 10_000;
+            measure("Timetable.check", n, batch, () -> {
+                long clear = 0;
+                for (int i = 0; i < batch; i++) {
+                    if (timetable.check(students[random.nextInt(n)], courseIds[random.nextInt(courses)]) == Timetable.Conflict.NONE) clear++;
+                }
+                return clear;
+            });
+
+            long t = System.nanoTime();
+            List<Timetable.StudentConflict> sequential = timetable.analyzeTerm(registry, false);
+            double sequentialMs = (System.nanoTime() - t) / 1e6;
+            t = System.nanoTime();
+            List<Timetable.StudentConflict> parallel = timetable.analyzeTerm(registry);
+            double parallelMs = (System.nanoTime() - t) / 1e6;
+
+            // Reference: compare every pair of each student's courses meeting by meeting
+            t = System.nanoTime();
+            Set<String> expected = new HashSet<>();
+            for (Student student : students) {
+                List<String> taken = student.getCourses();
+                for (int a = 0; a < taken.size(); a++) {
+                    int[] later = meetings[Integer.parseInt(taken.get(a).substring(1))];
+                    for (int b = 0; b < a; b++) {
+                        int[] earlier = meetings[Integer.parseInt(taken.get(b).substring(1))];
+                        boolean clash = false;
+                        for (int x = 0; x < 4; x += 2) {
+                            for (int y = 0; y < 4; y += 2) {
+                                clash |= later[x] < earlier[y + 1] && earlier[y] < later[x + 1];
+                            }
+                        }
+                        if (clash) expected.add(student.getStudentId() + " " + taken.get(b) + " " + taken.get(a));
+                    }
+                }
+            }
+            double referenceMs = (System.nanoTime() - t) / 1e6;
+            for (List<Timetable.StudentConflict> found : Arrays.asList(sequential, parallel)) {
+                Set<String> clashes = new HashSet<>();
+                for (Timetable.StudentConflict conflict : found) {
+                    if (conflict.getConflict() == Timetable.Conflict.TIME_CLASH) {
+                        clashes.add(conflict.getStudentId() + " " + conflict.getCourseId() + " " + conflict.getOtherCourseId());
+                    }
+                }
+                check(clashes.equals(expected), "term analysis found " + clashes.size() + " clashes, expected " + expected.size());
+            }
+            check(sequential.size() == parallel.size(), "parallel analysis disagrees with sequential");
+            System.out.printf("  term analysis, %d students: %d conflicts (%d clashes) sequential %.0f ms, parallel %.0f ms (%d cores), interval reference %.0f ms%n",
+                    n, parallel.size(), expected.size(), sequentialMs, parallelMs,
+                    Runtime.getRuntime().availableProcessors(), referenceMs);
+        }
+        checkConcurrentClashes();
+    }
+
+    // Two clashing courses processed at the same time on a concurrent system: every student who
+    // requested both must end up in exactly one of them. Term analysis runs throughout and must
+    // never see a clash (or fail on a course list that is being appended to)
+    private static void checkConcurrentClashes() {
+        SchoolManagementSystem sms = new SchoolManagementSystem(true);
+        int rounds = 50;
+        int perRound = 2_000;
+        sms.registerCourse("CLASH-A", rounds * perRound);
+        sms.registerCourse("CLASH-B", rounds * perRound);
+        sms.getTimetable().addMeeting("CLASH-A", DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0));
+        sms.getTimetable().addMeeting("CLASH-B", DayOfWeek.MONDAY, LocalTime.of(9, 30), LocalTime.of(10, 30));
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] analyses = new long[1];
+        Thread analyzer = new Thread(() -> {
+            while (!done.get()) {
+                List<Timetable.StudentConflict> conflicts = sms.analyzeTimetable();
+                check(conflicts.isEmpty(), "term analysis during processing found " + conflicts);
+                analyses[0]++;
+            }
+        });
+        analyzer.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+        analyzer.start();
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < perRound; i++) {
+                String id = "CL" + round + "-" + i;
+                sms.registerStudent(new Student(id, "Student " + i, id + "@meru.edu", 10));
+                sms.enrollInCourse("CLASH-A", id);
+                sms.enrollInCourse("CLASH-B", id);
+            }
+            CountDownLatch start = new CountDownLatch(1);
+            Thread[] workers = new Thread[2];
+            for (int w = 0; w < 2; w++) {
+                String courseId = w == 0 ? "CLASH-A" : "CLASH-B";
+                workers[w] = new Thread(() -> {
+                    awaitQuietly(start);
+                    sms.processEnrollment(courseId);
+                });
+                workers[w].start();
+            }
+            start.countDown();
+            for (Thread worker : workers) joinQuietly(worker);
+        }
+        done.set(true);
+        joinQuietly(analyzer);
+        if (failure.get() != null) {
+            throw new IllegalStateException("term analysis failed during concurrent processing", failure.get());
+        }
+        for (int round = 0; round < rounds; round++) {
+            for (int i = 0; i < perRound; i++) {
+                List<String> taken = sms.findStudent("CL" + round + "-" + i).getCourses();
+                check(taken.size() == 1, "CL" + round + "-" + i + " holds " + taken + " after concurrent processing of clashing courses");
+            }
+        }
+        System.out.printf("  concurrent clash check: %d students requested two clashing courses, each admitted to exactly one; %d term analyses meanwhile saw no clash%n",
+                rounds * perRound, analyses[0]);
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void joinQuietly(Thread thread) {
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------------------------------------------------------------- Concurrent Facade
+
+    private static final String[] FACADE_SUBJECTS = {"Math", "Science", "English"};
+    private static volatile boolean facadeStop;
+
+    /**
+     * A concurrent SchoolManagementSystem under mixed traffic: readers check invariants of what
+     * they see while writers register students, add grades and record fees; the final state must
+     * account for every write. Then read throughput at 1-8 reader threads, idle and with one
+     * writer running, against the former approach of one lock around a single-threaded system.
+     */
+    private static void benchmarkConcurrentFacade() {
+        int students = Math.min(MAX_SIZE, 100_000);
+        stressConcurrentFacade(students, 4, 2, 1_000);
+        System.out.printf("%-28s %8s %8s %16s%n", "mode", "readers", "writer", "reads/s");
+        for (boolean withWriter : new boolean[]{false, true}) {
+            for (int readers : new int[]{1, 2, 4, 8}) {
+                for (boolean concurrent : new boolean[]{false, true}) {
+                    double reads = facadeReadThroughput(students, readers, withWriter, concurrent, 1_000);
+                    System.out.printf("%-28s %8d %8s %16.0f%n", concurrent ? "concurrent (module locks)" : "single lock around system",
+                            readers, withWriter ? "yes" : "no", reads);
+                }
+            }
+        }
+    }
+
+    private static SchoolManagementSystem populatedSystem(int students, boolean concurrent) {
+        SchoolManagementSystem sms = new SchoolManagementSystem(concurrent);
+        Random random = new Random(37);
+        for (int i = 0; i < students; i++) {
+            sms.registerStudent(new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+            for (String subject : FACADE_SUBJECTS) sms.addGrade(studentId(i), subject, 40 + random.nextInt(61));
+            sms.addFeeRecord(studentId(i), 10.0, new Date(TERM_START_MS + i * 1000L), "Tuition");
+        }
+        return sms;
+    }
+
+    private static void stressConcurrentFacade(int students, int readers, int writers, long millis) {
+        SchoolManagementSystem sms = populatedSystem(students, true);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] writes = new long[writers];
+        long[] reads = new long[readers];
+        facadeStop = false;
+        List<Thread> threads = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> {
+                Random random = new Random(writer);
+                for (long n = 0; !facadeStop; n++) {
+                    String id = studentId(random.nextInt(students));
+                    switch ((int) (n % 3)) {
+                        case 0: sms.addGrade(id, FACADE_SUBJECTS[random.nextInt(FACADE_SUBJECTS.length)], 40 + random.nextInt(61)); break;
+                        case 1: sms.addFeeRecord(id, 10.0, new Date(TERM_START_MS), "Tuition"); break; // one shared timestamp
+                        default: check(sms.registerStudent(new Student("W" + writer + "-" + n, "New", "n@meru.edu", 9)),
+                                "a new student was rejected");
+                    }
+                    writes[writer] = n + 1;
+                }
+            }));
+        }
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(100 + reader);
+                Map<String, Double> lastPaid = new HashMap<>();
+                for (long n = 0; !facadeStop; n++) {
+                    String id = studentId(random.nextInt(students));
+                    Student student = sms.findStudent(id);
+                    check(student != null && student.getStudentId().equals(id), "findStudent lost " + id);
+                    List<StudentPerformance> top = sms.getTopPerformers(10);
+                    check(top.size() == 10, "top performers has " + top.size() + " entries");
+                    for (int i = 1; i < top.size(); i++) {
+                        check(top.get(i - 1).compareTo(top.get(i)) < 0, "top performers out of order");
+                    }
+                    // Fees are only ever added, in units of 10: a reader's view only grows, in whole units
+                    double paid = sms.getTotalPaid(id);
+                    check(paid % 10.0 == 0 && paid >= lastPaid.getOrDefault(id, 10.0), "torn or shrinking total " + paid + " for " + id);
+                    lastPaid.put(id, paid);
+                    check(sms.getOutstandingBalance(id) <= -paid, "balance disagrees with total paid for " + id);
+                    reads[reader] = n + 1;
+                }
+            }));
+        }
+        long[] reports = new long[1];
+        threads.add(new Thread(() -> {
+            // Registrations grow the grade columns while the report's scans run
+            for (long n = 0; !facadeStop; n++) {
+                GradeAnalytics analytics = sms.getGradeAnalytics();
+                GradeAnalytics.SubjectStats stats = analytics.subjectStats(FACADE_SUBJECTS[0]);
+                check(stats != null && stats.getCount() >= students, "grade report lost grades: " + stats);
+                long cohorts = analytics.cohortStats(FACADE_SUBJECTS[0]).values().stream().mapToLong(GradeAnalytics.SubjectStats::getCount).sum();
+                check(cohorts == stats.getCount(), "cohort report covers " + cohorts + " of " + stats.getCount() + " grades");
+                reports[0] = n + 1;
+            }
+        }));
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+            thread.start();
+        }
+        sleepQuietly(millis);
+        facadeStop = true;
+        threads.forEach(PerformanceBenchmark::joinQuietly);
+        if (failure.get() != null) {
+            throw new IllegalStateException("concurrent facade stress failed", failure.get());
+        }
+
+        long totalWrites = 0;
+        long registered = 0;
+        long fees = 0;
+        for (long w : writes) {
+            totalWrites += w;
+            registered += w / 3;
+            fees += (w + 1) / 3;
+        }
+        for (int w = 0; w < writers; w++) {
+            for (long n = 2; n < writes[w]; n += 3) {
+                check(sms.findStudent("W" + w + "-" + n) != null, "registered student W" + w + "-" + n + " is missing");
+            }
+        }
+        check(sms.getStudentRegistrySize() == students + registered, "registry size does not account for every registration");
+        check(sms.countFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)) == students + fees,
+                "fee tracker does not account for every fee");
+        check(Math.abs(sms.sumFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)) - 10.0 * (students + fees)) < 1e-6,
+                "fee total does not account for every fee");
+        System.out.printf("stress: %d writes, %d checked reads and %d grade reports over %d ms, final state consistent%n",
+                totalWrites, Arrays.stream(reads).sum(), reports[0], millis);
+    }
+
+    private static double facadeReadThroughput(int students, int readers, boolean withWriter, boolean concurrent, long millis) {
+        SchoolManagementSystem sms = populatedSystem(students, concurrent);
+        Object systemLock = new Object(); // the single-lock baseline serializes every call on this
+        long[] reads = new long[readers];
+        facadeStop = false;
+        CountDownLatch started = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            int reader = r;
+            threads.add(new Thread(() -> {
+                Random random = new Random(reader);
+                awaitQuietly(started);
+                long n = 0;
+                while (!facadeStop) {
+                    String id = studentId(random.nextInt(students));
+                    if (concurrent) {
+                        sink += sms.findStudent(id).getGradeLevel() + sms.getTopPerformers(10).size() + (long) sms.getOutstandingBalance(id);
+                    } else {
+                        synchronized (systemLock) {
+                            sink += sms.findStudent(id).getGradeLevel() + sms.getTopPerformers(10).size() + (long) sms.getOutstandingBalance(id);
+                        }
+                    }
+                    n += 3;
+                }
+                reads[reader] = n;
+            }));
+        }
+        if (withWriter) {
+            threads.add(new Thread(() -> {
+                Random random = new Random(99);
+                awaitQuietly(started);
+                while (!facadeStop) {
+                    String id = studentId(random.nextInt(students));
+                    if (concurrent) {
+                        sms.addGrade(id, "Math", 40 + random.nextInt(61));
+                        sms.addFeeRecord(id, 10.0, new Date(TERM_START_MS), "Tuition");
+                    } else {
+                        synchronized (systemLock) {
+                            sms.addGrade(id, "Math", 40 + random.nextInt(61));
+                            sms.addFeeRecord(id, 10.0, new Date(TERM_START_MS), "Tuition");
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) thread.start();
+        long t = System.nanoTime();
+        started.countDown();
+        sleepQuietly(millis);
+        facadeStop = true;
+        threads.forEach(PerformanceBenchmark::joinQuietly);
+        return Arrays.stream(reads).sum() / ((System.nanoTime() - t) / 1e9);
+    }
+
+    // ---------------------------------------------------------------- HTTP Front End
+
+    private static final int HTTP_COURSES = 100;
+    private static final AtomicLong httpRegistrations = new AtomicLong();
+
+    /**
+     * Closed-loop load on SchoolHttpServer: each client keeps one keep-alive connection and sends
+     * its next request as soon as the last one is answered, 70% reads and 30% writes (grades, fees,
+     * enrollments, registrations). Reports throughput, latency percentiles and the average write
+     * batch per client count; afterwards every acknowledged fee and registration must be in the
+     * system.
+     */
+    private static void benchmarkHttpFrontEnd() {
+        int students = Math.min(MAX_SIZE, 20_000);
+        long millis = Long.getLong("bench.httpMillis", 3_000);
+        SchoolManagementSystem sms = populatedSystem(students, true);
+        for (int c = 0; c < HTTP_COURSES; c++) {
+            sms.registerCourse("C" + c, 1_000);
+        }
+        AtomicLong feesAcked = new AtomicLong();
+        AtomicLong studentsAcked = new AtomicLong();
+        try (SchoolHttpServer server = new SchoolHttpServer(sms, 0, Long.getLong("bench.httpWindowMicros", SchoolHttpServer.DEFAULT_BATCH_WINDOW_MICROS))) {
+            server.start();
+            System.out.println("request threads: " + (server.usesVirtualThreads() ? "virtual" : "platform pool (JDK without virtual threads)"));
+            runHttpClients(server.getPort(), students, 8, 1_000, feesAcked, studentsAcked); // warm-up
+            System.out.printf("%8s %12s %10s %10s %10s %10s %12s%n", "clients", "req/s", "p50 us", "p99 us", "p99.9 us", "max us", "avg batch");
+            for (int clients : new int[]{1, 8, 32, 64}) {
+                long batches = server.getBatchCount();
+                long batched = server.getBatchedWriteCount();
+                long t = System.nanoTime();
+                SystemMetrics.OperationStats stats = runHttpClients(server.getPort(), students, clients, millis, feesAcked, studentsAcked);
+                double seconds = (System.nanoTime() - t) / 1e9;
+                check(stats.getFailures() == 0, stats.getFailures() + " requests failed");
+                System.out.printf("%8d %12.0f %10.0f %10.0f %10.0f %10.0f %12.1f%n", clients, stats.getCalls() / seconds,
+                        stats.getP50Nanos() / 1e3, stats.getP99Nanos() / 1e3, stats.getP999Nanos() / 1e3, stats.getMaxNanos() / 1e3,
+                        (server.getBatchedWriteCount() - batched) / (double) Math.max(1, server.getBatchCount() - batches));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        check(sms.countFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)) == students + feesAcked.get(),
+                "fee tracker does not account for every acknowledged fee");
+        check(sms.getStudentRegistrySize() == students + studentsAcked.get(), "registry does not account for every acknowledged registration");
+        System.out.printf("consistency: %d acknowledged fees and %d registrations all applied%n", feesAcked.get(), studentsAcked.get());
+        checkHttpCloseUnderLoad();
+    }
+
+    // close() while clients are still posting fees: close must return, every client must get an
+    // answer or a closed connection (none left waiting on a write), and every acknowledged fee
+    // must have been applied
+    private static void checkHttpCloseUnderLoad() {
+        int students = 1_000;
+        SchoolManagementSystem sms = populatedSystem(students, true);
+        AtomicLong acked = new AtomicLong();
+        List<Thread> clients = new ArrayList<>();
+        long closeMillis;
+        try {
+            SchoolHttpServer server = new SchoolHttpServer(sms, 0);
+            server.start();
+            for (int c = 0; c < 16; c++) {
+                int client = c;
+                clients.add(new Thread(() -> {
+                    try (HttpTestConnection connection = new HttpTestConnection(server.getPort())) {
+                        for (int n = 0; ; n++) {
+                            if (connection.send("POST /fees?student=" + studentId(client) + "&amount=10&date=" + (TERM_START_MS + n)
+                                    + "&type=Tuition") == 200) {
+                                acked.incrementAndGet();
+                            }
+                        }
+                    } catch (IOException closedByServer) {
+                        // expected once the server is closed
+                    }
+                }));
+            }
+            clients.forEach(Thread::start);
+            sleepQuietly(500);
+            long t = System.nanoTime();
+            server.close();
+            closeMillis = (System.nanoTime() - t) / 1_000_000;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (Thread client : clients) {
+            try {
+                client.join(60_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            check(!client.isAlive(), "an HTTP client is still waiting after close");
+        }
+        check(sms.countFeesInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)) >= students + acked.get(),
+                "an acknowledged fee was not applied before close");
+        System.out.printf("close under load: returned in %d ms, %d acknowledged fees applied, no client left waiting%n", closeMillis, acked.get());
+    }
+
+    private static SystemMetrics.OperationStats runHttpClients(int port, int students, int clients, long millis,
+                                                               AtomicLong feesAcked, AtomicLong studentsAcked) {
+        SystemMetrics metrics = new SystemMetrics();
+        SystemMetrics.Timer timer = metrics.timer("request");
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch started = new CountDownLatch(1);
+        facadeStop = false;
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            int client = c;
+            threads.add(new Thread(() -> {
+                Random random = new Random(client);
+                try (HttpTestConnection connection = new HttpTestConnection(port)) {
+                    awaitQuietly(started);
+                    for (long n = 0; !facadeStop; n++) {
+                        String id = studentId(random.nextInt(students));
+                        int kind = random.nextInt(100);
+                        String target;
+                        if (kind < 30) {
+                            target = "GET /students?id=" + id;
+                        } else if (kind < 50) {
+                            target = "GET /balance?student=" + id;
+                        } else if (kind < 60) {
+                            target = "GET /top?count=10";
+                        } else if (kind < 70) {
+                            long start = TERM_START_MS + random.nextInt(students) * 1000L;
+                            target = "GET /fees/total?start=" + start + "&end=" + (start + 3_600_000L);
+                        } else if (kind < 85) {
+                            target = "POST /grades?student=" + id + "&subject=" + FACADE_SUBJECTS[random.nextInt(FACADE_SUBJECTS.length)]
+                                    + "&grade=" + (40 + random.nextInt(61));
+                        } else if (kind < 95) {
+                            target = "POST /fees?student=" + id + "&amount=10&date=" + (TERM_START_MS + random.nextInt(students) * 1000L)
+                                    + "&type=Tuition";
+                        } else if (kind < 98) {
+                            target = "POST /enrollments?course=C" + random.nextInt(HTTP_COURSES) + "&student=" + id;
+                        } else {
+                            target = "POST /students?id=H" + httpRegistrations.incrementAndGet()
+                                    + "&name=New&email=new%40meru.edu&gradeLevel=9";
+                        }
+                        long start = timer.start();
+                        int status = connection.send(target);
+                        timer.stop(start, status == 200);
+                        if (status == 200 && kind >= 85 && kind < 95) feesAcked.incrementAndGet();
+                        if (status == 200 && kind >= 98) studentsAcked.incrementAndGet();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+            thread.start();
+        }
+        started.countDown();
+        sleepQuietly(millis);
+        facadeStop = true;
+        threads.forEach(PerformanceBenchmark::joinQuietly);
+        if (failure.get() != null) {
+            throw new IllegalStateException("HTTP client failed", failure.get());
+        }
+        return metrics.snapshot().getOperations().get("request");
+    }
+
+    /**
+     * A minimal HTTP/1.1 client over one keep-alive socket: sends a bodyless request, returns the
+     * status and discards the body.
+     */
+    private static final class HttpTestConnection implements Closeable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        HttpTestConnection(int port) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            socket.setTcpNoDelay(true);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        int send(String methodAndTarget) throws IOException {
+            out.write((methodAndTarget + " HTTP/1.1\r\nHost: localhost\r\nContent-Length: 0\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            int status = Integer.parseInt(readLine().substring(9, 12));
+            int length = 0;
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                if (header.regionMatches(true, 0, "Content-Length:", 0, 15)) {
+                    length = Integer.parseInt(header.substring(15).trim());
+                }
+            }
+            if (in.readNBytes(length).length != length) {
+                throw new EOFException("connection closed mid-response");
+            }
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            for (int b = in.read(); b != '\n'; b = in.read()) {
+                if (b < 0) {
+                    throw new EOFException("connection closed");
+                }
+                if (b != '\r') line.append((char) b);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    // ---------------------------------------------------------------- Snapshots
+
+    private static void benchmarkSnapshot() {
+        System.out.printf("%10s %12s %10s %10s %12s%n", "students", "fee records", "save s", "load s", "size MB");
+        for (int fees : sizes(200_000, 2_000_000, 20_000_000)) {
+            int students = fees / 20;
+            SchoolManagementSystem sms = new SchoolManagementSystem();
+            Random random = new Random(5);
+            for (int i = 0; i < students; i++) {
+                sms.registerStudent(new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+                for (int g = 0; g < 3; g++) {
+                    sms.addGrade(studentId(i), SUBJECTS[(i + g) % SUBJECTS.length], 40 + random.nextInt(61));
+                }
+            }
+            for (int i = 0; i < fees; i++) {
+                sms.addFeeRecord(studentId(i % students), 50 + random.nextInt(950),
+                        new Date(TERM_START_MS + i * 1000L), "Tuition");
+            }
+            for (int c = 0; c < 100; c++) {
+                sms.registerCourse("C" + c, 50);
+                for (int r = 0; r < 60; r++) {
+                    sms.enrollInCourse("C" + c, studentId((c * 60 + r) % students));
+                }
+                if (c % 2 == 0) sms.processEnrollment("C" + c); // odd courses keep pending requests
+            }
+            sms.setAmountDue(studentId(0), 1_000_000);
+            Timetable timetable = sms.getTimetable();
+            timetable.addRoom("R1", 40);
+            timetable.addMeeting("C0", DayOfWeek.MONDAY, LocalTime.of(9, 0), LocalTime.of(10, 0));
+            timetable.addMeeting("C2", DayOfWeek.MONDAY, LocalTime.of(9, 30), LocalTime.of(11, 0));
+            timetable.assignRoom("C0", "R1");
+            timetable.addPrerequisite("C4", "C0");
+            timetable.recordCompletion(studentId(1), "C0");
+            for (int b = 0; b < 1000; b++) {
+                sms.addBook(new Book("ISBN" + b, "Title " + b, "Author " + b % 50));
+                sms.borrowBook("ISBN" + b, studentId(b % students));
+            }
+
+            Path dir = null;
+            try {
+                dir = Files.createTempDirectory("sms-snapshot");
+                long t = System.nanoTime();
+                sms.saveSnapshot(dir);
+                double saveSeconds = (System.nanoTime() - t) / 1e9;
+                long bytes;
+                try (Stream<Path> files = Files.list(dir)) {
+                    bytes = files.mapToLong(path -> path.toFile().length()).sum();
+                }
+
+                sms = null;
+                System.gc();
+                t = System.nanoTime();
+                SchoolManagementSystem restored = SchoolManagementSystem.loadSnapshot(dir);
+                double loadSeconds = (System.nanoTime() - t) / 1e9;
+
+                check(restored.getStudentRegistrySize() == students, "snapshot lost students");
+                check(!restored.isConcurrent(), "snapshot of a single-threaded system restored as concurrent");
+                Date end = new Date(TERM_START_MS + fees * 1000L);
+                check(restored.getFeeRecordsInRange(new Date(TERM_START_MS), end).size() == fees, "snapshot lost fee records");
+                check(restored.getTopPerformers(10).size() == 10, "snapshot lost grades");
+                check(restored.getWaitlist("C0").size() == 10 && restored.getEnrolledStudents("C0").size() == 50,
+                        "snapshot lost course roster or waitlist");
+                check(restored.processEnrollment("C1").size() == 50 && restored.getWaitlist("C1").size() == 10,
+                        "snapshot lost pending enrollment requests");
+                Timetable restoredTimetable = restored.getTimetable();
+                check(restoredTimetable.getRoomCapacity("C0") == 40
+                                && restoredTimetable.check(restored.findStudent(studentId(0)), "C2") == Timetable.Conflict.TIME_CLASH
+                                && restoredTimetable.check(restored.findStudent(studentId(0)), "C4") == Timetable.Conflict.MISSING_PREREQUISITE
+                                && restoredTimetable.check(restored.findStudent(studentId(1)), "C4") == Timetable.Conflict.NONE,
+                        "snapshot lost the timetable");
+                check(restored.getOutstandingBalance(studentId(0)) == 1_000_000 - restored.getTotalPaid(studentId(0))
+                                && restored.getTotalPaid(studentId(0)) > 0,
+                        "snapshot lost amounts due or ledger totals");
+                System.out.printf("%10d %12d %10.2f %10.2f %12.1f%n", students, fees, saveSeconds, loadSeconds, bytes / 1e6);
+
+                Path feesFile = dir.resolve(SnapshotStore.FEES_FILE);
+                try (FileChannel channel = FileChannel.open(feesFile, StandardOpenOption.WRITE)) {
+                    channel.write(ByteBuffer.wrap(new byte[]{0x7f}), channel.size() / 2);
+                }
+                try {
+                    SchoolManagementSystem.loadSnapshot(dir);
+                    check(false, "corrupted snapshot was accepted");
+                } catch (IOException expected) {
+                    // checksum mismatch is the expected outcome
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+        checkConcurrentSnapshotMode();
+    }
+
+    // A snapshot of a concurrent system must restore a concurrent one, e.g. for SchoolHttpServer
+    private static void checkConcurrentSnapshotMode() {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sms-snapshot-concurrent");
+            SchoolManagementSystem sms = new SchoolManagementSystem(true);
+            sms.registerStudent(new Student(studentId(0), "Student 0", "s0@meru.edu", 10));
+            sms.registerCourse("C0", 5);
+            sms.enrollInCourse("C0", studentId(0));
+            sms.saveSnapshot(dir);
+            SchoolManagementSystem restored = SchoolManagementSystem.loadSnapshot(dir);
+            check(restored.isConcurrent(), "snapshot of a concurrent system restored as single-threaded");
+            new SchoolHttpServer(restored, 0).close(); // rejects a system that is not concurrent
+            check(restored.processEnrollment("C0").equals(List.of(studentId(0))), "restored concurrent system lost a request");
+            System.out.println("concurrent snapshot: restored in concurrent mode and accepted by SchoolHttpServer");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------------------------------------------------------- Write-Ahead Journal
+
+    private static void benchmarkJournal() {
+        System.out.printf("%20s %8s %10s %14s %12s%n", "durability", "threads", "ops", "us/op", "ops/s");
+        for (TransactionJournal.Durability durability : TransactionJournal.Durability.values()) {
+            for (int threads : new int[]{1, 4, 16}) {
+                int perThread = durability == TransactionJournal.Durability.FSYNC_EACH ? 500 : 20_000;
+                runJournal(durability, threads, perThread);
+            }
+        }
+        checkSnapshotDuringJournaledWrites();
+        checkCrashBeforeJournalReset();
+    }
+
+    // A crash after the snapshot files are in place but before the journal is reset leaves a
+    // journal whose entries the snapshot already holds: restoring must not apply them twice
+    private static void checkCrashBeforeJournalReset() {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sms-journal-crash");
+            Path snapshot = dir.resolve("snapshot");
+            Path file = dir.resolve("transactions.journal");
+            Path crashed = dir.resolve("crashed.journal");
+            int fees = 1_000;
+            SchoolManagementSystem sms = new SchoolManagementSystem(true);
+            sms.addBook(new Book("ISBN-CRASH", "Crash Course", "A. Author", 1));
+            sms.openJournal(file, TransactionJournal.Durability.GROUP_COMMIT);
+            for (int i = 0; i < fees; i++) {
+                sms.addFeeRecord(studentId(i), 10.0, new Date(TERM_START_MS + i), "Tuition");
+            }
+            check(sms.borrowBook("ISBN-CRASH", studentId(0)), "journaled borrow failed");
+            Files.copy(file, crashed); // the journal as the crash would leave it
+            sms.saveSnapshot(snapshot);
+            for (int i = 0; i < fees; i++) {
+                sms.addFeeRecord(studentId(i), 10.0, new Date(TERM_START_MS + fees + i), "Tuition");
+            }
+            sms.closeJournal();
+
+            SchoolManagementSystem afterCrash = SchoolManagementSystem.loadSnapshot(snapshot);
+            long replayed = afterCrash.openJournal(crashed, TransactionJournal.Durability.FSYNC_EACH);
+            afterCrash.closeJournal();
+            long restoredFees = afterCrash.getFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).size();
+            check(replayed == 0 && restoredFees == fees, "crash before reset replayed " + replayed + " entries, restoring " + restoredFees + " of " + fees + " fees");
+            check(afterCrash.getStudentLibraryHistory(studentId(0), 10).size() == 1, "crash before reset replayed the borrow again");
+            check(afterCrash.returnBook("ISBN-CRASH", studentId(0)) && !afterCrash.returnBook("ISBN-CRASH", studentId(0)),
+                    "crash before reset left a second loan");
+
+            SchoolManagementSystem afterReset = SchoolManagementSystem.loadSnapshot(snapshot);
+            replayed = afterReset.openJournal(file, TransactionJournal.Durability.FSYNC_EACH);
+            afterReset.closeJournal();
+            restoredFees = afterReset.getFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).size();
+            check(replayed == fees && restoredFees == 2L * fees, "reset journal replayed " + replayed + " entries, restoring " + restoredFees + " fees");
+            System.out.printf("crash before reset: snapshot-covered journal entries skipped, %d later ones replayed%n", replayed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    // Snapshots taken while fee writers run must not lose a fee: every acknowledged fee is either in
+    // the last snapshot or still in the journal that saveSnapshot reset
+    private static void checkSnapshotDuringJournaledWrites() {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sms-journal-snapshot");
+            Path snapshot = dir.resolve("snapshot");
+            Path file = dir.resolve("transactions.journal");
+            SchoolManagementSystem sms = new SchoolManagementSystem(true);
+            sms.openJournal(file, TransactionJournal.Durability.GROUP_COMMIT);
+            AtomicBoolean stop = new AtomicBoolean();
+            AtomicLong acknowledged = new AtomicLong();
+            Thread[] writers = new Thread[4];
+            for (int t = 0; t < writers.length; t++) {
+                int writer = t;
+                writers[t] = new Thread(() -> {
+                    for (int i = 0; !stop.get(); i++) {
+                        sms.addFeeRecord("W" + writer + "-" + i, 10.0, new Date(TERM_START_MS + i), "Tuition");
+                        acknowledged.incrementAndGet();
+                    }
+                });
+                writers[t].start();
+            }
+            int snapshots = 20;
+            for (int i = 0; i < snapshots; i++) {
+                sleepQuietly(20); // let writers queue up group commits between snapshots
+                sms.saveSnapshot(snapshot);
+            }
+            stop.set(true);
+            for (Thread writer : writers) joinQuietly(writer);
+            sms.closeJournal();
+
+            SchoolManagementSystem restored = SchoolManagementSystem.loadSnapshot(snapshot);
+            restored.openJournal(file, TransactionJournal.Durability.FSYNC_EACH);
+            long fees = restored.getFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).size();
+            restored.closeJournal();
+            check(fees == acknowledged.get(), "snapshot + journal restored " + fees + " of " + acknowledged.get() + " acknowledged fees");
+            System.out.printf("snapshot during writes: %d snapshots, %d acknowledged fees all restored%n", snapshots, fees);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    private static void runJournal(TransactionJournal.Durability durability, int threads, int perThread) {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("sms-journal");
+            Path file = dir.resolve("transactions.journal");
+            long t0;
+            try (TransactionJournal journal = new TransactionJournal(file, durability)) {
+                CountDownLatch start = new CountDownLatch(1);
+                Thread[] workers = new Thread[threads];
+                for (int t = 0; t < threads; t++) {
+                    int worker = t;
+                    workers[t] = new Thread(() -> {
+                        awaitQuietly(start);
+                        try {
+                            for (int i = 0; i < perThread; i++) {
+                                journal.appendFee(new FeeRecord(studentId(worker * perThread + i), 100.0,
+                                        new Date(TERM_START_MS + i), "Tuition"));
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                    workers[t].start();
+                }
+                t0 = System.nanoTime();
+                start.countDown();
+                for (Thread worker : workers) joinQuietly(worker);
+                journal.sync();
+            }
+            long elapsed = System.nanoTime() - t0;
+            long ops = (long) threads * perThread;
+
+            // A crash mid-write leaves a torn tail; replay must keep every intact entry and cut the rest
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 40, 1, 2, 3}));
+            }
+            FeeTracker tracker = new FeeTracker();
+            long replayed = TransactionJournal.replay(file, tracker, null);
+            check(replayed == ops, "journal replayed " + replayed + " of " + ops + " entries");
+            check(tracker.getFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE)).size() == ops,
+                    "journal replay did not rebuild every fee record");
+            System.out.printf("%20s %8d %10d %14.2f %12.0f%n", durability, threads, ops, elapsed / 1e3 / ops, ops * 1e9 / elapsed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(dir);
+        }
+    }
+
+    // ---------------------------------------------------------------- Library Catalog
+
+    private static final String[] TITLE_WORDS = {"Data", "Structures", "Algorithms", "History", "Kenya", "Modern",
+            "Chemistry", "Principles", "Introduction", "Advanced", "Poetry", "River", "Mountain", "Systems", "Theory"};
+
+    /**
+     * First-page latency of title prefix, exact author and keyword queries (with and without the
+     * availability filter) against a full catalog scan, checking both return the same books.
+     */
+    private static void benchmarkCatalogSearch() {
+        System.out.printf("%10s %-28s %12s %12s %14s%n", "books", "query", "matches", "page us", "full scan us");
+        for (int n : sizes(100_000, 500_000, 2_000_000)) {
+            LibrarySystem library = new LibrarySystem();
+            List<Book> catalog = new ArrayList<>(n);
+            Random random = new Random(11);
+            for (int i = 0; i < n; i++) {
+                String title = TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " "
+                        + TITLE_WORDS[random.nextInt(TITLE_WORDS.length)] + " Vol " + i % 97;
+                Book book = new Book("ISBN" + i, title, "Author " + random.nextInt(n / 20 + 1));
+                if (random.nextInt(3) == 0) book.setAvailable(false);
+                library.addBook(book);
+                catalog.add(book);
+            }
+            runCatalogQuery(n, "title prefix 'data str'", catalog,
+                    b -> b.getTitle().toLowerCase(Locale.ROOT).startsWith("data str"),
+                    () -> library.searchByTitlePrefix("Data Str", false, 0, 20),
+                    () -> library.streamByTitlePrefix("Data Str", false).count());
+            runCatalogQuery(n, "title prefix, available", catalog,
+                    b -> b.isAvailable() && b.getTitle().toLowerCase(Locale.ROOT).startsWith("data str"),
+                    () -> library.searchByTitlePrefix("Data Str", true, 0, 20),
+                    () -> library.streamByTitlePrefix("Data Str", true).count());
+            runCatalogQuery(n, "author 'Author 7'", catalog,
+                    b -> b.getAuthor().equalsIgnoreCase("Author 7"),
+                    () -> library.searchByAuthor("Author 7", false, 0, 20),
+                    () -> library.streamByAuthor("Author 7", false).count());
+            runCatalogQuery(n, "keywords 'kenya poetry 42'", catalog,
+                    b -> Arrays.asList((b.getTitle() + " " + b.getAuthor()).toLowerCase(Locale.ROOT).split(" "))
+                            .containsAll(Arrays.asList("kenya", "poetry", "42")),
+                    () -> library.searchByKeywords("kenya poetry 42", false, 0, 20),
+                    () -> library.streamByKeywords("kenya poetry 42", false).count());
+        }
+    }
+
+    private static void runCatalogQuery(int n, String name, List<Book> catalog, java.util.function.Predicate<Book> matches,
+                                        java.util.function.Supplier<List<Book>> page, java.util.function.LongSupplier count) {
+        long expected = catalog.stream().filter(matches).count();
+        check(count.getAsLong() == expected, name + " returned " + count.getAsLong() + " books, scan found " + expected);
+        for (Book book : page.get()) check(matches.test(book), name + " returned a non-matching book");
+
+        int reps = 2_000;
+        for (int r = 0; r < reps; r++) sink += page.get().size(); // warmup
+        long t = System.nanoTime();
+        for (int r = 0; r < reps; r++) sink += page.get().size();
+        double pageUs = (System.nanoTime() - t) / 1e3 / reps;
+
+        t = System.nanoTime();
+        for (int r = 0; r < 5; r++) {
+            List<Book> found = new ArrayList<>();
+            for (Book book : catalog) {
+                if (matches.test(book) && found.size() < 20) found.add(book);
+            }
+            sink += found.size();
+        }
+        double scanUs = (System.nanoTime() - t) / 1e3 / 5;
+        System.out.printf("%10d %-28s %12d %12.1f %14.1f%n", n, name, expected, pageUs, scanUs);
+    }
+
+    /**
+     * Exam-week library traffic: 200 set texts with 40 copies each, 80% of requests going to the
+     * 20 most popular titles, and slightly more borrowing than returning so the popular titles run
+     * out. Each worker borrows, places a hold when every copy is out, notices
+     * when a hold has been filled, and returns its oldest loans. Afterwards every title must still
+     * account for all its copies (available + on loan), and every hold queue must be consecutive.
+     */
+    private static void benchmarkExamWeek() {
+        System.out.printf("%8s %12s %12s %12s %12s %12s%n", "threads", "ops", "ops/s", "borrows", "holds", "handovers");
+        for (int threads : new int[]{1, 4, 16}) {
+            runExamWeek(threads, 200_000);
+        }
+        checkRestock();
+    }
+
+    // Re-adding a catalogued ISBN adds copies to the existing inventory: loans and holds survive,
+    // the new copy goes to the first student holding the book, and the catalog keeps one entry
+    private static void checkRestock() {
+        LibrarySystem library = new LibrarySystem();
+        library.addBook(new Book("RESTOCK", "Restocked Text", "A. Author", 1));
+        check(library.borrowBook("RESTOCK", "R1"), "first copy not lent");
+        check(library.placeHold("RESTOCK", "R2") == 1 && library.placeHold("RESTOCK", "R3") == 2, "holds not queued");
+        library.addBook(new Book("RESTOCK", "Restocked Text", "A. Author", 1));
+        check(library.searchBook("RESTOCK").getTotalCopies() == 2, "restock did not add a copy");
+        check(library.getHoldPosition("RESTOCK", "R2") == 0 && library.getLoans("RESTOCK").containsKey("R2"),
+                "restocked copy did not go to the first hold");
+        check(library.getHoldPosition("RESTOCK", "R3") == 1, "second hold did not move up");
+        check(library.returnBook("RESTOCK", "R1"), "loan taken before the restock could not be returned");
+        check(library.getLoans("RESTOCK").containsKey("R3") && library.getHolds("RESTOCK").isEmpty(), "returned copy skipped the hold queue");
+        check(library.returnBook("RESTOCK", "R2") && library.returnBook("RESTOCK", "R3"), "restocked copies could not be returned");
+        check(library.getAvailableCopies("RESTOCK") == 2, "restocked book lost copies");
+        check(library.searchByTitlePrefix("Restocked", false, 0, 10).size() == 1, "restock duplicated the catalog entry");
+        System.out.println("restock: re-adding an ISBN kept its loans and holds and lent the new copy to the first hold");
+    }
+
+    private static void runExamWeek(int threads, int opsPerThread) {
+        int titles = 200;
+        int copies = 40;
+        LibrarySystem library = new LibrarySystem();
+        for (int b = 0; b < titles; b++) {
+            library.addBook(new Book("SET" + b, "Set Text " + b, "Author " + b % 17, copies));
+        }
+        long[] borrows = new long[threads];
+        long[] holds = new long[threads];
+        long[] handovers = new long[threads];
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int worker = t;
+            workers[t] = new Thread(() -> {
+                Random random = new Random(worker);
+                ArrayDeque<String[]> loans = new ArrayDeque<>();
+                List<String[]> waiting = new LinkedList<>();
+                awaitQuietly(start);
+                for (int i = 0; i < opsPerThread; i++) {
+                    String studentId = "W" + worker + "-" + random.nextInt(2_000);
+                    String isbn = "SET" + (random.nextInt(10) < 8 ? random.nextInt(20) : random.nextInt(titles));
+                    if (!loans.isEmpty() && random.nextInt(100) < 45) {
+                        String[] loan = loans.pollFirst();
+                        check(library.returnBook(loan[0], loan[1]), "a copy on loan could not be returned");
+                    } else if (library.borrowBook(isbn, studentId)) {
+                        loans.addLast(new String[]{isbn, studentId});
+                        borrows[worker]++;
+                    } else if (library.placeHold(isbn, studentId) > 0) {
+                        waiting.add(new String[]{isbn, studentId});
+                        holds[worker]++;
+                    }
+                    if (i % 64 == 0) {
+                        // Holds fill oldest first, so only the front of the waiting list is checked
+                        int checked = 0;
+                        for (Iterator<String[]> it = waiting.iterator(); it.hasNext() && checked++ < 32; ) {
+                            String[] hold = it.next();
+                            if (library.getHoldPosition(hold[0], hold[1]) == 0) {
+                                it.remove();
+                                loans.addLast(hold);
+                                handovers[worker]++;
+                            }
+                        }
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) joinQuietly(worker);
+        long elapsed = System.nanoTime() - t0;
+
+        for (int b = 0; b < titles; b++) {
+            String isbn = "SET" + b;
+            int onLoan = library.getLoans(isbn).values().stream().mapToInt(Integer::intValue).sum();
+            check(library.getAvailableCopies(isbn) + onLoan == copies, isbn + " lost or duplicated copies");
+            List<String> queue = library.getHolds(isbn);
+            check(queue.isEmpty() || library.getAvailableCopies(isbn) == 0, isbn + " has holds while copies are free");
+            for (int q = 0; q < queue.size(); q++) {
+                check(library.getHoldPosition(isbn, queue.get(q)) == q + 1, isbn + " hold positions are not consecutive");
+            }
+        }
+        long ops = (long) threads * opsPerThread;
+        System.out.printf("%8d %12d %12.0f %12d %12d %12d%n", threads, ops, ops * 1e9 / elapsed,
+                Arrays.stream(borrows).sum(), Arrays.stream(holds).sum(), Arrays.stream(handovers).sum());
+    }
+
+    /**
+     * Bounded transaction log with history spilled to disk: recent-N reads against the former
+     * pop-and-restore Stack, and keyed student / book history, checked against a full list.
+     */
+    private static void benchmarkTransactionHistory() {
+        System.out.printf("%12s %14s %16s %16s %16s %16s%n", "transactions", "append ns/op",
+                "recent(10) ns", "stack(10) ns", "student(20) us", "borrows(5) us");
+        for (int n : sizes(100_000, 1_000_000, 5_000_000)) {
+            Path dir = null;
+            try {
+                dir = Files.createTempDirectory("sms-history");
+                LibrarySystem library = new LibrarySystem(LibrarySystem.DEFAULT_RECENT_CAPACITY, dir);
+                int students = Math.max(1, n / 50);
+                int books = Math.max(1, n / 20);
+                Stack<Transaction> stack = new Stack<>();
+                List<Transaction> all = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    all.add(new Transaction("ISBN" + (i / 2 % books), studentId(i / 2 % students),
+                            new Date(TERM_START_MS + i * 1000L), i % 2 == 0 ? "BORROW" : "RETURN"));
+                }
+                long t = System.nanoTime();
+                for (Transaction transaction : all) library.restoreTransaction(transaction);
+                double appendNs = (System.nanoTime() - t) / (double) n;
+                for (int i = Math.max(0, n - LibrarySystem.DEFAULT_RECENT_CAPACITY); i < n; i++) stack.push(all.get(i));
+
+                int reps = 1_000_000;
+                long[] visited = new long[1];
+                java.util.function.Consumer<Transaction> counter = tx -> visited[0]++;
+                for (int r = 0; r < reps; r++) library.forEachRecentTransaction(10, counter);
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) library.forEachRecentTransaction(10, counter);
+                double recentNs = (System.nanoTime() - t) / (double) reps;
+                t = System.nanoTime();
+                for (int r = 0; r < reps; r++) sink += popAndRestore(stack, 10).size();
+                double stackNs = (System.nanoTime() - t) / (double) reps;
+                sink += visited[0];
+
+                Random random = new Random(13);
+                int queries = 2_000;
+                t = System.nanoTime();
+                for (int q = 0; q < queries; q++) sink += library.getStudentHistory(studentId(random.nextInt(students)), 20).size();
+                double studentUs = (System.nanoTime() - t) / 1e3 / queries;
+                t = System.nanoTime();
+                for (int q = 0; q < queries; q++) sink += library.getRecentBorrows("ISBN" + random.nextInt(books), 5).size();
+                double borrowsUs = (System.nanoTime() - t) / 1e3 / queries;
+
+                // Oldest student (fully spilled) and newest book must match a scan of the full list
+                String student = studentId(0);
+                List<Transaction> expected = new ArrayList<>();
+                for (int i = n - 1; i >= 0 && expected.size() < 20; i--) {
+                    if (all.get(i).getStudentId().equals(student)) expected.add(all.get(i));
+                }
+                check(sameTransactions(library.getStudentHistory(student, 20), expected), "student history differs at n=" + n);
+                String isbn = all.get(n - 2).getIsbn();
+                expected.clear();
+                for (int i = n - 1; i >= 0 && expected.size() < 5; i--) {
+                    if (all.get(i).getIsbn().equals(isbn) && all.get(i).getType().equals("BORROW")) expected.add(all.get(i));
+                }
+                check(sameTransactions(library.getRecentBorrows(isbn, 5), expected), "recent borrows differ at n=" + n);
+                long[] replayed = new long[1];
+                library.forEachTransaction(tx -> replayed[0]++);
+                check(replayed[0] == n && library.getTransactionCount() == n, "history lost transactions at n=" + n);
+
+                System.out.printf("%12d %14.1f %16.1f %16.1f %16.2f %16.2f%n", n, appendNs, recentNs, stackNs, studentUs, borrowsUs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                deleteRecursively(dir);
+            }
+        }
+        checkHistoryUnderAppends();
+        checkHistorySpillDefaults();
+    }
+
+    // Spilling to disk is the default: a plain LibrarySystem spills under java.io.tmpdir, the facade
+    // spills where it is told (also after loadSnapshot), and only withInMemoryHistory keeps sealed
+    // segments on the heap
+    private static void checkHistorySpillDefaults() {
+        int spilling = LibrarySystem.DEFAULT_RECENT_CAPACITY + TransactionLog.SEGMENT_ENTRIES;
+        LibrarySystem library = new LibrarySystem();
+        LibrarySystem inMemory = LibrarySystem.withInMemoryHistory(LibrarySystem.DEFAULT_RECENT_CAPACITY);
+        for (int i = 0; i < spilling; i++) {
+            Transaction transaction = new Transaction("ISBN" + i % 100, studentId(i % 1000), new Date(TERM_START_MS + i * 1000L), "BORROW");
+            library.restoreTransaction(transaction);
+            inMemory.restoreTransaction(transaction);
+        }
+        Path spilled = library.getHistoryDirectory();
+        check(spilled != null && spilled.startsWith(Paths.get(System.getProperty("java.io.tmpdir")))
+                && Files.exists(spilled.resolve("transactions-000000.seg")), "default library did not spill to a temporary directory: " + spilled);
+        check(inMemory.getHistoryDirectory() == null, "in-memory history spilled to " + inMemory.getHistoryDirectory());
+
+        Path history = null;
+        Path snapshot = null;
+        try {
+            history = Files.createTempDirectory("sms-history");
+            snapshot = Files.createTempDirectory("sms-snapshot");
+            SchoolManagementSystem sms = new SchoolManagementSystem(true, history);
+            sms.addBook(new Book("ISBN-SPILL", "Spilled History", "A. Author", 1));
+            for (int i = 0; i < spilling / 2; i++) {
+                check(sms.borrowBook("ISBN-SPILL", studentId(i % 1000)) && sms.returnBook("ISBN-SPILL", studentId(i % 1000)), "loan " + i + " failed");
+            }
+            check(historySubdirectories(history) == 1, "facade did not spill history under " + history);
+            sms.saveSnapshot(snapshot);
+            SchoolManagementSystem restored = SchoolManagementSystem.loadSnapshot(snapshot, history);
+            check(historySubdirectories(history) == 2, "restored system did not spill its history under " + history);
+            check(sameTransactions(restored.getStudentLibraryHistory(studentId(0), 50), sms.getStudentLibraryHistory(studentId(0), 50)),
+                    "restored spilled history differs");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteRecursively(history);
+            deleteRecursively(snapshot);
+        }
+        System.out.println("spill defaults: default library spilled under java.io.tmpdir, the facade and its restore under the given directory, in-memory history only on request");
+    }
+
+    private static long historySubdirectories(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            return paths.filter(Files::isDirectory).count();
+        }
+    }
+
+    // Lock-free recent reads racing one appender must only ever see a contiguous newest-first run,
+    // the in-memory indexes must stay bounded by the unsealed entries, and keyed history must still
+    // match a scan once most entries are sealed
+    private static void checkHistoryUnderAppends() {
+        int n = 2_000_000;
+        int capacity = 1_024;
+        int students = 500;
+        int books = 300;
+        TransactionLog log = new TransactionLog(capacity, null); // in-memory segments: this check is about locking, not the disk
+        Transaction[] all = new Transaction[n];
+        Random random = new Random(17);
+        for (int i = 0; i < n; i++) {
+            all[i] = new Transaction("ISBN" + random.nextInt(books), studentId(random.nextInt(students)),
+                    new Date(TERM_START_MS + i * 1000L), i % 3 == 0 ? "RETURN" : "BORROW");
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] walks = new long[2];
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < walks.length; r++) {
+            int reader = r;
+            readers.add(new Thread(() -> {
+                long[] previous = new long[1];
+                java.util.function.Consumer<Transaction> contiguous = tx -> {
+                    long date = tx.getDate().getTime();
+                    check(previous[0] == Long.MIN_VALUE || date == previous[0] - 1000, "recent walk saw " + date + " after " + previous[0]);
+                    previous[0] = date;
+                };
+                while (!done.get()) {
+                    previous[0] = Long.MIN_VALUE;
+                    log.forEachRecent(200, contiguous);
+                    walks[reader]++;
+                }
+            }));
+        }
+        for (Thread reader : readers) {
+            reader.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+            reader.start();
+        }
+        for (Transaction transaction : all) log.append(transaction);
+        done.set(true);
+        readers.forEach(PerformanceBenchmark::joinQuietly);
+        if (failure.get() != null) {
+            throw new IllegalStateException("recent reads failed under appends", failure.get());
+        }
+        check(log.size() == n, "history lost appends");
+        check(log.indexedSequences() <= 2L * (capacity + TransactionLog.SEGMENT_ENTRIES),
+                "in-memory history indexes hold " + log.indexedSequences() + " sequence numbers");
+
+        for (int q = 0; q < 50; q++) {
+            String student = studentId(random.nextInt(students));
+            String isbn = "ISBN" + random.nextInt(books);
+            int limit = q % 2 == 0 ? 20 : n;
+            List<Transaction> expectedStudent = new ArrayList<>();
+            List<Transaction> expectedBook = new ArrayList<>();
+            for (int i = n - 1; i >= 0; i--) {
+                if (expectedStudent.size() < limit && all[i].getStudentId().equals(student)) expectedStudent.add(all[i]);
+                if (expectedBook.size() < limit && all[i].getIsbn().equals(isbn) && all[i].getType().equals("BORROW")) expectedBook.add(all[i]);
+            }
+            check(sameTransactions(log.studentHistory(student, limit), expectedStudent), "sealed student history differs for " + student);
+            check(sameTransactions(log.bookHistory(isbn, "BORROW", limit), expectedBook), "sealed book history differs for " + isbn);
+        }
+        System.out.printf("under appends: %d lock-free recent walks stayed contiguous, %d indexed sequence numbers in memory for %d entries%n",
+                walks[0] + walks[1], log.indexedSequences(), n);
+    }
+
+    // The former LibrarySystem.getRecentTransactions, kept as the baseline
+    private static List<Transaction> popAndRestore(Stack<Transaction> history, int count) {
+        List<Transaction> recent = new ArrayList<>();
+        Stack<Transaction> temp = new Stack<>();
+        for (int i = 0; i < count && !history.isEmpty(); i++) {
+            Transaction transaction = history.pop();
+            recent.add(transaction);
+            temp.push(transaction);
+        }
+        while (!temp.isEmpty()) {
+            history.push(temp.pop());
+        }
+        return recent;
+    }
+
+    private static boolean sameTransactions(List<Transaction> actual, List<Transaction> expected) {
+        if (actual.size() != expected.size()) return false;
+        for (int i = 0; i < actual.size(); i++) {
+            Transaction a = actual.get(i);
+            Transaction e = expected.get(i);
+            if (!a.getIsbn().equals(e.getIsbn()) || !a.getStudentId().equals(e.getStudentId())
+                    || a.getDate().getTime() != e.getDate().getTime() || !a.getType().equals(e.getType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // ---------------------------------------------------------------- Metrics
+
+    /**
+     * Cost of the timers wrapped around every SchoolManagementSystem operation: the same lookups
+     * with metrics enabled and disabled, plus a check that percentiles and gauges come out right.
+     */
+    private static void benchmarkMetrics() {
+        int n = Math.min(100_000, MAX_SIZE);
+        SchoolManagementSystem system = new SchoolManagementSystem();
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++) {
+            ids[i] = studentId(i);
+            system.registerStudent(new Student(ids[i], "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+        }
+        int[] order = shuffledIndexes(n, 7);
+        SystemMetrics metrics = system.getMetrics();
+
+        System.out.printf("%-40s %10s %14s %12s%n", "benchmark", "size", "ns/op", "error");
+        metrics.setEnabled(false);
+        measure("metrics.findStudent.disabled", n, n, () -> {
+            long found = 0;
+            for (int i : order) if (system.findStudent(ids[i]) != null) found++;
+            return found;
+        });
+        double disabled = RESULTS.get(RESULTS.size() - 1).score;
+        metrics.setEnabled(true);
+        measure("metrics.findStudent.enabled", n, n, () -> {
+            long found = 0;
+            for (int i : order) if (system.findStudent(ids[i]) != null) found++;
+            return found;
+        });
+        double enabled = RESULTS.get(RESULTS.size() - 1).score;
+        measure("metrics.clock.nanoTime", 1, 1000, () -> {
+            long total = 0;
+            for (int i = 0; i < 1000; i++) total += System.nanoTime();
+            return total;
+        });
+        double clock = RESULTS.get(RESULTS.size() - 1).score;
+        SystemMetrics.Timer bare = new SystemMetrics().timer("empty");
+        measure("metrics.timer.startStop", 1, 1000, () -> {
+            long total = 0;
+            for (int i = 0; i < 1000; i++) {
+                long start = bare.start();
+                bare.stop(start);
+                total += start;
+            }
+            return total;
+        });
+        double timer = RESULTS.get(RESULTS.size() - 1).score;
+        System.out.printf("Instrumentation overhead on findStudent: %.1f ns/op (start/stop pair %.1f ns, of which %.1f ns "
+                + "are the two clock reads)%n", enabled - disabled, timer, 2 * clock);
+
+        // Histogram percentiles must land within one sub-bucket (~3%) of the exact value
+        SystemMetrics exact = new SystemMetrics();
+        SystemMetrics.LatencyHistogram histogram = new SystemMetrics.LatencyHistogram();
+        long[] samples = new long[100_000];
+        Random random = new Random(3);
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (long) Math.exp(random.nextDouble() * 16);
+            histogram.record(samples[i]);
+        }
+        Arrays.sort(samples);
+        SystemMetrics.OperationStats stats = new SystemMetrics.OperationStats("check", 0, 0, histogram);
+        for (double[] q : new double[][]{{0.50, stats.getP50Nanos()}, {0.99, stats.getP99Nanos()}, {0.999, stats.getP999Nanos()}}) {
+            long expected = samples[(int) Math.ceil(samples.length * q[0]) - 1];
+            check(q[1] >= expected && q[1] <= expected * 1.04 + 1, "histogram p" + q[0] + " = " + q[1] + ", exact " + expected);
+        }
+        check(exact.snapshot().getOperations().isEmpty(), "fresh metrics should have no operations");
+
+        SystemMetrics.MetricsSnapshot snapshot = metrics.snapshot();
+        check(snapshot.getOperations().get("findStudent").getCalls() >= n, "findStudent calls were not counted");
+        check(snapshot.getGauges().get("registry.size") == n, "registry.size gauge is wrong");
+        System.out.print(snapshot);
+        checkGaugesUnderWrites();
+    }
+
+    // Snapshots taken while a concurrent system registers students (and so resizes its registry
+    // incrementally) must evaluate every gauge without failing or reporting impossible values
+    private static void checkGaugesUnderWrites() {
+        int n = 300_000;
+        SchoolManagementSystem sms = new SchoolManagementSystem(true);
+        SystemMetrics metrics = sms.getMetrics();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        long[] snapshots = new long[1];
+        Thread poller = new Thread(() -> {
+            while (!done.get()) {
+                Map<String, Double> gauges = metrics.snapshot().getGauges();
+                double probe = gauges.get("registry.longestProbe");
+                check(probe >= 0 && probe <= n, "registry.longestProbe reported " + probe);
+                snapshots[0]++;
+            }
+        });
+        poller.setUncaughtExceptionHandler((t, e) -> failure.compareAndSet(null, e));
+        poller.start();
+        for (int i = 0; i < n; i++) {
+            sms.registerStudent(new Student(studentId(i), "Student " + i, "s" + i + "@meru.edu", 9 + i % 4));
+        }
+        done.set(true);
+        joinQuietly(poller);
+        if (failure.get() != null) {
+            throw new IllegalStateException("gauges failed under registry writes", failure.get());
+        }
+        check(metrics.snapshot().getGauges().get("registry.size") == n, "registry.size gauge is wrong after concurrent writes");
+        System.out.printf("gauges under writes: %d snapshots while %d students were registered%n", snapshots[0], n);
+    }
+
+    // ---------------------------------------------------------------- Helpers
+
+    private static void deleteRecursively(Path dir) {
+        if (dir == null) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            System.out.println("Could not clean up " + dir + ": " + e.getMessage());
+        }
+    }
+
+    private static int[] sizes(int... candidates) {
+        if (SIZES != null) {
+            return Arrays.stream(SIZES.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+        }
+        return Arrays.stream(candidates).filter(n -> n <= MAX_SIZE).toArray();
+    }
+
+    private static String studentId(int i) {
+        return String.format("S%07d", i);
+    }
+
+    private static int[] shuffledIndexes(int n, long seed) {
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) order[i] = i;
+        Random random = new Random(seed);
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+        return order;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * p))];
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new IllegalStateException(message);
+        }
+    }
+}
@@ -3,61 +3,292 @@ import java.util.*;
 /**
  * Performance Analytics Module
  * Data Structures Used:
- * - HashMap: For storing student grades per subject (efficient lookup O(1))
- * - PriorityQueue (Max Heap): For identifying top performers based on average grades (O(log n) insertions, O(1) peek)
- * Justification: HashMap allows fast access to student-subject grades. PriorityQueue efficiently maintains top performers without sorting entire list.
- * Time Complexity: Add grade O(1), Get top performers O(k log n) for k performers.
- * Space Complexity: O(n*m) where n=students, m=subjects.
+ * - Columnar grade store: each subject is interned to an int and owns one double[] column indexed
+ *   by a dense student number; NaN marks a missing grade. Per-student sums and counts live in
+ *   parallel primitive arrays, so a grade costs 8 bytes instead of a boxed Double, a HashMap node
+ *   and a per-student HashMap.
+ * - Open-addressing index (String[] keys, int[] values): student ID -> dense student number
+ * - TreeSet (Red-Black Tree): Ranking of students ordered by average grade, highest first
+ * Justification: Keeping a running sum and count per student means a new grade only changes that
+ * student's average, so only that student's ranking entry is re-positioned instead of rebuilding
+ * the ranking for every student. Columns keep one subject's grades contiguous for whole-cohort scans.
+ * Time Complexity: Add grade O(log n), Get top performers O(log n + k) for k performers.
+ * Space Complexity: O(n*m) primitive doubles where n=students, m=subjects.
  */
 public class PerformanceGraph {
-    private Map<String, Map<String, Double>> studentGrades; // studentId -> subject -> grade
-    private PriorityQueue<StudentPerformance> topPerformers;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final StudentIndex index = new StudentIndex();
+    private final Map<String, Integer> subjectIds = new HashMap<>();
+    private String[] subjectNames = new String[16];
+    private int subjectCount;
+    private double[][] columns = new double[16][]; // subject -> grade per student, NaN if none
+
+    private String[] studentIds = new String[INITIAL_CAPACITY];
+    private double[] sums = new double[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];
+    private StudentPerformance[] performance = new StudentPerformance[INITIAL_CAPACITY]; // current ranking entries
+    private int studentCount;
+
+    private TreeSet<StudentPerformance> ranking;
 
     public PerformanceGraph() {
-        this.studentGrades = new HashMap<>();
-        this.topPerformers = new PriorityQueue<>();
+        this.ranking = new TreeSet<>();
     }
 
     public void addStudent(String studentId) {
-        studentGrades.put(studentId, new HashMap<>());
+        int student = index.get(studentId);
+        if (student < 0) {
+            student = newStudent(studentId);
+        } else {
+            // Re-registering resets the student's grades
+            ranking.remove(performance[student]);
+            for (int s = 0; s < subjectCount; s++) {
+                columns[s][student] = Double.NaN;
+            }
+            sums[student] = 0.0;
+            counts[student] = 0;
+        }
+        performance[student] = new StudentPerformance(studentId, 0.0);
+        ranking.add(performance[student]);
     }
 
     public void addGrade(String studentId, String subject, double grade) {
-        if (!studentGrades.containsKey(studentId)) {
-            addStudent(studentId);
+        checkGrade(grade);
+        int student = studentOrAdd(studentId);
+        setGrade(student, subjectId(subject), grade);
+        updateRanking(student);
+    }
+
+    /**
+     * Applies a batch of grades, re-ranking each touched student once at the end of the batch
+     * rather than once per grade.
+     */
+    public void addGrades(String[] studentIds, String[] subjects, double[] grades, int count) {
+        for (int i = 0; i < count; i++) {
+            checkGrade(grades[i]);
         }
-        studentGrades.get(studentId).put(subject, grade);
-        updateTopPerformers();
+        int[] touched = new int[count];
+        for (int i = 0; i < count; i++) {
+            touched[i] = studentOrAdd(studentIds[i]);
+            setGrade(touched[i], subjectId(subjects[i]), grades[i]);
+        }
+        Arrays.sort(touched);
+        for (int i = 0; i < count; i++) {
+            if (i == 0 || touched[i] != touched[i - 1]) {
+                updateRanking(touched[i]);
+            }
+        }
+    }
+
+    /**
+     * Receives one student's grades; the arrays are reused between calls and only the first
+     * count entries are valid.
+     */
+    interface GradesVisitor {
+        void visit(String studentId, String[] subjects, double[] grades, int count);
     }
 
-    private void updateTopPerformers() {
-        topPerformers.clear();
-        for (String studentId : studentGrades.keySet()) {
-            double avg = calculateAverage(studentId);
-            topPerformers.add(new StudentPerformance(studentId, avg));
+    /**
+     * Visits every student, in registration order, with the subjects they have a grade in.
+     */
+    void forEachStudent(GradesVisitor visitor) {
+        String[] subjects = new String[subjectCount];
+        double[] grades = new double[subjectCount];
+        for (int student = 0; student < studentCount; student++) {
+            int count = 0;
+            for (int s = 0; s < subjectCount; s++) {
+                double grade = columns[s][student];
+                if (!Double.isNaN(grade)) {
+                    subjects[count] = subjectNames[s];
+                    grades[count++] = grade;
+                }
+            }
+            visitor.visit(studentIds[student], subjects, grades, count);
         }
     }
 
-    private double calculateAverage(String studentId) {
-        Map<String, Double> grades = studentGrades.get(studentId);
-        if (grades.isEmpty()) return 0.0;
-        double sum = 0.0;
-        for (double grade : grades.values()) {
-            sum += grade;
+    /**
+     * The live grade column of a subject, indexed by dense student number up to getStudentCount()
+     * (NaN where a student has no grade), or null for an unknown subject. Read-only: used by
+     * GradeAnalytics to scan grades without copying them.
+     */
+    double[] column(String subject) {
+        Integer id = subjectIds.get(subject);
+        return id == null ? null : columns[id];
+    }
+
+    /**
+     * A copy of the grade columns, student IDs and subjects as of now, for reports that must not
+     * see later writes (see SchoolManagementSystem.getGradeAnalytics). O(n*m). The copy has no
+     * ranking or ID index: it is only for column(), getSubjects(), studentIdAt() and
+     * getStudentCount(), and must not be written to.
+     */
+    PerformanceGraph reportCopy() {
+        PerformanceGraph copy = new PerformanceGraph();
+        copy.subjectIds.putAll(subjectIds);
+        copy.subjectNames = Arrays.copyOf(subjectNames, subjectNames.length);
+        copy.subjectCount = subjectCount;
+        copy.columns = new double[columns.length][];
+        for (int s = 0; s < subjectCount; s++) {
+            copy.columns[s] = Arrays.copyOf(columns[s], studentCount);
         }
-        return sum / grades.size();
+        copy.studentIds = Arrays.copyOf(studentIds, studentCount);
+        copy.studentCount = studentCount;
+        return copy;
+    }
+
+    List<String> getSubjects() {
+        return Arrays.asList(Arrays.copyOf(subjectNames, subjectCount));
+    }
+
+    String studentIdAt(int student) {
+        return studentIds[student];
+    }
+
+    private void updateRanking(int student) {
+        ranking.remove(performance[student]);
+        performance[student] = new StudentPerformance(studentIds[student], average(student));
+        ranking.add(performance[student]);
     }
 
     public List<StudentPerformance> getTopPerformers(int count) {
-        List<StudentPerformance> top = new ArrayList<>();
-        PriorityQueue<StudentPerformance> temp = new PriorityQueue<>(topPerformers);
-        for (int i = 0; i < count && !temp.isEmpty(); i++) {
-            top.add(temp.poll());
+        List<StudentPerformance> top = new ArrayList<>(Math.max(0, Math.min(count, ranking.size())));
+        Iterator<StudentPerformance> iterator = ranking.iterator();
+        while (top.size() < count && iterator.hasNext()) {
+            top.add(iterator.next());
         }
         return top;
     }
 
+    public int getStudentCount() {
+        return studentCount;
+    }
+
+    public int getSubjectCount() {
+        return subjectCount;
+    }
+
     public double getStudentAverage(String studentId) {
-        return calculateAverage(studentId);
+        int student = index.get(studentId);
+        return student < 0 ? 0.0 : average(student);
+    }
+
+    private double average(int student) {
+        return counts[student] == 0 ? 0.0 : sums[student] / counts[student];
+    }
+
+    private void setGrade(int student, int subject, double grade) {
+        double previous = columns[subject][student];
+        columns[subject][student] = grade;
+        if (Double.isNaN(previous)) {
+            sums[student] += grade;
+            counts[student]++;
+        } else {
+            sums[student] += grade - previous;
+        }
+    }
+
+    private static void checkGrade(double grade) {
+        if (Double.isNaN(grade)) {
+            throw new IllegalArgumentException("Grade must be a number");
+        }
+    }
+
+    private int studentOrAdd(String studentId) {
+        int student = index.get(studentId);
+        if (student < 0) {
+            addStudent(studentId);
+            student = studentCount - 1;
+        }
+        return student;
+    }
+
+    private int newStudent(String studentId) {
+        if (studentCount == studentIds.length) {
+            int capacity = studentIds.length * 2;
+            studentIds = Arrays.copyOf(studentIds, capacity);
+            sums = Arrays.copyOf(sums, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            performance = Arrays.copyOf(performance, capacity);
+            for (int s = 0; s < subjectCount; s++) {
+                columns[s] = growColumn(columns[s], capacity);
+            }
+        }
+        int student = studentCount++;
+        studentIds[student] = studentId;
+        index.put(studentId, student);
+        return student;
+    }
+
+    private int subjectId(String subject) {
+        Integer id = subjectIds.get(subject);
+        if (id != null) {
+            return id;
+        }
+        if (subjectCount == subjectNames.length) {
+            subjectNames = Arrays.copyOf(subjectNames, subjectCount * 2);
+            columns = Arrays.copyOf(columns, subjectCount * 2);
+        }
+        subjectNames[subjectCount] = subject;
+        columns[subjectCount] = growColumn(new double[0], studentIds.length);
+        subjectIds.put(subject, subjectCount);
+        return subjectCount++;
+    }
+
+    private static double[] growColumn(double[] column, int capacity) {
+        double[] grown = Arrays.copyOf(column, capacity);
+        Arrays.fill(grown, column.length, capacity, Double.NaN);
+        return grown;
+    }
+
+    /**
+     * Student ID -> dense student number, linear probing over parallel arrays. Students are never
+     * removed, so there is no deletion.
+     */
+    private static final class StudentIndex {
+        private String[] keys = new String[2 * INITIAL_CAPACITY];
+        private int[] values = new int[2 * INITIAL_CAPACITY];
+        private int size;
+
+        int get(String key) {
+            int mask = keys.length - 1;
+            for (int slot = hash(key) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot].equals(key)) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        // Caller guarantees the key is absent
+        void put(String key, int value) {
+            if (size * 2 >= keys.length) {
+                String[] oldKeys = keys;
+                int[] oldValues = values;
+                keys = new String[oldKeys.length * 2];
+                values = new int[oldKeys.length * 2];
+                for (int i = 0; i < oldKeys.length; i++) {
+                    if (oldKeys[i] != null) insert(oldKeys[i], oldValues[i]);
+                }
+            }
+            insert(key, value);
+            size++;
+        }
+
+        private void insert(String key, int value) {
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        private static int hash(String key) {
+            int h = key.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
     }
 }
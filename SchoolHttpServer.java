@@ -0,0 +1,462 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request Front End Module
+ * A local HTTP endpoint over a concurrent SchoolManagementSystem, built on the JDK's
+ * com.sun.net.httpserver.
+ * - Every request runs on its own virtual thread when the JDK has them (21+; looked up by
+ *   reflection so the module still builds and runs on older JDKs, which get a fixed pool of
+ *   platform threads instead). A handler can therefore block cheaply while its write waits.
+ * - Reads are answered on the request thread; the facade's concurrent mode keeps them from
+ *   waiting on writers.
+ * - Writes are queued for one batching thread, which takes everything that arrives within the
+ *   batch window (up to MAX_BATCH requests) and applies it with one call per module:
+ *   registerStudents, addGrades and addFeeRecords take their module lock once per batch, fees are
+ *   journaled as one group, and each student touched by grades is re-ranked once. Within a batch,
+ *   modules are applied in the order students, grades, fees, enrollments, loans; requests to the
+ *   same module keep their arrival order.
+ *
+ * Routes (parameters in the query string; responses are small JSON objects):
+ *   POST /students?id=&name=&email=&gradeLevel=      GET /students?id=
+ *   POST /enrollments?course=&student=                GET /courses?id=
+ *   POST /grades?student=&subject=&grade=             GET /top?count=
+ *   POST /fees?student=&amount=&date=&type=           GET /balance?student=
+ *   POST /loans?isbn=&student=                        GET /fees/total?start=&end=
+ * Dates are epoch milliseconds. Missing or malformed parameters get 400, unknown students and
+ * routes 404, a write whose batch failed (e.g. the journal could not be written) 500, and a write
+ * not applied because the server closed, or not within WRITE_TIMEOUT_SECONDS, 503.
+ */
+public class SchoolHttpServer implements AutoCloseable {
+    static final int MAX_BATCH = 512;
+    static final long DEFAULT_BATCH_WINDOW_MICROS = 200;
+    private static final int FALLBACK_THREADS = 256;
+    private static final int BACKLOG = 1024;
+    private static final long CLOSE_TIMEOUT_SECONDS = 5;  // for in-flight requests to finish
+    private static final long WRITE_TIMEOUT_SECONDS = 30; // a handler never waits longer for its batch
+
+    private static final int STUDENT = 0;
+    private static final int GRADE = 1;
+    private static final int FEE = 2;
+    private static final int ENROLLMENT = 3;
+    private static final int LOAN = 4;
+
+    static {
+        // The server writes headers and body separately; with Nagle's algorithm on, a keep-alive
+        // client's delayed ACK would stall every response by tens of milliseconds
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final SchoolManagementSystem sms;
+    private final HttpServer server;
+    private final ExecutorService requestExecutor;
+    private final boolean virtualThreads;
+    private final BlockingQueue<PendingWrite> writes = new LinkedBlockingQueue<>();
+    private final long batchWindowNanos;
+    private final Thread batcher;
+    private volatile boolean running;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedWrites = new LongAdder();
+
+    public SchoolHttpServer(SchoolManagementSystem sms, int port) throws IOException {
+        this(sms, port, DEFAULT_BATCH_WINDOW_MICROS);
+    }
+
+    /**
+     * @param port             local port, or 0 for any free port (see getPort)
+     * @param batchWindowMicros how long the batching thread keeps collecting writes after the
+     *                          first one of a batch arrives; 0 batches only what is already queued
+     * @throws IllegalArgumentException if the system was not created in concurrent mode
+     */
+    public SchoolHttpServer(SchoolManagementSystem sms, int port, long batchWindowMicros) throws IOException {
+        if (!sms.isConcurrent()) {
+            throw new IllegalArgumentException("The front end needs a SchoolManagementSystem created with concurrent = true");
+        }
+        this.sms = sms;
+        this.batchWindowNanos = TimeUnit.MICROSECONDS.toNanos(batchWindowMicros);
+        ExecutorService virtual = newVirtualThreadExecutor();
+        this.virtualThreads = virtual != null;
+        this.requestExecutor = virtual != null ? virtual : Executors.newFixedThreadPool(FALLBACK_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "http-request");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), BACKLOG);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(requestExecutor);
+        this.batcher = new Thread(this::runBatches, "http-write-batcher");
+        this.batcher.setDaemon(true);
+    }
+
+    // Executors.newVirtualThreadPerTaskExecutor() on JDK 21+, null before
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null; // absent, or a preview API not enabled (JDK 19/20)
+        }
+    }
+
+    public void start() {
+        running = true;
+        batcher.start();
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public boolean usesVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public long getBatchedWriteCount() {
+        return batchedWrites.sum();
+    }
+
+    /**
+     * Stops accepting requests, waits up to CLOSE_TIMEOUT_SECONDS for requests in flight (their
+     * writes are still applied), applies the writes already queued and releases the threads. A
+     * write queued by a handler that outlived the wait fails with 503 instead of waiting forever.
+     */
+    @Override
+    public void close() {
+        server.stop(0); // does not wait for handlers already running
+        requestExecutor.shutdown();
+        try {
+            requestExecutor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        running = false;
+        try {
+            batcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        PendingWrite late;
+        while ((late = writes.poll()) != null) {
+            late.result.completeExceptionally(new RejectedExecutionException("Server closed before the write was applied"));
+        }
+    }
+
+    // ---------------------------------------------------------------- Requests
+
+    private void handle(HttpExchange exchange) throws IOException {
+        int status;
+        String body;
+        try {
+            String route = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+            Map<String, String> params = parameters(exchange.getRequestURI().getRawQuery());
+            PendingWrite write = parseWrite(route, params);
+            if (write != null) {
+                writes.add(write);
+                body = write.result.get(WRITE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } else {
+                body = read(route, params);
+            }
+            status = body == null ? 404 : 200;
+            if (body == null) {
+                body = "{\"error\":\"not found\"}";
+            }
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = "{\"error\":" + quote(e.getMessage()) + "}";
+        } catch (ExecutionException e) {
+            status = e.getCause() instanceof RejectedExecutionException ? 503 : 500;
+            body = "{\"error\":" + quote(String.valueOf(e.getCause())) + "}";
+        } catch (TimeoutException e) {
+            status = 503;
+            body = "{\"error\":\"write not applied within " + WRITE_TIMEOUT_SECONDS + " s\"}";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            status = 503;
+            body = "{\"error\":\"interrupted\"}";
+        } catch (RuntimeException e) {
+            status = 500;
+            body = "{\"error\":" + quote(e.toString()) + "}";
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    // The write a POST asks for, or null for a read; all parsing happens here, on the request
+    // thread, so a batch only ever holds well-formed writes
+    private static PendingWrite parseWrite(String route, Map<String, String> params) {
+        switch (route) {
+            case "POST /students":
+                return new PendingWrite(STUDENT, new Student(required(params, "id"), required(params, "name"),
+                        required(params, "email"), Integer.parseInt(required(params, "gradeLevel"))));
+            case "POST /grades": {
+                double grade = Double.parseDouble(required(params, "grade"));
+                if (Double.isNaN(grade)) {
+                    throw new IllegalArgumentException("Grade must be a number");
+                }
+                PendingWrite write = new PendingWrite(GRADE, null);
+                write.studentId = required(params, "student");
+                write.key = required(params, "subject");
+                write.value = grade;
+                return write;
+            }
+            case "POST /fees":
+                return new PendingWrite(FEE, new FeeRecord(required(params, "student"), Double.parseDouble(required(params, "amount")),
+                        new Date(Long.parseLong(required(params, "date"))), required(params, "type")));
+            case "POST /enrollments": {
+                PendingWrite write = new PendingWrite(ENROLLMENT, null);
+                write.studentId = required(params, "student");
+                write.key = required(params, "course");
+                return write;
+            }
+            case "POST /loans": {
+                PendingWrite write = new PendingWrite(LOAN, null);
+                write.studentId = required(params, "student");
+                write.key = required(params, "isbn");
+                return write;
+            }
+            default:
+                if (route.startsWith("POST ")) {
+                    throw new IllegalArgumentException("Unknown write " + route);
+                }
+                return null;
+        }
+    }
+
+    // JSON body for a read, or null when the route or the requested item does not exist
+    private String read(String route, Map<String, String> params) {
+        switch (route) {
+            case "GET /students": {
+                Student student = sms.findStudent(required(params, "id"));
+                return student == null ? null : "{\"id\":" + quote(student.getStudentId()) + ",\"name\":" + quote(student.getName())
+                        + ",\"email\":" + quote(student.getEmail()) + ",\"gradeLevel\":" + student.getGradeLevel() + "}";
+            }
+            case "GET /courses": {
+                String courseId = required(params, "id");
+                return "{\"course\":" + quote(courseId) + ",\"enrolled\":" + quoteAll(sms.getEnrolledStudents(courseId))
+                        + ",\"waitlisted\":" + sms.getWaitlist(courseId).size() + "}";
+            }
+            case "GET /top": {
+                StringBuilder json = new StringBuilder("[");
+                for (StudentPerformance performance : sms.getTopPerformers(Integer.parseInt(params.getOrDefault("count", "10")))) {
+                    if (json.length() > 1) json.append(',');
+                    json.append("{\"id\":").append(quote(performance.studentId)).append(",\"average\":").append(performance.averageGrade).append('}');
+                }
+                return json.append(']').toString();
+            }
+            case "GET /balance": {
+                String studentId = required(params, "student");
+                return "{\"student\":" + quote(studentId) + ",\"paid\":" + sms.getTotalPaid(studentId)
+                        + ",\"outstanding\":" + sms.getOutstandingBalance(studentId) + "}";
+            }
+            case "GET /fees/total": {
+                FeeTracker.FeeSummary summary = sms.summarizeFeesInRange(new Date(Long.parseLong(required(params, "start"))),
+                        new Date(Long.parseLong(required(params, "end"))));
+                return "{\"count\":" + summary.getCount() + ",\"total\":" + summary.getSum() + "}";
+            }
+            default:
+                return null;
+        }
+    }
+
+    // ---------------------------------------------------------------- Write batching
+
+    /**
+     * One queued write. Only the fields its module needs are set.
+     */
+    private static final class PendingWrite {
+        final int module;
+        final Object item; // the Student or FeeRecord to add
+        String studentId;
+        String key; // subject, course ID or ISBN
+        double value;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        PendingWrite(int module, Object item) {
+            this.module = module;
+            this.item = item;
+        }
+    }
+
+    private void runBatches() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_BATCH);
+        while (running || !writes.isEmpty()) {
+            try {
+                PendingWrite first = writes.poll(50, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + batchWindowNanos;
+                while (batch.size() < MAX_BATCH) {
+                    writes.drainTo(batch, MAX_BATCH - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() == MAX_BATCH || remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = writes.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                // Not expected (close lets the loop drain); apply what was collected and go on
+            }
+            if (!batch.isEmpty()) {
+                applyBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void applyBatch(List<PendingWrite> batch) {
+        batches.increment();
+        batchedWrites.add(batch.size());
+        List<List<PendingWrite>> byModule = new ArrayList<>();
+        for (int module = 0; module <= LOAN; module++) {
+            byModule.add(new ArrayList<>());
+        }
+        for (PendingWrite write : batch) {
+            byModule.get(write.module).add(write);
+        }
+
+        List<PendingWrite> students = byModule.get(STUDENT);
+        if (!students.isEmpty()) {
+            complete(students, () -> {
+                List<Student> added = new ArrayList<>(students.size());
+                for (PendingWrite write : students) added.add((Student) write.item);
+                boolean[] registered = sms.registerStudents(added);
+                for (int i = 0; i < registered.length; i++) {
+                    students.get(i).result.complete("{\"registered\":" + registered[i] + "}");
+                }
+            });
+        }
+        List<PendingWrite> grades = byModule.get(GRADE);
+        if (!grades.isEmpty()) {
+            complete(grades, () -> {
+                int count = grades.size();
+                String[] studentIds = new String[count];
+                String[] subjects = new String[count];
+                double[] values = new double[count];
+                for (int i = 0; i < count; i++) {
+                    studentIds[i] = grades.get(i).studentId;
+                    subjects[i] = grades.get(i).key;
+                    values[i] = grades.get(i).value;
+                }
+                sms.addGrades(studentIds, subjects, values, count);
+                grades.forEach(write -> write.result.complete("{\"recorded\":true}"));
+            });
+        }
+        List<PendingWrite> fees = byModule.get(FEE);
+        if (!fees.isEmpty()) {
+            complete(fees, () -> {
+                List<FeeRecord> records = new ArrayList<>(fees.size());
+                for (PendingWrite write : fees) records.add((FeeRecord) write.item);
+                sms.addFeeRecords(records);
+                fees.forEach(write -> write.result.complete("{\"recorded\":true}"));
+            });
+        }
+        // Enrollment queues and loans already lock per course and per book, so these go one by one
+        for (PendingWrite write : byModule.get(ENROLLMENT)) {
+            complete(Collections.singletonList(write),
+                    () -> write.result.complete("{\"queued\":" + sms.enrollInCourse(write.key, write.studentId) + "}"));
+        }
+        for (PendingWrite write : byModule.get(LOAN)) {
+            complete(Collections.singletonList(write),
+                    () -> write.result.complete("{\"borrowed\":" + sms.borrowBook(write.key, write.studentId) + "}"));
+        }
+    }
+
+    // Runs one module's part of a batch; if it fails, every write in that part fails with it
+    private static void complete(List<PendingWrite> writes, Runnable apply) {
+        try {
+            apply.run();
+        } catch (RuntimeException e) {
+            for (PendingWrite write : writes) {
+                write.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- Helpers
+
+    private static Map<String, String> parameters(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static String required(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new IllegalArgumentException("Missing parameter " + name);
+        }
+        return value;
+    }
+
+    private static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    private static String quoteAll(List<String> values) {
+        StringBuilder json = new StringBuilder("[");
+        for (String value : values) {
+            if (json.length() > 1) json.append(',');
+            json.append(quote(value));
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * Serves an empty concurrent system on the given port (default 8080) until the process ends.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        SchoolHttpServer server = new SchoolHttpServer(new SchoolManagementSystem(true), port);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        server.start();
+        System.out.println("Listening on http://127.0.0.1:" + server.getPort()
+                + (server.usesVirtualThreads() ? " (virtual threads)" : " (platform thread pool)"));
+    }
+}
@@ -0,0 +1,645 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot Persistence Module
+ * Writes each subsystem to its own compact binary file and restores it through a memory-mapped
+ * read, so a warm restart decodes flat bytes instead of replaying the original import.
+ *
+ * File layout (big-endian):
+ *   int magic "SMSS" | int format version | int section | long record count | long payload length
+ *   | long CRC32 of payload | long journal generation | long journal offset | payload
+ * The journal fields (0 when no journal was open) record how much of the transaction journal the
+ * file's state already holds, so replay after a crash does not apply those entries again.
+ * Strings that repeat (student IDs inside fee records, subjects, payment types, course IDs) are
+ * dictionary-encoded inline: the first occurrence is written out and later ones are a 4-byte code.
+ * Files are written to a temporary sibling, forced to disk and atomically renamed into place.
+ * A single snapshot file is limited to 2 GB, the size of one mapped buffer.
+ */
+public class SnapshotStore {
+    public static final int FORMAT_VERSION = 5;
+    // Version 1 library files stored a single availability flag per book instead of copy counts,
+    // loans and holds; version 1 and 2 course files stored only the request queue, without the
+    // roster and waitlist; fee files before version 4 had no amounts due. The other sections are
+    // unchanged, so older files are still readable. Headers before version 5 had no journal
+    // position; those files cover none of the journal.
+    static final int MIN_READABLE_VERSION = 1;
+
+    static final String STUDENTS_FILE = "students.snap";
+    static final String COURSES_FILE = "courses.snap";
+    static final String FEES_FILE = "fees.snap";
+    static final String LIBRARY_FILE = "library.snap";
+    static final String GRADES_FILE = "grades.snap";
+    static final String TIMETABLE_FILE = "timetable.snap";
+
+    private static final int MAGIC = 0x534D5353; // "SMSS"
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8 + 8 + 8;
+    private static final int V4_HEADER_SIZE = 4 + 4 + 4 + 8 + 8 + 8;
+    private static final int SECTION_STUDENTS = 1;
+    private static final int SECTION_COURSES = 2;
+    private static final int SECTION_FEES = 3;
+    private static final int SECTION_LIBRARY = 4;
+    private static final int SECTION_GRADES = 5;
+    private static final int SECTION_TIMETABLE = 6;
+
+    private SnapshotStore() {
+    }
+
+    /**
+     * Returns the format version recorded in a snapshot file without decoding its payload.
+     */
+    public static int readFormatVersion(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(8);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the magic and version are in
+            }
+            header.flip();
+            if (header.remaining() < 8 || header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a snapshot file");
+            }
+            return header.getInt();
+        }
+    }
+
+    /**
+     * Returns the journal position recorded in a snapshot file's header (NONE for files written
+     * without an open journal or before version 5) without decoding its payload.
+     */
+    public static TransactionJournal.Position readJournalPosition(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the whole header is in
+            }
+            header.flip();
+            if (header.remaining() < 8 || header.getInt() != MAGIC) {
+                throw new IOException(file + " is not a snapshot file");
+            }
+            if (header.getInt() < 5) {
+                return TransactionJournal.Position.NONE;
+            }
+            if (header.limit() < HEADER_SIZE) {
+                throw new IOException(file + " is truncated");
+            }
+            return new TransactionJournal.Position(header.getLong(V4_HEADER_SIZE), header.getLong(V4_HEADER_SIZE + 8));
+        }
+    }
+
+    // ---------------------------------------------------------------- Student Registry
+
+    static void writeStudents(StudentRegistry registry, Path file) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file, SECTION_STUDENTS)) {
+            registry.forEach(student -> out.unchecked(() -> {
+                out.writeString(student.getStudentId());
+                out.writeString(student.getName());
+                out.writeString(student.getEmail());
+                out.writeInt(student.getGradeLevel());
+                List<String> courses = student.getCourses();
+                out.writeInt(courses.size());
+                for (String courseId : courses) {
+                    out.writeSymbol(courseId);
+                }
+                out.recordWritten();
+            }));
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static StudentRegistry readStudents(Path file) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(file, SECTION_STUDENTS)) {
+            int count = in.checkedCount();
+            StudentRegistry registry = new StudentRegistry(count);
+            for (int i = 0; i < count; i++) {
+                Student student = new Student(in.readString(), in.readString(), in.readString(), in.readInt());
+                int courses = in.readInt();
+                for (int c = 0; c < courses; c++) {
+                    student.addCourse(in.readSymbol());
+                }
+                registry.addStudent(student);
+            }
+            return registry;
+        }
+    }
+
+    // ---------------------------------------------------------------- Course Scheduler
+
+    static void writeCourses(CourseScheduler scheduler, Path file) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file, SECTION_COURSES)) {
+            out.writeBoolean(scheduler.isConcurrent());
+            scheduler.forEachCourse((courseId, capacity, pending, enrolled, waitlisted) -> out.unchecked(() -> {
+                out.writeSymbol(courseId);
+                out.writeInt(capacity);
+                writeIds(out, pending);
+                writeIds(out, enrolled);
+                writeIds(out, waitlisted); // promotion order, so re-adding restores it
+                out.recordWritten();
+            }));
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static void writeIds(SnapshotWriter out, List<String> studentIds) throws IOException {
+        out.writeInt(studentIds.size());
+        for (String studentId : studentIds) {
+            out.writeString(studentId);
+        }
+    }
+
+    private static List<String> readIds(SnapshotReader in) throws IOException {
+        int count = in.readInt();
+        List<String> studentIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            studentIds.add(in.readString());
+        }
+        return studentIds;
+    }
+
+    /**
+     * @param registry the restored students, which rosters and waitlists refer to
+     */
+    static CourseScheduler readCourses(Path file, StudentRegistry registry) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(file, SECTION_COURSES)) {
+            int count = in.checkedCount();
+            CourseScheduler scheduler = new CourseScheduler(in.readBoolean());
+            for (int i = 0; i < count; i++) {
+                String courseId = in.readSymbol();
+                scheduler.registerCourse(courseId, in.readInt());
+                for (String studentId : readIds(in)) {
+                    scheduler.enrollStudent(courseId, studentId);
+                }
+                if (in.version >= 3) {
+                    List<String> enrolled = readIds(in);
+                    scheduler.restoreCourse(courseId, enrolled, readIds(in), registry);
+                }
+            }
+            return scheduler;
+        }
+    }
+
+    // ---------------------------------------------------------------- Timetable
+
+    static void writeTimetable(Timetable timetable, Path file) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file, SECTION_TIMETABLE)) {
+            Map<String, Integer> rooms = timetable.getRooms();
+            out.writeInt(rooms.size());
+            for (Map.Entry<String, Integer> room : rooms.entrySet()) {
+                out.writeString(room.getKey());
+                out.writeInt(room.getValue());
+                out.recordWritten();
+            }
+            List<String> courseIds = new ArrayList<>();
+            timetable.forEachCourse((courseId, room, slots, prerequisites) -> courseIds.add(courseId));
+            out.writeInt(courseIds.size());
+            timetable.forEachCourse((courseId, room, slots, prerequisites) -> out.unchecked(() -> {
+                out.writeSymbol(courseId);
+                out.writeBoolean(room != null);
+                if (room != null) out.writeString(room);
+                for (long word : slots) {
+                    out.writeLong(word);
+                }
+                writeIds(out, new ArrayList<>(prerequisites));
+                out.recordWritten();
+            }));
+            Map<String, Set<String>> completions = timetable.getCompletions();
+            out.writeInt(completions.size());
+            for (Map.Entry<String, Set<String>> student : completions.entrySet()) {
+                out.writeString(student.getKey());
+                out.writeInt(student.getValue().size());
+                for (String courseId : student.getValue()) {
+                    out.writeSymbol(courseId);
+                }
+                out.recordWritten();
+            }
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static Timetable readTimetable(Path file) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(file, SECTION_TIMETABLE)) {
+            Timetable timetable = new Timetable();
+            int rooms = in.readInt();
+            for (int i = 0; i < rooms; i++) {
+                timetable.addRoom(in.readString(), in.readInt());
+            }
+            int courses = in.readInt();
+            for (int i = 0; i < courses; i++) {
+                String courseId = in.readSymbol();
+                String room = in.readBoolean() ? in.readString() : null;
+                long[] slots = new long[Timetable.WORDS];
+                for (int w = 0; w < slots.length; w++) {
+                    slots[w] = in.readLong();
+                }
+                timetable.restoreCourse(courseId, room, slots, readIds(in));
+            }
+            int students = in.readInt();
+            for (int i = 0; i < students; i++) {
+                String studentId = in.readString();
+                int completed = in.readInt();
+                for (int c = 0; c < completed; c++) {
+                    timetable.recordCompletion(studentId, in.readSymbol());
+                }
+            }
+            if (rooms + (long) courses + students != in.recordCount) {
+                throw new IOException(file + " record count does not match its header");
+            }
+            return timetable;
+        }
+    }
+
+    // ---------------------------------------------------------------- Fee Tracker
+
+    /**
+     * @param journalCovered how much of the open journal the tracker's state holds
+     */
+    static void writeFees(FeeTracker tracker, Path file, TransactionJournal.Position journalCovered) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file, SECTION_FEES, journalCovered)) {
+            out.writeInt(tracker.getSize());
+            Iterator<FeeRecord> records = tracker.iterateFeeRecordsInRange(new Date(Long.MIN_VALUE), new Date(Long.MAX_VALUE));
+            while (records.hasNext()) {
+                FeeRecord record = records.next();
+                out.writeSymbol(record.getStudentId());
+                out.writeDouble(record.getAmount());
+                out.writeLong(record.getTransactionDate().getTime());
+                out.writeSymbol(record.getPaymentType());
+                out.recordWritten();
+            }
+            Map<String, Double> amountsDue = new LinkedHashMap<>();
+            tracker.forEachAmountDue(amountsDue::put);
+            out.writeInt(amountsDue.size());
+            for (Map.Entry<String, Double> due : amountsDue.entrySet()) {
+                out.writeSymbol(due.getKey());
+                out.writeDouble(due.getValue());
+                out.recordWritten();
+            }
+            out.commit();
+        }
+    }
+
+    static FeeTracker readFees(Path file) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(file, SECTION_FEES)) {
+            int count = in.version >= 4 ? in.readInt() : in.checkedCount();
+            List<FeeRecord> records = new ArrayList<>(count);
+            long previous = Long.MIN_VALUE;
+            for (int i = 0; i < count; i++) {
+                FeeRecord record = new FeeRecord(in.readSymbol(), in.readDouble(), new Date(in.readLong()), in.readSymbol());
+                // Equal dates are legal (several payments in one batch); their order is arrival order
+                long date = record.getTransactionDate().getTime();
+                if (date < previous) {
+                    throw new IOException(file + " holds fee records out of order at record " + i);
+                }
+                records.add(record);
+                previous = date;
+            }
+            FeeTracker tracker = new FeeTracker();
+            tracker.loadSorted(records);
+            if (in.version >= 4) {
+                int dues = in.readInt();
+                for (int i = 0; i < dues; i++) {
+                    tracker.setAmountDue(in.readSymbol(), in.readDouble());
+                }
+                if (count + (long) dues != in.recordCount) {
+                    throw new IOException(file + " record count does not match its header");
+                }
+            }
+            return tracker;
+        }
+    }
+
+    // ---------------------------------------------------------------- Library System
+
+    /**
+     * @param journalCovered how much of the open journal the library's state holds
+     */
+    static void writeLibrary(LibrarySystem library, Path file, TransactionJournal.Position journalCovered) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file, SECTION_LIBRARY, journalCovered)) {
+            List<Book> books = new ArrayList<>();
+            library.forEachBook(books::add);
+            out.writeInt(books.size());
+            for (Book book : books) {
+                out.writeString(book.getIsbn());
+                out.writeString(book.getTitle());
+                out.writeString(book.getAuthor());
+                out.writeInt(book.getTotalCopies());
+                out.writeInt(book.getAvailableCopies());
+                Map<String, Integer> loans = library.getLoans(book.getIsbn());
+                out.writeInt(loans.size());
+                for (Map.Entry<String, Integer> loan : loans.entrySet()) {
+                    out.writeSymbol(loan.getKey());
+                    out.writeInt(loan.getValue());
+                }
+                List<String> holds = library.getHolds(book.getIsbn());
+                out.writeInt(holds.size());
+                for (String studentId : holds) {
+                    out.writeSymbol(studentId);
+                }
+                out.recordWritten();
+            }
+            List<Transaction> transactions = new ArrayList<>();
+            library.forEachTransaction(transactions::add);
+            out.writeInt(transactions.size());
+            for (Transaction transaction : transactions) {
+                out.writeSymbol(transaction.getIsbn());
+                out.writeSymbol(transaction.getStudentId());
+                out.writeLong(transaction.getDate().getTime());
+                out.writeSymbol(transaction.getType());
+                out.recordWritten();
+            }
+            out.commit();
+        }
+    }
+
+    /**
+     * Restores the catalog and history into library, an empty LibrarySystem the caller has
+     * configured (recent capacity, spill directory), and returns it.
+     */
+    static LibrarySystem readLibrary(Path file, LibrarySystem library) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(file, SECTION_LIBRARY)) {
+            int books = in.readInt();
+            for (int i = 0; i < books; i++) {
+                String isbn = in.readString();
+                String title = in.readString();
+                String author = in.readString();
+                if (in.version == 1) {
+                    Book book = new Book(isbn, title, author);
+                    book.setAvailable(in.readBoolean());
+                    library.addBook(book);
+                    continue;
+                }
+                Book book = new Book(isbn, title, author, in.readInt());
+                book.setAvailableCopies(in.readInt());
+                library.addBook(book);
+                Map<String, Integer> loans = new LinkedHashMap<>();
+                int loanCount = in.readInt();
+                for (int l = 0; l < loanCount; l++) {
+                    loans.put(in.readSymbol(), in.readInt());
+                }
+                List<String> holds = new ArrayList<>();
+                int holdCount = in.readInt();
+                for (int h = 0; h < holdCount; h++) {
+                    holds.add(in.readSymbol());
+                }
+                library.restoreInventory(isbn, loans, holds);
+            }
+            int transactions = in.readInt();
+            for (int i = 0; i < transactions; i++) {
+                library.restoreTransaction(new Transaction(in.readSymbol(), in.readSymbol(), new Date(in.readLong()), in.readSymbol()));
+            }
+            if (books + (long) transactions != in.recordCount) {
+                throw new IOException(file + " record count does not match its header");
+            }
+            return library;
+        }
+    }
+
+    // ---------------------------------------------------------------- Performance Graph
+
+    static void writeGrades(PerformanceGraph graph, Path file) throws IOException {
+        try (SnapshotWriter out = new SnapshotWriter(file, SECTION_GRADES)) {
+            graph.forEachStudent((studentId, subjects, grades, count) -> out.unchecked(() -> {
+                out.writeString(studentId);
+                out.writeInt(count);
+                for (int g = 0; g < count; g++) {
+                    out.writeSymbol(subjects[g]);
+                    out.writeDouble(grades[g]);
+                }
+                out.recordWritten();
+            }));
+            out.commit();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    static PerformanceGraph readGrades(Path file) throws IOException {
+        try (SnapshotReader in = new SnapshotReader(file, SECTION_GRADES)) {
+            int count = in.checkedCount();
+            PerformanceGraph graph = new PerformanceGraph();
+            for (int i = 0; i < count; i++) {
+                String studentId = in.readString();
+                int grades = in.readInt();
+                graph.addStudent(studentId);
+                if (grades == 0) continue;
+                String[] studentIds = new String[grades];
+                String[] subjects = new String[grades];
+                double[] values = new double[grades];
+                for (int g = 0; g < grades; g++) {
+                    studentIds[g] = studentId;
+                    subjects[g] = in.readSymbol();
+                    values[g] = in.readDouble();
+                }
+                graph.addGrades(studentIds, subjects, values, grades);
+            }
+            return graph;
+        }
+    }
+
+    // ---------------------------------------------------------------- Encoding
+
+    private interface IOAction {
+        void run() throws IOException;
+    }
+
+    /**
+     * Streams a payload through a CRC32 into a FileChannel positioned after the header, then
+     * back-fills the header once the record count, length and checksum are known.
+     */
+    private static final class SnapshotWriter implements Closeable {
+        private final Path file;
+        private final Path tempFile;
+        private final int section;
+        private final TransactionJournal.Position journalCovered;
+        private final FileChannel channel;
+        private final CRC32 crc = new CRC32();
+        private final DataOutputStream out;
+        private final Map<String, Integer> symbols = new HashMap<>();
+        private long records;
+        private boolean committed;
+
+        SnapshotWriter(Path file, int section) throws IOException {
+            this(file, section, TransactionJournal.Position.NONE);
+        }
+
+        SnapshotWriter(Path file, int section, TransactionJournal.Position journalCovered) throws IOException {
+            this.file = file;
+            this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+            this.section = section;
+            this.journalCovered = journalCovered;
+            this.channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            channel.position(HEADER_SIZE);
+            this.out = new DataOutputStream(new BufferedOutputStream(
+                    new CheckedOutputStream(Channels.newOutputStream(channel), crc), 1 << 16));
+        }
+
+        void unchecked(IOAction action) {
+            try {
+                action.run();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void recordWritten() {
+            records++;
+        }
+
+        void writeInt(int value) throws IOException { out.writeInt(value); }
+        void writeLong(long value) throws IOException { out.writeLong(value); }
+        void writeDouble(double value) throws IOException { out.writeDouble(value); }
+        void writeBoolean(boolean value) throws IOException { out.writeBoolean(value); }
+
+        void writeString(String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        // 0 introduces a new symbol spelled out in full; n > 0 refers to the (n-1)th symbol seen
+        void writeSymbol(String value) throws IOException {
+            Integer code = symbols.get(value);
+            if (code != null) {
+                out.writeInt(code + 1);
+            } else {
+                symbols.put(value, symbols.size());
+                out.writeInt(0);
+                writeString(value);
+            }
+        }
+
+        /**
+         * Back-fills the header, forces the file to disk and renames it into place. A writer that
+         * is closed without committing leaves any previous snapshot untouched.
+         */
+        void commit() throws IOException {
+            out.flush();
+            long payloadLength = channel.position() - HEADER_SIZE;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(section)
+                    .putLong(records).putLong(payloadLength).putLong(crc.getValue())
+                    .putLong(journalCovered.generation).putLong(journalCovered.offset);
+            header.flip();
+            channel.write(header, 0);
+            channel.force(true);
+            channel.close();
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    /**
+     * Maps a snapshot file read-only, validates its header and checksum, then decodes straight
+     * from the mapped buffer.
+     */
+    private static final class SnapshotReader implements Closeable {
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private final List<String> symbols = new ArrayList<>();
+        final long recordCount;
+        final int version;
+
+        SnapshotReader(Path file, int section) throws IOException {
+            this.file = file;
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                long size = channel.size();
+                if (size < V4_HEADER_SIZE) {
+                    throw new IOException(file + " is truncated");
+                }
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException(file + " exceeds the 2 GB snapshot file limit");
+                }
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                if (buffer.getInt() != MAGIC) {
+                    throw new IOException(file + " is not a snapshot file");
+                }
+                version = buffer.getInt();
+                if (version < MIN_READABLE_VERSION || version > FORMAT_VERSION) {
+                    throw new IOException(file + " has snapshot format version " + version
+                            + ", expected " + MIN_READABLE_VERSION + " to " + FORMAT_VERSION);
+                }
+                if (buffer.getInt() != section) {
+                    throw new IOException(file + " holds a different subsystem's snapshot");
+                }
+                int headerSize = version >= 5 ? HEADER_SIZE : V4_HEADER_SIZE;
+                if (size < headerSize) {
+                    throw new IOException(file + " is truncated");
+                }
+                recordCount = buffer.getLong();
+                long payloadLength = buffer.getLong();
+                long checksum = buffer.getLong();
+                buffer.position(headerSize); // past the journal position, read by readJournalPosition
+                if (payloadLength != size - headerSize) {
+                    throw new IOException(file + " is truncated: expected " + payloadLength + " payload bytes");
+                }
+                CRC32 crc = new CRC32();
+                crc.update(buffer.duplicate());
+                if (crc.getValue() != checksum) {
+                    throw new IOException(file + " failed its checksum");
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        int checkedCount() throws IOException {
+            if (recordCount > Integer.MAX_VALUE) {
+                throw new IOException(file + " holds too many records: " + recordCount);
+            }
+            return (int) recordCount;
+        }
+
+        int readInt() { return buffer.getInt(); }
+        long readLong() { return buffer.getLong(); }
+        double readDouble() { return buffer.getDouble(); }
+        boolean readBoolean() { return buffer.get() != 0; }
+
+        String readString() {
+            byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        String readSymbol() throws IOException {
+            int code = buffer.getInt();
+            if (code == 0) {
+                String value = readString();
+                symbols.add(value);
+                return value;
+            }
+            if (code > symbols.size()) {
+                throw new IOException(file + " refers to an undefined symbol " + code);
+            }
+            return symbols.get(code - 1);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -14,6 +14,8 @@ public class StudentPerformance implements Comparable<StudentPerformance> {
 
     @Override
     public int compareTo(StudentPerformance other) {
-        return Double.compare(other.averageGrade, this.averageGrade); // Max heap
+        int byGrade = Double.compare(other.averageGrade, this.averageGrade); // Highest average first
+        if (byGrade != 0) return byGrade;
+        return this.studentId.compareTo(other.studentId); // Equal averages stay distinct in sorted sets
     }
 }
@@ -1,4 +1,6 @@
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 class Student {
     private String studentId;
@@ -22,8 +24,18 @@ class Student {
     public int getGradeLevel() { return gradeLevel; }
     public List<String> getCourses() { return courses; }
     
-    public void addCourse(String courseId) {
-        courses.add(courseId);
+    /**
+     * @return false if the student already takes the course
+     */
+    public boolean addCourse(String courseId) {
+        if (courses.contains(courseId)) {
+            return false;
+        }
+        return courses.add(courseId);
+    }
+
+    public boolean removeCourse(String courseId) {
+        return courses.remove(courseId);
     }
     
     @Override
@@ -33,73 +45,394 @@ class Student {
     }
 }
 
+/**
+ * Student Registry Module
+ * Data Structure: Open-addressed hash table (linear probing) over flat arrays.
+ * Students are stored directly in a Student[] slot array alongside an int[] of their
+ * cached hash codes, so a lookup is a short sequential probe instead of a walk over
+ * a LinkedList bucket.
+ * Resizing is load-factor driven and incremental: when the table passes
+ * MAX_LOAD_FACTOR a table of twice the size is allocated and every subsequent
+ * add/remove migrates MIGRATION_STEP slots from the old table, so no single call
+ * pays for rehashing the whole registry. Lookups consult both tables while a
+ * migration is in progress and never mutate the table.
+ * Secondary indexes, kept in sync by addStudent and removeStudent:
+ * - Email: HashMap from normalized (trimmed, lower-cased) email to the students using it, in
+ *   registration order; O(1) expected lookup.
+ * - Grade level: one dense Student[] per level; each student remembers its slot, so removal swaps
+ *   the last entry into the hole in O(1) and listing a level is an array copy.
+ * - Name: TreeMap keyed "normalized name\0studentId" so equal names stay distinct; a prefix query is
+ *   one subMap range, O(log n + k).
+ * Time Complexity: Add/Get/Remove O(1) expected, plus O(log n) for the name index.
+ * Space Complexity: O(n).
+ */
 public class StudentRegistry {
     private static final int DEFAULT_CAPACITY = 1000;
-    private LinkedList<Student>[] table;
+    private static final float MAX_LOAD_FACTOR = 0.6f;
+    private static final int MIGRATION_STEP = 64;
+    // Marks drained or removed slots of the old table so its probe chains stay intact
+    private static final Student TOMBSTONE = new Student("", "", "", 0);
+
+    private Student[] table;
+    private int[] hashes;
+    private int liveCount; // students held in table
+    private int resizeThreshold;
+
+    private Student[] oldTable; // non-null only while a resize is being migrated
+    private int[] oldHashes;
+    private int migrationIndex;
+
     private int size;
-    
-    @SuppressWarnings("unchecked")
+
+    private final Map<String, Object> emailIndex = new HashMap<>(); // Student, or a LinkedHashSet<Student> once shared
+    private final Map<Integer, GradeLevelList> gradeLevelIndex = new HashMap<>();
+    private final TreeMap<String, Student> nameIndex = new TreeMap<>();
+
     public StudentRegistry(int capacity) {
-        table = new LinkedList[capacity];
-        for (int i = 0; i < capacity; i++) {
-            table[i] = new LinkedList<>();
-        }
+        int slots = tableSizeFor((int) Math.ceil(Math.max(capacity, 1) / MAX_LOAD_FACTOR));
+        table = new Student[slots];
+        hashes = new int[slots];
+        resizeThreshold = (int) (slots * MAX_LOAD_FACTOR);
         size = 0;
     }
-    
+
     public StudentRegistry() {
         this(DEFAULT_CAPACITY);
     }
-    
-    private int hash(String studentId) {
-        return Math.abs(studentId.hashCode()) % table.length;
+
+    private static int tableSizeFor(int n) {
+        int slots = Integer.highestOneBit(Math.max(n - 1, 1)) << 1;
+        return slots > 0 ? slots : 1 << 30;
     }
-    
+
+    private static int hash(String studentId) {
+        int h = studentId.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int indexOf(Student[] slots, int[] slotHashes, String studentId, int h) {
+        int mask = slots.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            Student student = slots[i];
+            if (student == null) {
+                return -1;
+            }
+            if (student != TOMBSTONE && slotHashes[i] == h && student.getStudentId().equals(studentId)) {
+                return i;
+            }
+        }
+    }
+
     public boolean addStudent(Student student) {
-        int index = hash(student.getStudentId());
-        LinkedList<Student> bucket = table[index];
-        
+        String studentId = student.getStudentId();
+        int h = hash(studentId);
+        if (oldTable != null) {
+            migrateStep();
+        }
+
         // Check if student already exists
-        for (Student s : bucket) {
-            if (s.getStudentId().equals(student.getStudentId())) {
-                return false; // Student already exists
-            }
+        if (indexOf(table, hashes, studentId, h) >= 0
+                || (oldTable != null && indexOf(oldTable, oldHashes, studentId, h) >= 0)) {
+            return false;
+        }
+
+        if (liveCount + 1 > resizeThreshold) {
+            startResize();
         }
-        
-        bucket.add(student);
+        insertLive(student, h);
         size++;
+        index(student);
         return true;
     }
-    
+
     public Student getStudent(String studentId) {
-        int index = hash(studentId);
-        LinkedList<Student> bucket = table[index];
-        
-        for (Student student : bucket) {
-            if (student.getStudentId().equals(studentId)) {
-                return student;
+        int h = hash(studentId);
+        int index = indexOf(table, hashes, studentId, h);
+        if (index >= 0) {
+            return table[index];
+        }
+        Student[] old = oldTable;
+        if (old != null) {
+            index = indexOf(old, oldHashes, studentId, h);
+            if (index >= 0) {
+                return old[index];
             }
         }
         return null;
     }
-    
+
+    /**
+     * Looks up a batch of IDs, e.g. a course's whole enrollment queue; null for unknown IDs. All IDs
+     * are hashed before any slot is probed, so the probes are independent loads the CPU can
+     * overlap rather than a chain of hash-then-probe steps.
+     */
+    public Student[] getStudents(String[] studentIds) {
+        int[] h = new int[studentIds.length];
+        for (int i = 0; i < studentIds.length; i++) {
+            h[i] = hash(studentIds[i]);
+        }
+        Student[] found = new Student[studentIds.length];
+        for (int i = 0; i < studentIds.length; i++) {
+            int index = indexOf(table, hashes, studentIds[i], h[i]);
+            if (index >= 0) {
+                found[i] = table[index];
+            } else if (oldTable != null && (index = indexOf(oldTable, oldHashes, studentIds[i], h[i])) >= 0) {
+                found[i] = oldTable[index];
+            }
+        }
+        return found;
+    }
+
     public boolean removeStudent(String studentId) {
-        int index = hash(studentId);
-        LinkedList<Student> bucket = table[index];
-        
-        Iterator<Student> iterator = bucket.iterator();
-        while (iterator.hasNext()) {
-            Student student = iterator.next();
-            if (student.getStudentId().equals(studentId)) {
-                iterator.remove();
+        int h = hash(studentId);
+        if (oldTable != null) {
+            migrateStep();
+        }
+
+        int index = indexOf(table, hashes, studentId, h);
+        if (index >= 0) {
+            unindex(table[index]);
+            deleteLive(index);
+            size--;
+            return true;
+        }
+        if (oldTable != null) {
+            index = indexOf(oldTable, oldHashes, studentId, h);
+            if (index >= 0) {
+                unindex(oldTable[index]);
+                oldTable[index] = TOMBSTONE;
                 size--;
                 return true;
             }
         }
         return false;
     }
-    
+
+    /**
+     * Students registered with this email (case-insensitive), in registration order.
+     */
+    public List<Student> findByEmail(String email) {
+        Object students = emailIndex.get(normalize(email));
+        if (students == null) {
+            return Collections.emptyList();
+        }
+        return students instanceof Student ? List.of((Student) students) : new ArrayList<>(sharedEmail(students));
+    }
+
+    /**
+     * Every student in the grade level, in no particular order.
+     */
+    public List<Student> getStudentsInGradeLevel(int gradeLevel) {
+        GradeLevelList level = gradeLevelIndex.get(gradeLevel);
+        return level == null ? Collections.emptyList() : Arrays.asList(Arrays.copyOf(level.students, level.size));
+    }
+
+    public int countInGradeLevel(int gradeLevel) {
+        GradeLevelList level = gradeLevelIndex.get(gradeLevel);
+        return level == null ? 0 : level.size;
+    }
+
+    /**
+     * Students whose name starts with the prefix (case-insensitive), ordered by name then ID.
+     */
+    public Stream<Student> streamByNamePrefix(String prefix) {
+        String key = normalize(prefix);
+        return nameIndex.subMap(key, true, key + Character.MAX_VALUE, false).values().stream();
+    }
+
+    public List<Student> searchByNamePrefix(String prefix, int offset, int limit) {
+        List<Student> page = new ArrayList<>(Math.max(0, Math.min(limit, 64)));
+        streamByNamePrefix(prefix).skip(Math.max(0, offset)).limit(Math.max(0, limit)).forEach(page::add);
+        return page;
+    }
+
     public int getSize() {
         return size;
     }
-}
\ No newline at end of file
+
+    public int getCapacity() {
+        return table.length + (oldTable == null ? 0 : oldTable.length);
+    }
+
+    public double getLoadFactor() {
+        return size / (double) table.length;
+    }
+
+    /**
+     * Longest distance any student sits from its home slot (the open-addressing analogue of the
+     * longest bucket chain). Scans the table, so it is meant for monitoring rather than hot paths;
+     * like every other read, it must not race writers (the facade's gauge takes the registry lock).
+     */
+    public int getLongestProbeLength() {
+        int mask = table.length - 1;
+        int longest = 0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] != null) {
+                longest = Math.max(longest, ((i - hashes[i]) & mask) + 1);
+            }
+        }
+        return longest;
+    }
+
+    /**
+     * Visits every registered student, in no particular order.
+     */
+    public void forEach(Consumer<Student> action) {
+        visit(table, action);
+        if (oldTable != null) {
+            visit(oldTable, action);
+        }
+    }
+
+    private static void visit(Student[] slots, Consumer<Student> action) {
+        for (Student student : slots) {
+            if (student != null && student != TOMBSTONE) {
+                action.accept(student);
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------- Secondary indexes
+
+    /**
+     * The students of one grade level, packed at the front of a growable array, with each
+     * student's position kept by ID so removal is a swap with the last slot.
+     */
+    private static final class GradeLevelList {
+        Student[] students = new Student[16];
+        int size;
+        private final Map<String, Integer> slots = new HashMap<>();
+
+        void add(Student student) {
+            if (size == students.length) {
+                students = Arrays.copyOf(students, size * 2);
+            }
+            slots.put(student.getStudentId(), size);
+            students[size++] = student;
+        }
+
+        void remove(Student student) {
+            Integer slot = slots.remove(student.getStudentId());
+            if (slot == null) {
+                throw new IllegalStateException("Grade level index lost " + student.getStudentId());
+            }
+            Student last = students[--size];
+            students[size] = null;
+            if (last != student) {
+                students[slot] = last;
+                slots.put(last.getStudentId(), slot);
+            }
+        }
+    }
+
+    private void index(Student student) {
+        String email = normalize(student.getEmail());
+        Object sharing = emailIndex.putIfAbsent(email, student);
+        if (sharing instanceof Student) {
+            Set<Student> shared = new LinkedHashSet<>();
+            shared.add((Student) sharing);
+            shared.add(student);
+            emailIndex.put(email, shared);
+        } else if (sharing != null) {
+            sharedEmail(sharing).add(student);
+        }
+        gradeLevelIndex.computeIfAbsent(student.getGradeLevel(), level -> new GradeLevelList()).add(student);
+        nameIndex.put(nameKey(student), student);
+    }
+
+    private void unindex(Student student) {
+        String email = normalize(student.getEmail());
+        Object sharing = emailIndex.get(email);
+        if (sharing instanceof Student) {
+            emailIndex.remove(email);
+        } else {
+            Set<Student> shared = sharedEmail(sharing);
+            shared.remove(student);
+            if (shared.size() == 1) {
+                emailIndex.put(email, shared.iterator().next());
+            }
+        }
+        GradeLevelList level = gradeLevelIndex.get(student.getGradeLevel());
+        level.remove(student);
+        if (level.size == 0) {
+            gradeLevelIndex.remove(student.getGradeLevel());
+        }
+        nameIndex.remove(nameKey(student));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Student> sharedEmail(Object sharing) {
+        return (Set<Student>) sharing;
+    }
+
+    private static String nameKey(Student student) {
+        return normalize(student.getName()) + '\0' + student.getStudentId();
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    // ---------------------------------------------------------------- Table maintenance
+
+    private void insertLive(Student student, int h) {
+        int mask = table.length - 1;
+        int i = h & mask;
+        while (table[i] != null) {
+            i = (i + 1) & mask;
+        }
+        table[i] = student;
+        hashes[i] = h;
+        liveCount++;
+    }
+
+    // Backward-shift deletion: keeps the live table free of tombstones
+    private void deleteLive(int index) {
+        int mask = table.length - 1;
+        int hole = index;
+        for (int j = (index + 1) & mask; table[j] != null; j = (j + 1) & mask) {
+            int home = hashes[j] & mask;
+            if (((j - home) & mask) >= ((j - hole) & mask)) {
+                table[hole] = table[j];
+                hashes[hole] = hashes[j];
+                hole = j;
+            }
+        }
+        table[hole] = null;
+        hashes[hole] = 0;
+        liveCount--;
+    }
+
+    private void startResize() {
+        if (oldTable != null) {
+            // Growth outpaced the previous migration; drain it before doubling again
+            while (oldTable != null) {
+                migrateStep();
+            }
+        }
+        oldTable = table;
+        oldHashes = hashes;
+        migrationIndex = 0;
+
+        int slots = table.length << 1;
+        table = new Student[slots];
+        hashes = new int[slots];
+        liveCount = 0;
+        resizeThreshold = (int) (slots * MAX_LOAD_FACTOR);
+    }
+
+    private void migrateStep() {
+        int end = Math.min(migrationIndex + MIGRATION_STEP, oldTable.length);
+        for (; migrationIndex < end; migrationIndex++) {
+            Student student = oldTable[migrationIndex];
+            if (student != null && student != TOMBSTONE) {
+                insertLive(student, oldHashes[migrationIndex]);
+                oldTable[migrationIndex] = TOMBSTONE;
+            }
+        }
+        if (migrationIndex == oldTable.length) {
+            oldTable = null;
+            oldHashes = null;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+import java.io.PrintStream;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Metrics Module
+ * Low-overhead instrumentation for the hot paths of the system.
+ * - Timer: per-operation latency histogram plus failure counters (LongAdder); every timed call is
+ *   one histogram sample, so timed calls need no separate counter.
+ * - LatencyHistogram: HDR-style log-linear buckets over an AtomicLongArray. Every power of two is
+ *   split into 32 linear sub-buckets, so any recorded latency is reported within ~3% while the
+ *   whole range from 1 ns to centuries fits in 1888 counters. Recording is one bucket index
+ *   computation and one atomic increment; nothing is locked or allocated.
+ * - Gauges: named suppliers that are only evaluated when a snapshot is taken.
+ * Readers pull an immutable MetricsSnapshot; an optional daemon thread can print one periodically.
+ */
+public class SystemMetrics {
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+    private ScheduledExecutorService dumper;
+
+    public Timer timer(String operation) {
+        return timers.computeIfAbsent(operation, name -> new Timer(name, this));
+    }
+
+    public void registerGauge(String name, DoubleSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Disabled metrics skip the clock reads entirely; counters and histograms keep their values.
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, OperationStats> operations = new TreeMap<>();
+        for (Timer timer : timers.values()) {
+            operations.put(timer.name, timer.stats());
+        }
+        Map<String, Double> gaugeValues = new TreeMap<>();
+        for (Map.Entry<String, DoubleSupplier> gauge : gauges.entrySet()) {
+            gaugeValues.put(gauge.getKey(), gauge.getValue().getAsDouble());
+        }
+        return new MetricsSnapshot(System.currentTimeMillis(), operations, gaugeValues);
+    }
+
+    /**
+     * Prints a text snapshot to the given stream every period until stopPeriodicDump is called.
+     */
+    public synchronized void startPeriodicDump(long period, TimeUnit unit, PrintStream out) {
+        stopPeriodicDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> out.println(snapshot()), period, period, unit);
+    }
+
+    public synchronized void stopPeriodicDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+
+    /**
+     * Times one named operation. Usage: long start = timer.start(); ...; timer.stop(start);
+     */
+    public static final class Timer {
+        private final String name;
+        private final SystemMetrics owner;
+        private final LongAdder untimedCalls = new LongAdder(); // calls made while metrics were disabled
+        private final LongAdder failures = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        private Timer(String name, SystemMetrics owner) {
+            this.name = name;
+            this.owner = owner;
+        }
+
+        public long start() {
+            return owner.enabled ? System.nanoTime() : 0L;
+        }
+
+        public void stop(long start) {
+            if (start != 0L) {
+                latency.record(System.nanoTime() - start);
+            } else {
+                untimedCalls.increment();
+            }
+        }
+
+        /**
+         * Records the call and counts it as a failure when the operation reported one
+         * (e.g. a duplicate registration or a full course queue).
+         */
+        public void stop(long start, boolean success) {
+            stop(start);
+            if (!success) {
+                failures.increment();
+            }
+        }
+
+        OperationStats stats() {
+            return new OperationStats(name, untimedCalls.sum(), failures.sum(), latency);
+        }
+    }
+
+    /**
+     * Log-linear latency histogram in nanoseconds (see class comment).
+     */
+    static final class LatencyHistogram {
+        private static final int SUB_BUCKET_BITS = 5;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long nanos) {
+            long value = Math.max(0, nanos);
+            counts.incrementAndGet(indexOf(value));
+            totalNanos.add(value);
+            if (value > max.get()) {
+                max.accumulateAndGet(value, Math::max);
+            }
+        }
+
+        static int indexOf(long value) {
+            int msb = 63 - Long.numberOfLeadingZeros(value | 1);
+            if (msb < SUB_BUCKET_BITS) {
+                return (int) value;
+            }
+            int shift = msb - SUB_BUCKET_BITS;
+            return ((shift + 1) << SUB_BUCKET_BITS) + (int) ((value >>> shift) - SUB_BUCKETS);
+        }
+
+        // Largest value that maps to the bucket, as HDR histograms report percentiles
+        static long highestValueIn(int index) {
+            if (index < 2 * SUB_BUCKETS) {
+                return index;
+            }
+            int shift = (index >>> SUB_BUCKET_BITS) - 1;
+            long lowest = ((long) (index & (SUB_BUCKETS - 1)) + SUB_BUCKETS) << shift;
+            return lowest + (1L << shift) - 1;
+        }
+
+        long[] copyCounts() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = counts.get(i);
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Point-in-time view of one operation's counters and latency percentiles.
+     */
+    public static final class OperationStats {
+        private final String operation;
+        private final long calls;
+        private final long failures;
+        private final long samples;
+        private final double meanNanos;
+        private final long p50, p90, p99, p999, maxNanos;
+
+        OperationStats(String operation, long untimedCalls, long failures, LatencyHistogram histogram) {
+            this.operation = operation;
+            this.failures = failures;
+            long[] counts = histogram.copyCounts();
+            long total = 0;
+            for (long count : counts) total += count;
+            this.samples = total;
+            this.calls = total + untimedCalls;
+            this.meanNanos = total == 0 ? 0.0 : histogram.totalNanos.sum() / (double) total;
+            this.p50 = percentile(counts, total, 0.50);
+            this.p90 = percentile(counts, total, 0.90);
+            this.p99 = percentile(counts, total, 0.99);
+            this.p999 = percentile(counts, total, 0.999);
+            this.maxNanos = histogram.max.get();
+        }
+
+        private static long percentile(long[] counts, long total, double quantile) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(total * quantile));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return LatencyHistogram.highestValueIn(i);
+                }
+            }
+            return LatencyHistogram.highestValueIn(counts.length - 1);
+        }
+
+        public String getOperation() { return operation; }
+        public long getCalls() { return calls; }
+        public long getFailures() { return failures; }
+        public double getMeanNanos() { return meanNanos; }
+        public long getP50Nanos() { return p50; }
+        public long getP90Nanos() { return p90; }
+        public long getP99Nanos() { return p99; }
+        public long getP999Nanos() { return p999; }
+        public long getMaxNanos() { return maxNanos; }
+
+        @Override
+        public String toString() {
+            return String.format("%-24s calls=%d failures=%d timed=%d mean=%.0fns p50=%dns p90=%dns p99=%dns p99.9=%dns max=%dns",
+                    operation, calls, failures, samples, meanNanos, p50, p90, p99, p999, maxNanos);
+        }
+    }
+
+    /**
+     * Immutable result of SystemMetrics.snapshot().
+     */
+    public static final class MetricsSnapshot {
+        private final long timestampMillis;
+        private final Map<String, OperationStats> operations;
+        private final Map<String, Double> gauges;
+
+        MetricsSnapshot(long timestampMillis, Map<String, OperationStats> operations, Map<String, Double> gauges) {
+            this.timestampMillis = timestampMillis;
+            this.operations = Collections.unmodifiableMap(operations);
+            this.gauges = Collections.unmodifiableMap(gauges);
+        }
+
+        public long getTimestampMillis() { return timestampMillis; }
+        public Map<String, OperationStats> getOperations() { return operations; }
+        public Map<String, Double> getGauges() { return gauges; }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder("=== Metrics @ " + new Date(timestampMillis) + " ===\n");
+            for (OperationStats stats : operations.values()) {
+                text.append(stats).append('\n');
+            }
+            for (Map.Entry<String, Double> gauge : gauges.entrySet()) {
+                text.append(String.format("%-24s %.3f%n", gauge.getKey(), gauge.getValue()));
+            }
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Timetable Module
+ * Meeting times, rooms and prerequisites of courses, and the conflict checks made against them.
+ * Data Structures Used:
+ * - Bitset calendar: the week is cut into 30-minute slots (7 x 48 = 336 bits, six longs). Every
+ *   course owns a long[] of the slots it meets in and every room a long[] of the slots it is booked,
+ *   so two calendars clash exactly when one of six word ANDs is non-zero.
+ * - HashMap: course -> meeting slots, room and prerequisites; student -> completed courses.
+ * Validating a student against a course allocates nothing: it ANDs the course's calendar with
+ * those of the student's current courses, O(k) for k courses (a handful per student).
+ * Whole-term analysis checks every student independently, so it runs on the fork/join pool.
+ * Meetings, rooms and prerequisites are set up before enrollment starts; checks and completions
+ * may then run from many threads.
+ */
+public class Timetable {
+    public static final int SLOT_MINUTES = 30;
+    static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    static final int WORDS = (7 * SLOTS_PER_DAY + 63) / 64;
+
+    /**
+     * Why a student cannot take a course.
+     */
+    public enum Conflict { NONE, TIME_CLASH, MISSING_PREREQUISITE }
+
+    private final Map<String, CourseTimes> courses = new ConcurrentHashMap<>();
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> completed = new ConcurrentHashMap<>();
+
+    public void addRoom(String room, int capacity) {
+        rooms.putIfAbsent(room, new Room(capacity));
+    }
+
+    /**
+     * Adds a weekly meeting; times are widened to whole 30-minute slots.
+     *
+     * @throws IllegalArgumentException if the course's room is already booked by another course
+     *                                  at that time, or the meeting ends before it starts
+     */
+    public void addMeeting(String courseId, DayOfWeek day, LocalTime start, LocalTime end) {
+        if (!end.isAfter(start)) {
+            throw new IllegalArgumentException("Meeting of " + courseId + " must end after it starts");
+        }
+        long[] meeting = new long[WORDS];
+        int base = (day.getValue() - 1) * SLOTS_PER_DAY;
+        int first = start.toSecondOfDay() / 60 / SLOT_MINUTES;
+        int last = (end.toSecondOfDay() / 60 + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        for (int slot = base + first; slot < base + last; slot++) {
+            meeting[slot >>> 6] |= 1L << slot;
+        }
+        CourseTimes times = times(courseId);
+        synchronized (times) {
+            if (times.room != null) {
+                Room room = rooms.get(times.room);
+                synchronized (room) {
+                    long[] added = new long[WORDS];
+                    for (int w = 0; w < WORDS; w++) added[w] = meeting[w] & ~times.slots[w];
+                    if (overlaps(room.booked, added)) {
+                        throw new IllegalArgumentException("Room " + times.room + " is already booked during a meeting of " + courseId);
+                    }
+                    or(room.booked, meeting);
+                }
+            }
+            or(times.slots, meeting);
+        }
+    }
+
+    /**
+     * Moves the course into a room, which caps its seats at the room's capacity.
+     *
+     * @throws IllegalArgumentException for an unknown room, or one booked by another course during
+     *                                  one of this course's meetings
+     */
+    public void assignRoom(String courseId, String roomName) {
+        Room room = rooms.get(roomName);
+        if (room == null) {
+            throw new IllegalArgumentException("Unknown room " + roomName);
+        }
+        CourseTimes times = times(courseId);
+        synchronized (times) {
+            if (roomName.equals(times.room)) {
+                return;
+            }
+            synchronized (room) {
+                if (overlaps(room.booked, times.slots)) {
+                    throw new IllegalArgumentException("Room " + roomName + " is already booked during a meeting of " + courseId);
+                }
+                or(room.booked, times.slots);
+            }
+            if (times.room != null) {
+                Room previous = rooms.get(times.room);
+                synchronized (previous) {
+                    for (int w = 0; w < WORDS; w++) previous.booked[w] &= ~times.slots[w];
+                }
+            }
+            times.room = roomName;
+        }
+    }
+
+    public void addPrerequisite(String courseId, String prerequisiteId) {
+        times(courseId).prerequisites.add(prerequisiteId);
+    }
+
+    public void recordCompletion(String studentId, String courseId) {
+        completed.computeIfAbsent(studentId, k -> ConcurrentHashMap.newKeySet()).add(courseId);
+    }
+
+    /**
+     * Whether the course meets at all, i.e. whether check can find a time clash for it. Admission
+     * to a course without meetings does not depend on the student's other courses.
+     */
+    public boolean hasMeetings(String courseId) {
+        CourseTimes times = courses.get(courseId);
+        if (times != null) {
+            for (long word : times.slots) {
+                if (word != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Seats the course's room allows, or Integer.MAX_VALUE if it has no room.
+     */
+    public int getRoomCapacity(String courseId) {
+        CourseTimes times = courses.get(courseId);
+        String room = times == null ? null : times.room;
+        return room == null ? Integer.MAX_VALUE : rooms.get(room).capacity;
+    }
+
+    /**
+     * Checks whether the student may join the course: every prerequisite completed and no meeting
+     * overlapping one of the student's current courses. Courses without meetings never clash.
+     * Reads the student's course list, so a caller racing with admissions holds the student's
+     * monitor across the check and the admission, as CourseScheduler does.
+     */
+    public Conflict check(Student student, String courseId) {
+        CourseTimes times = courses.get(courseId);
+        if (times == null) {
+            return Conflict.NONE;
+        }
+        if (!times.prerequisites.isEmpty()) {
+            Set<String> done = completed.getOrDefault(student.getStudentId(), Collections.emptySet());
+            if (!done.containsAll(times.prerequisites)) {
+                return Conflict.MISSING_PREREQUISITE;
+            }
+        }
+        return clashingCourse(student.getCourses(), courseId, times.slots) == null ? Conflict.NONE : Conflict.TIME_CLASH;
+    }
+
+    private String clashingCourse(List<String> current, String courseId, long[] slots) {
+        for (int i = 0; i < current.size(); i++) {
+            String other = current.get(i);
+            CourseTimes otherTimes = courses.get(other);
+            if (otherTimes != null && !other.equals(courseId) && overlaps(otherTimes.slots, slots)) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * One problem found by analyzeTerm: two of a student's courses meet at the same time, or the
+     * student is enrolled without a prerequisite (otherCourseId is then the missing prerequisite).
+     */
+    public static final class StudentConflict {
+        private final String studentId;
+        private final String courseId;
+        private final String otherCourseId;
+        private final Conflict conflict;
+
+        StudentConflict(String studentId, String courseId, String otherCourseId, Conflict conflict) {
+            this.studentId = studentId;
+            this.courseId = courseId;
+            this.otherCourseId = otherCourseId;
+            this.conflict = conflict;
+        }
+
+        public String getStudentId() { return studentId; }
+        public String getCourseId() { return courseId; }
+        public String getOtherCourseId() { return otherCourseId; }
+        public Conflict getConflict() { return conflict; }
+
+        @Override
+        public String toString() {
+            return studentId + ": " + courseId + (conflict == Conflict.TIME_CLASH ? " clashes with " : " requires ") + otherCourseId;
+        }
+    }
+
+    /**
+     * Finds every time clash and missing prerequisite among all students' current courses, e.g.
+     * after a bulk import that bypassed enrollment. Students are checked in parallel on the common
+     * fork/join pool; each student costs one calendar OR per course, and a pairwise scan only for
+     * courses that hit an occupied slot. Each student's course list is copied under the student's
+     * monitor, so the scan may run while enrollments are processed.
+     */
+    public List<StudentConflict> analyzeTerm(StudentRegistry registry) {
+        return analyzeTerm(registry, true);
+    }
+
+    List<StudentConflict> analyzeTerm(StudentRegistry registry, boolean parallel) {
+        List<Student> students = new ArrayList<>(registry.getSize());
+        registry.forEach(students::add);
+        Stream<Student> stream = parallel ? students.parallelStream() : students.stream();
+        return stream.flatMap(student -> studentConflicts(student).stream()).collect(Collectors.toList());
+    }
+
+    private List<StudentConflict> studentConflicts(Student student) {
+        List<String> current;
+        synchronized (student) { // admissions append to the list under the student's monitor
+            current = new ArrayList<>(student.getCourses());
+        }
+        List<StudentConflict> found = Collections.emptyList();
+        long[] calendar = new long[WORDS];
+        Set<String> done = completed.getOrDefault(student.getStudentId(), Collections.emptySet());
+        for (int i = 0; i < current.size(); i++) {
+            String courseId = current.get(i);
+            CourseTimes times = courses.get(courseId);
+            if (times == null) {
+                continue;
+            }
+            for (String prerequisite : times.prerequisites) {
+                if (!done.contains(prerequisite)) {
+                    if (found.isEmpty()) found = new ArrayList<>();
+                    found.add(new StudentConflict(student.getStudentId(), courseId, prerequisite, Conflict.MISSING_PREREQUISITE));
+                }
+            }
+            if (overlaps(calendar, times.slots)) {
+                for (int j = 0; j < i; j++) {
+                    CourseTimes earlier = courses.get(current.get(j));
+                    if (earlier != null && overlaps(earlier.slots, times.slots)) {
+                        if (found.isEmpty()) found = new ArrayList<>();
+                        found.add(new StudentConflict(student.getStudentId(), current.get(j), courseId, Conflict.TIME_CLASH));
+                    }
+                }
+            }
+            or(calendar, times.slots);
+        }
+        return found;
+    }
+
+    /**
+     * Receives one course's timetable entry; slots must not be modified.
+     */
+    interface CourseVisitor {
+        void visit(String courseId, String room, long[] slots, Set<String> prerequisites);
+    }
+
+    void forEachCourse(CourseVisitor visitor) {
+        for (Map.Entry<String, CourseTimes> entry : courses.entrySet()) {
+            CourseTimes times = entry.getValue();
+            visitor.visit(entry.getKey(), times.room, times.slots, times.prerequisites);
+        }
+    }
+
+    Map<String, Integer> getRooms() {
+        Map<String, Integer> capacities = new LinkedHashMap<>();
+        rooms.forEach((name, room) -> capacities.put(name, room.capacity));
+        return capacities;
+    }
+
+    Map<String, Set<String>> getCompletions() {
+        return completed;
+    }
+
+    // Snapshot restore: slots were valid when saved, so the room is booked without re-checking
+    void restoreCourse(String courseId, String room, long[] slots, Collection<String> prerequisites) {
+        CourseTimes times = times(courseId);
+        System.arraycopy(slots, 0, times.slots, 0, WORDS);
+        times.prerequisites.addAll(prerequisites);
+        if (room != null) {
+            or(rooms.get(room).booked, slots);
+            times.room = room;
+        }
+    }
+
+    private CourseTimes times(String courseId) {
+        return courses.computeIfAbsent(courseId, k -> new CourseTimes());
+    }
+
+    static boolean overlaps(long[] a, long[] b) {
+        for (int w = 0; w < WORDS; w++) {
+            if ((a[w] & b[w]) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void or(long[] into, long[] bits) {
+        for (int w = 0; w < WORDS; w++) {
+            into[w] |= bits[w];
+        }
+    }
+
+    private static final class CourseTimes {
+        final long[] slots = new long[WORDS];
+        final Set<String> prerequisites = ConcurrentHashMap.newKeySet();
+        volatile String room;
+    }
+
+    private static final class Room {
+        final int capacity;
+        final long[] booked = new long[WORDS];
+
+        Room(int capacity) {
+            this.capacity = capacity;
+        }
+    }
+}
@@ -16,6 +16,12 @@ public class Transaction {
         this.type = type;
     }
     
+    // Getters
+    public String getIsbn() { return isbn; }
+    public String getStudentId() { return studentId; }
+    public Date getDate() { return date; }
+    public String getType() { return type; }
+
     @Override
     public String toString() {
         return String.format("Transaction{ISBN: %s, Student: %s, Type: %s, Date: %s}", 
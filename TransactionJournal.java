@@ -0,0 +1,438 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+
+/**
+ * Write-Ahead Journal Module
+ * Append-only log of fee payments, amounts due and library borrow/return operations. Each operation is
+ * journaled before it is applied in memory, so after a crash the journal can be replayed on top
+ * of the last snapshot to rebuild the FeeTracker AVL tree and the library transaction history.
+ *
+ * File layout: int magic "SMSJ" | long generation | entries. The generation is a random number
+ * drawn whenever the file is created or reset, so a snapshot can record the position (generation,
+ * byte offset) its state covers and replay skips the entries before it: a crash between writing
+ * a snapshot and resetting the journal then replays nothing twice. Files written before the
+ * header existed start straight with entries and are replayed in full.
+ * Entry layout: int payload length | int CRC32 of payload | payload (type byte + fields).
+ * Replay stops at the first torn or corrupt entry and truncates the file there.
+ *
+ * Durability:
+ * - FSYNC_EACH: every append writes and fsyncs before returning (one fsync per operation).
+ * - GROUP_COMMIT: appends are buffered and a single flusher thread writes and fsyncs whatever has
+ *   accumulated since its last fsync; each caller still returns only once its entry is durable,
+ *   so concurrent callers share one fsync.
+ * - GROUP_COMMIT_ASYNC: as GROUP_COMMIT but appends return immediately; entries become durable
+ *   within one flush cycle, and sync() waits for everything appended so far.
+ * A failed write or fsync in any mode fails the journal: every later append, sync and reset
+ * throws, because entries written after a torn one would be lost on replay. Close it and open a
+ * new journal on the file (replay cuts the torn tail) to continue.
+ */
+public class TransactionJournal implements Closeable {
+    public enum Durability { FSYNC_EACH, GROUP_COMMIT, GROUP_COMMIT_ASYNC }
+
+    private static final byte TYPE_FEE = 1;
+    private static final byte TYPE_LIBRARY = 2;
+    private static final byte TYPE_AMOUNT_DUE = 3;
+    private static final int ENTRY_HEADER_SIZE = 8;
+    private static final int MAX_ENTRY_SIZE = 1 << 20;
+    private static final int FILE_MAGIC = 0x534D534A; // "SMSJ"; larger than MAX_ENTRY_SIZE, so never a length
+    private static final int FILE_HEADER_SIZE = 4 + 8;
+
+    /**
+     * A point in one generation of a journal file; the entries before it are covered by a snapshot.
+     */
+    public static final class Position {
+        public static final Position NONE = new Position(0, 0);
+
+        final long generation;
+        final long offset;
+
+        Position(long generation, long offset) {
+            this.generation = generation;
+            this.offset = offset;
+        }
+
+        boolean covers(long entryGeneration, long entryOffset) {
+            return generation != 0 && generation == entryGeneration && entryOffset < offset;
+        }
+    }
+
+    private final FileChannel channel;
+    private final Durability durability;
+    private final Object lock = new Object();
+    private ByteBuffer pending = ByteBuffer.allocate(1 << 16);
+    private ByteBuffer flushing = ByteBuffer.allocate(1 << 16);
+    private long generation; // 0 for a file without a header
+    private long endOffset; // file length once every appended entry is written
+    private long appendedSequence;
+    private long durableSequence;
+    private IOException failure;
+    private boolean closed;
+    private final Thread flusher;
+
+    public TransactionJournal(Path file, Durability durability) throws IOException {
+        this.durability = durability;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() == 0) {
+            writeHeader();
+        } else {
+            generation = readGeneration(channel);
+        }
+        endOffset = channel.size();
+        channel.position(endOffset);
+        if (durability == Durability.FSYNC_EACH) {
+            flusher = null;
+        } else {
+            flusher = new Thread(this::flushLoop, "journal-group-commit");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    public void appendFee(FeeRecord record) throws IOException {
+        awaitPolicy(enqueue(encodeFee(record)));
+    }
+
+    /**
+     * Journals a batch of fee records, waiting (per the durability mode) once for the whole batch.
+     */
+    public void appendFees(Collection<FeeRecord> records) throws IOException {
+        long last = 0;
+        for (FeeRecord record : records) {
+            last = enqueue(encodeFee(record));
+        }
+        awaitPolicy(last);
+    }
+
+    public void appendAmountDue(String studentId, double amountDue) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_AMOUNT_DUE);
+        out.writeUTF(studentId);
+        out.writeDouble(amountDue);
+        awaitPolicy(enqueue(bytes.toByteArray()));
+    }
+
+    public void appendTransaction(Transaction transaction) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_LIBRARY);
+        out.writeUTF(transaction.getIsbn());
+        out.writeUTF(transaction.getStudentId());
+        out.writeLong(transaction.getDate().getTime());
+        out.writeUTF(transaction.getType());
+        awaitPolicy(enqueue(bytes.toByteArray()));
+    }
+
+    /**
+     * Blocks until every entry appended so far is on disk.
+     */
+    public void sync() throws IOException {
+        long target;
+        synchronized (lock) {
+            target = appendedSequence;
+        }
+        awaitDurable(target);
+    }
+
+    /**
+     * The end of everything appended so far. A snapshot taken while no write is between append and
+     * apply covers the journal up to here (see replay).
+     */
+    public Position position() {
+        synchronized (lock) {
+            return new Position(generation, endOffset);
+        }
+    }
+
+    /**
+     * Discards all journaled entries and starts a new generation, e.g. once a snapshot has
+     * captured them. Appends that arrive meanwhile wait for the reset and land in the emptied
+     * journal, so the caller must keep writes out until its snapshot is written
+     * (SchoolManagementSystem's journal gate does).
+     */
+    public void reset() throws IOException {
+        synchronized (lock) {
+            if (failure != null) {
+                throw new IOException("Journal failed earlier", failure);
+            }
+            // Holding the lock keeps new entries out; wait until the flusher has written and
+            // fsynced everything, so no write of its own can land after the truncate
+            while (durableSequence < appendedSequence) {
+                if (failure != null) {
+                    throw new IOException("Journal flush failed", failure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal flush");
+                }
+            }
+            channel.truncate(0);
+            writeHeader();
+            endOffset = FILE_HEADER_SIZE;
+        }
+    }
+
+    // Starts a new generation in an empty file
+    private void writeHeader() throws IOException {
+        long next;
+        do {
+            next = ThreadLocalRandom.current().nextLong();
+        } while (next == 0 || next == generation);
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(FILE_MAGIC).putLong(next).flip();
+        channel.position(0);
+        writeFully(header);
+        channel.force(true);
+        generation = next;
+    }
+
+    // The generation in the file's header, or 0 for a file that starts straight with entries
+    private static long readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        while (header.hasRemaining() && channel.read(header, header.position()) >= 0) {
+            // keep reading until the magic and generation are in
+        }
+        header.flip();
+        return header.remaining() == FILE_HEADER_SIZE && header.getInt() == FILE_MAGIC ? header.getLong() : 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                lock.notifyAll();
+            }
+            if (flusher != null) {
+                try {
+                    flusher.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            channel.close();
+        }
+    }
+
+    private static byte[] encodeFee(FeeRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(TYPE_FEE);
+        out.writeUTF(record.getStudentId());
+        out.writeDouble(record.getAmount());
+        out.writeLong(record.getTransactionDate().getTime());
+        out.writeUTF(record.getPaymentType());
+        return bytes.toByteArray();
+    }
+
+    private void awaitPolicy(long sequence) throws IOException {
+        if (durability == Durability.GROUP_COMMIT) {
+            awaitDurable(sequence);
+        }
+    }
+
+    // Returns the entry's sequence number; FSYNC_EACH entries are already durable on return
+    private long enqueue(byte[] payload) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        long sequence;
+        synchronized (lock) {
+            if (closed) {
+                throw new IOException("Journal is closed");
+            }
+            if (failure != null) {
+                throw new IOException("Journal failed earlier", failure);
+            }
+            if (durability == Durability.FSYNC_EACH) {
+                ByteBuffer entry = ByteBuffer.allocate(ENTRY_HEADER_SIZE + payload.length);
+                entry.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+                try {
+                    writeFully(entry);
+                    channel.force(false);
+                } catch (IOException e) {
+                    // A torn entry may be on disk now; replay would stop there and drop anything
+                    // appended after it, so refuse further appends as the flusher does
+                    failure = e;
+                    lock.notifyAll();
+                    throw e;
+                }
+                endOffset += ENTRY_HEADER_SIZE + payload.length;
+                durableSequence = ++appendedSequence;
+                return durableSequence;
+            }
+            if (pending.remaining() < ENTRY_HEADER_SIZE + payload.length) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(pending.capacity() * 2,
+                        pending.position() + ENTRY_HEADER_SIZE + payload.length));
+                pending.flip();
+                larger.put(pending);
+                pending = larger;
+            }
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            endOffset += ENTRY_HEADER_SIZE + payload.length;
+            sequence = ++appendedSequence;
+            lock.notifyAll();
+        }
+        return sequence;
+    }
+
+    private void awaitDurable(long sequence) throws IOException {
+        synchronized (lock) {
+            while (durableSequence < sequence) {
+                if (failure != null) {
+                    throw new IOException("Journal flush failed", failure);
+                }
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted waiting for journal flush");
+                }
+            }
+        }
+    }
+
+    // Everything appended while the previous fsync was running goes out in the next write + fsync
+    private void flushLoop() {
+        while (true) {
+            long upTo;
+            synchronized (lock) {
+                while (pending.position() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.position() == 0) {
+                    return;
+                }
+                ByteBuffer swap = flushing;
+                flushing = pending;
+                pending = swap;
+                pending.clear();
+                upTo = appendedSequence;
+            }
+            try {
+                flushing.flip();
+                writeFully(flushing);
+                channel.force(false);
+                flushing.clear();
+            } catch (IOException e) {
+                synchronized (lock) {
+                    failure = e;
+                    lock.notifyAll();
+                }
+                return;
+            }
+            synchronized (lock) {
+                durableSequence = upTo;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Re-applies every intact entry in the journal to the given modules, oldest first, and cuts
+     * off a torn tail left by a crash mid-write. Either module may be null to skip its entries.
+     *
+     * @return the number of entries replayed
+     */
+    public static long replay(Path file, FeeTracker feeTracker, LibrarySystem librarySystem) throws IOException {
+        return replay(file, feeTracker, Position.NONE, librarySystem, Position.NONE);
+    }
+
+    /**
+     * As replay(file, feeTracker, librarySystem), but skips the fee and amount-due entries before
+     * feesCovered and the library entries before libraryCovered: the positions recorded by the
+     * snapshots the modules were loaded from (see SnapshotStore.readJournalPosition).
+     *
+     * @return the number of entries replayed, not counting skipped ones
+     */
+    public static long replay(Path file, FeeTracker feeTracker, Position feesCovered,
+                              LibrarySystem librarySystem, Position libraryCovered) throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+        long replayed = 0;
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            long fileGeneration = 0;
+            in.mark(FILE_HEADER_SIZE);
+            try {
+                if (in.readInt() == FILE_MAGIC) {
+                    fileGeneration = in.readLong();
+                    validLength = FILE_HEADER_SIZE;
+                } else {
+                    in.reset(); // written before the header existed
+                }
+            } catch (EOFException e) {
+                in.reset(); // empty, or a header torn by a crash; the loop below finds no entry
+            }
+            while (true) {
+                int length;
+                int checksum;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length <= 0 || length > MAX_ENTRY_SIZE) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) break;
+
+                DataInputStream entry = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = entry.readByte();
+                boolean applied;
+                if (type == TYPE_FEE) {
+                    FeeRecord record = new FeeRecord(entry.readUTF(), entry.readDouble(), new Date(entry.readLong()), entry.readUTF());
+                    applied = feeTracker != null && !feesCovered.covers(fileGeneration, validLength);
+                    if (applied) feeTracker.addFeeRecord(record);
+                } else if (type == TYPE_AMOUNT_DUE) {
+                    String studentId = entry.readUTF();
+                    double amountDue = entry.readDouble();
+                    applied = feeTracker != null && !feesCovered.covers(fileGeneration, validLength);
+                    if (applied) feeTracker.setAmountDue(studentId, amountDue);
+                } else if (type == TYPE_LIBRARY) {
+                    Transaction transaction = new Transaction(entry.readUTF(), entry.readUTF(), new Date(entry.readLong()), entry.readUTF());
+                    applied = librarySystem != null && !libraryCovered.covers(fileGeneration, validLength);
+                    if (applied) librarySystem.applyTransaction(transaction);
+                } else {
+                    break;
+                }
+                validLength += ENTRY_HEADER_SIZE + length;
+                if (applied) replayed++;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            if (channel.size() > validLength) {
+                channel.truncate(validLength);
+                channel.force(true);
+            }
+        }
+        return replayed;
+    }
+}
@@ -0,0 +1,434 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded Transaction Log
+ * Library transaction history with a fixed memory budget for Transaction objects.
+ * - Ring buffer: the most recent `capacity` transactions, addressed by sequence number
+ *   (sequence % capacity). Reading recent entries is an array walk; nothing is popped or copied.
+ * - Segments: entries evicted from the ring are encoded (DataOutput) into segments of
+ *   SEGMENT_ENTRIES entries. Sealing a segment appends its entry offsets and one posting record per
+ *   student and ISBN in it (the key's entries in the segment and where its previous record is),
+ *   then writes it to the log's own directory under the spill directory (created on the first
+ *   seal, so several logs can share one spill directory), or keeps it as a compact byte array when
+ *   the log was created without one.
+ * - Indexes: student ID -> sequence numbers and ISBN -> sequence numbers (primitive long arrays)
+ *   for the entries not yet sealed, plus where the key's newest posting record is. Sealing moves a
+ *   key's sequence numbers into the segment, so the in-memory indexes only cover the ring and the
+ *   open segment; keyed history walks the live entries, then the key's chain of posting records.
+ * Time Complexity: append O(1) amortized; recent(k) O(k); keyed history O(k) for k returned entries
+ * (plus one positional read per entry, and one per sealed segment, that has left the ring).
+ * Appends, keyed history and full scans synchronize on the log, because appends arrive from many
+ * books' inventory locks and rewrite the open segment and the indexes those reads use. Recent
+ * reads and size() take no lock: append claims a ring slot before overwriting it and publishes the
+ * new size after, and a reader stops at the first entry whose slot was claimed since it started.
+ */
+class TransactionLog {
+    static final int SEGMENT_ENTRIES = 8192;
+
+    private final AtomicReferenceArray<Transaction> ring;
+    private final Path spillRoot;
+    private final boolean temporary;
+    private Path spillDirectory; // this log's directory under spillRoot, created on the first seal
+    private volatile long size; // total entries ever appended; the next sequence number
+    private volatile long claimed; // size, or size + 1 while an append is overwriting a ring slot
+
+    private final List<Segment> sealed = new ArrayList<>();
+    private SegmentBuffer openBytes = new SegmentBuffer();
+    private DataOutputStream openOut = new DataOutputStream(openBytes);
+    private int[] openOffsets = new int[SEGMENT_ENTRIES + 1];
+    private int openCount;
+    private List<SequenceList> openKeys = new ArrayList<>(); // students and ISBNs with entries in the open segment
+
+    private final Map<String, SequenceList> byStudent = new HashMap<>();
+    private final Map<String, SequenceList> byIsbn = new HashMap<>();
+
+    /**
+     * @param capacity number of recent transactions kept as objects
+     * @param spillDirectory directory under which sealed segments are written, or null to keep
+     *                       them in memory
+     */
+    TransactionLog(int capacity, Path spillDirectory) {
+        this(capacity, spillDirectory, false);
+    }
+
+    private TransactionLog(int capacity, Path spillRoot, boolean temporary) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.spillRoot = spillRoot;
+        this.temporary = temporary;
+    }
+
+    /**
+     * A log that spills to a directory under java.io.tmpdir; the directory and its segments are
+     * deleted when the JVM exits.
+     */
+    static TransactionLog spillingToTemporaryDirectory(int capacity) {
+        return new TransactionLog(capacity, Paths.get(System.getProperty("java.io.tmpdir")), true);
+    }
+
+    /**
+     * This log's spill directory, or null while nothing has been spilled to disk.
+     */
+    synchronized Path getSpillDirectory() {
+        return spillDirectory;
+    }
+
+    synchronized void append(Transaction transaction) {
+        long seq = size;
+        int slot = (int) (seq % ring.length());
+        if (seq >= ring.length()) {
+            spill(ring.get(slot));
+        }
+        claimed = seq + 1;
+        ring.set(slot, transaction);
+        byStudent.computeIfAbsent(transaction.getStudentId(), k -> new SequenceList()).add(seq);
+        byIsbn.computeIfAbsent(transaction.getIsbn(), k -> new SequenceList()).add(seq);
+        size = seq + 1;
+    }
+
+    long size() {
+        return size;
+    }
+
+    /**
+     * Sequence numbers held by the in-memory student and ISBN indexes: at most two per entry in the
+     * ring or the open segment, since sealed entries are indexed inside their segment.
+     */
+    synchronized long indexedSequences() {
+        long count = 0;
+        for (SequenceList sequences : byStudent.values()) count += sequences.liveCount();
+        for (SequenceList sequences : byIsbn.values()) count += sequences.liveCount();
+        return count;
+    }
+
+    int getCapacity() {
+        return ring.length();
+    }
+
+    /**
+     * Visits up to count of the most recent transactions, newest first, without allocating or
+     * locking. Only entries still in the ring are visited, so count is effectively capped at the
+     * capacity; entries overwritten by appends made during the walk end it early.
+     */
+    void forEachRecent(int count, Consumer<Transaction> action) {
+        long newest = size;
+        long oldest = Math.max(newest - Math.min(count, ring.length()), 0);
+        for (long seq = newest - 1; seq >= oldest; seq--) {
+            Transaction transaction = ring.get((int) (seq % ring.length()));
+            if (claimed - ring.length() > seq) {
+                return; // the slot has been reused by an append since the walk began
+            }
+            action.accept(transaction);
+        }
+    }
+
+    /**
+     * Up to limit transactions of the student, newest first.
+     */
+    synchronized List<Transaction> studentHistory(String studentId, int limit) {
+        return keyed(byStudent.get(studentId), null, limit);
+    }
+
+    /**
+     * Up to limit transactions of the book with the given type (null for any), newest first.
+     */
+    synchronized List<Transaction> bookHistory(String isbn, String type, int limit) {
+        return keyed(byIsbn.get(isbn), type, limit);
+    }
+
+    /**
+     * Visits every transaction oldest first, decoding spilled entries one segment at a time.
+     */
+    synchronized void forEach(Consumer<Transaction> action) {
+        for (Segment segment : sealed) {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(segment.readAll()));
+            for (int i = 0; i < SEGMENT_ENTRIES; i++) {
+                action.accept(decode(in));
+            }
+        }
+        DataInputStream open = new DataInputStream(new ByteArrayInputStream(openBytes.buffer(), 0, openBytes.size()));
+        for (int i = 0; i < openCount; i++) {
+            action.accept(decode(open));
+        }
+        for (long seq = Math.max(0, size - ring.length()); seq < size; seq++) {
+            action.accept(ring.get((int) (seq % ring.length())));
+        }
+    }
+
+    synchronized Transaction get(long seq) {
+        if (seq < 0 || seq >= size) {
+            throw new IndexOutOfBoundsException("No transaction " + seq);
+        }
+        if (seq >= size - ring.length()) {
+            return ring.get((int) (seq % ring.length()));
+        }
+        int segment = (int) (seq / SEGMENT_ENTRIES);
+        int entry = (int) (seq % SEGMENT_ENTRIES);
+        if (segment < sealed.size()) {
+            return decode(sealed.get(segment).open(entry));
+        }
+        int from = openOffsets[entry];
+        return decode(new DataInputStream(new ByteArrayInputStream(openBytes.buffer(), from, openOffsets[entry + 1] - from)));
+    }
+
+    /**
+     * Live entries of the key newest first, then its posting records from the newest one back.
+     */
+    private List<Transaction> keyed(SequenceList sequences, String type, int limit) {
+        List<Transaction> result = new ArrayList<>();
+        if (sequences == null) {
+            return result;
+        }
+        for (int i = sequences.size - 1; i >= sequences.start && result.size() < limit; i--) {
+            Transaction transaction = get(sequences.values[i]);
+            if (type == null || type.equals(transaction.getType())) {
+                result.add(transaction);
+            }
+        }
+        int s = sequences.lastSegment;
+        int record = sequences.lastRecord;
+        while (s >= 0 && result.size() < limit) {
+            Segment segment = sealed.get(s);
+            for (int i = segment.postingCount(record) - 1; i >= 0 && result.size() < limit; i--) {
+                Transaction transaction = decode(segment.open(segment.posting(record, i)));
+                if (type == null || type.equals(transaction.getType())) {
+                    result.add(transaction);
+                }
+            }
+            s = segment.previousSegment(record);
+            record = segment.previousRecord(record);
+        }
+        return result;
+    }
+
+    private void spill(Transaction transaction) {
+        try {
+            openOut.writeUTF(transaction.getIsbn());
+            openOut.writeUTF(transaction.getStudentId());
+            openOut.writeLong(transaction.getDate().getTime());
+            openOut.writeUTF(transaction.getType());
+            openOffsets[++openCount] = openOut.size();
+            byStudent.get(transaction.getStudentId()).markOpen(openKeys, sealed.size());
+            byIsbn.get(transaction.getIsbn()).markOpen(openKeys, sealed.size());
+            if (openCount == SEGMENT_ENTRIES) {
+                seal();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not spill transaction history", e);
+        }
+    }
+
+    private void seal() throws IOException {
+        int segment = sealed.size();
+        long first = (long) segment * SEGMENT_ENTRIES;
+        int footerSize = 4 * (SEGMENT_ENTRIES + 1) + 4;
+        for (SequenceList sequences : openKeys) {
+            footerSize += 12 + 4 * sequences.countBelow(first + SEGMENT_ENTRIES);
+        }
+        int offsetsAt = openOut.size();
+        ByteBuffer footer = ByteBuffer.allocate(footerSize);
+        for (int offset : openOffsets) {
+            footer.putInt(offset);
+        }
+        // Posting record: previous segment (-1 for none), previous record, entry count, entry numbers
+        for (SequenceList sequences : openKeys) {
+            int record = offsetsAt + footer.position();
+            int count = sequences.countBelow(first + SEGMENT_ENTRIES);
+            footer.putInt(sequences.lastSegment).putInt(sequences.lastRecord).putInt(count);
+            for (int i = 0; i < count; i++) {
+                footer.putInt((int) (sequences.values[sequences.start + i] - first));
+            }
+            sequences.dropFirst(count);
+            sequences.lastSegment = segment;
+            sequences.lastRecord = record;
+        }
+        footer.putInt(offsetsAt);
+        openOut.write(footer.array());
+        byte[] bytes = openBytes.toByteArray();
+        if (spillRoot == null) {
+            sealed.add(new Segment(bytes, null));
+        } else {
+            if (spillDirectory == null) {
+                Files.createDirectories(spillRoot);
+                spillDirectory = Files.createTempDirectory(spillRoot, "sms-history-");
+                if (temporary) {
+                    spillDirectory.toFile().deleteOnExit(); // registered first, so deleted after its segments
+                }
+            }
+            Path file = spillDirectory.resolve(String.format("transactions-%06d.seg", segment));
+            Files.write(file, bytes);
+            if (temporary) {
+                file.toFile().deleteOnExit();
+            }
+            sealed.add(new Segment(null, file));
+        }
+        openBytes = new SegmentBuffer();
+        openOut = new DataOutputStream(openBytes);
+        openOffsets = new int[SEGMENT_ENTRIES + 1];
+        openCount = 0;
+        openKeys = new ArrayList<>();
+    }
+
+    private static Transaction decode(DataInputStream in) {
+        try {
+            return new Transaction(in.readUTF(), in.readUTF(), new Date(in.readLong()), in.readUTF());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt transaction segment", e);
+        }
+    }
+
+    /**
+     * A sealed run of SEGMENT_ENTRIES encoded entries followed by its offsets and posting records,
+     * in memory or in a spill file. A spilled segment is memory-mapped on first read, so its pages
+     * live in the OS page cache, not the heap.
+     */
+    private static final class Segment {
+        private final byte[] bytes;
+        private final Path file;
+        private ByteBuffer data;
+        private int offsetsAt;
+
+        Segment(byte[] bytes, Path file) {
+            this.bytes = bytes;
+            this.file = file;
+        }
+
+        DataInputStream open(int entry) {
+            ByteBuffer data = data();
+            int from = data.getInt(offsetsAt + 4 * entry);
+            int to = data.getInt(offsetsAt + 4 * entry + 4);
+            if (bytes != null) {
+                return new DataInputStream(new ByteArrayInputStream(bytes, from, to - from));
+            }
+            byte[] encoded = new byte[to - from];
+            data.get(from, encoded);
+            return new DataInputStream(new ByteArrayInputStream(encoded));
+        }
+
+        int previousSegment(int record) {
+            return data().getInt(record);
+        }
+
+        int previousRecord(int record) {
+            return data().getInt(record + 4);
+        }
+
+        int postingCount(int record) {
+            return data().getInt(record + 8);
+        }
+
+        int posting(int record, int i) {
+            return data().getInt(record + 12 + 4 * i);
+        }
+
+        private ByteBuffer data() {
+            if (data == null) {
+                ByteBuffer loaded;
+                if (bytes != null) {
+                    loaded = ByteBuffer.wrap(bytes);
+                } else {
+                    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                        loaded = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Could not read spilled transactions", e);
+                    }
+                }
+                int trailer = loaded.capacity() - 4;
+                if (trailer < 0 || loaded.getInt(trailer) + 4L * (SEGMENT_ENTRIES + 1) > trailer) {
+                    throw new UncheckedIOException(new EOFException("Truncated segment " + file));
+                }
+                offsetsAt = loaded.getInt(trailer);
+                data = loaded;
+            }
+            return data;
+        }
+
+        byte[] readAll() {
+            if (bytes != null) {
+                return bytes;
+            }
+            try {
+                return Files.readAllBytes(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read spilled transactions", e);
+            }
+        }
+    }
+
+    /**
+     * Exposes the backing array so entries of the open segment can be decoded in place.
+     */
+    private static final class SegmentBuffer extends ByteArrayOutputStream {
+        byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Growable primitive list of one key's unsealed sequence numbers, ascending, from start to
+     * size, plus the segment (-1 for none) and position of the key's newest posting record.
+     */
+    private static final class SequenceList {
+        long[] values = new long[4];
+        int start;
+        int size;
+        int lastSegment = -1;
+        int lastRecord;
+        int openSegment = -1; // segment whose open key list holds this key
+
+        void markOpen(List<SequenceList> openKeys, int segment) {
+            if (openSegment != segment) {
+                openSegment = segment;
+                openKeys.add(this);
+            }
+        }
+
+        void add(long value) {
+            if (size == values.length) {
+                if (start > 0) {
+                    compact();
+                } else {
+                    values = Arrays.copyOf(values, size * 2);
+                }
+            }
+            values[size++] = value;
+        }
+
+        int countBelow(long sequence) {
+            int count = 0;
+            while (start + count < size && values[start + count] < sequence) {
+                count++;
+            }
+            return count;
+        }
+
+        // The sealed entries leave from the front; the array shrinks back once most of it is free
+        void dropFirst(int count) {
+            start += count;
+            if (start * 2 >= values.length) {
+                compact();
+            }
+        }
+
+        private void compact() {
+            int live = size - start;
+            long[] kept = new long[Math.max(4, Integer.highestOneBit(Math.max(live, 1)) * 2)];
+            System.arraycopy(values, start, kept, 0, live);
+            values = kept;
+            start = 0;
+            size = live;
+        }
+
+        int liveCount() {
+            return size - start;
+        }
+    }
+}